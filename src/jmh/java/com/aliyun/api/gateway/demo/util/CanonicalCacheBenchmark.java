@@ -0,0 +1,94 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.aliyun.api.gateway.demo.util;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.aliyun.api.gateway.demo.constant.Constants;
+import com.aliyun.api.gateway.demo.constant.HttpHeader;
+import com.aliyun.api.gateway.demo.constant.HttpMethod;
+import com.aliyun.api.gateway.demo.constant.SystemHeader;
+
+/**
+ * 重复GET请求签名基准测试,对比是否缓存待签名字符串的固定部分
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CanonicalCacheBenchmark {
+
+    @Param({"8", "32"})
+    private int headerCount;
+
+    @Param({"8", "32"})
+    private int queryCount;
+
+    @Param({"true", "false"})
+    private boolean cached;
+
+    private Map<String, String> headers;
+
+    private Map<String, String> querys;
+
+    private List<String> signHeaderPrefixList;
+
+    private long timestamp;
+
+    @Setup
+    public void setup() {
+        SignUtil.configureCanonicalCache(cached ? Constants.DEFAULT_CANONICAL_CACHE_SIZE : 0, 0);
+        headers = new HashMap<String, String>();
+        headers.put(HttpHeader.HTTP_HEADER_ACCEPT, "application/json");
+        headers.put(SystemHeader.X_CA_KEY, "app_key");
+        signHeaderPrefixList = new ArrayList<String>();
+        for (int i = 0; i < headerCount; i++) {
+            headers.put("x-custom-header-" + i, "header-value-" + i);
+            if (i % 2 == 0) {
+                signHeaderPrefixList.add("x-custom-header-" + i);
+            }
+        }
+        querys = SignBenchmark.params("query", queryCount);
+        timestamp = System.currentTimeMillis();
+    }
+
+    @Benchmark
+    public String signGet() {
+        headers.put(SystemHeader.X_CA_TIMESTAMP, String.valueOf(timestamp++));
+        return SignUtil.sign("APP_SECRET", HttpMethod.GET, "/api/v1/resource", headers, querys, null, signHeaderPrefixList);
+    }
+}
@@ -0,0 +1,147 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.aliyun.api.gateway.demo.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import org.apache.http.client.methods.HttpRequestBase;
+
+import com.aliyun.api.gateway.demo.Request;
+import com.aliyun.api.gateway.demo.RequestTemplate;
+import com.aliyun.api.gateway.demo.constant.HttpHeader;
+import com.aliyun.api.gateway.demo.enums.Method;
+
+/**
+ * HttpUtil中URL构建、请求构建及响应读取的基准测试
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HttpUtilBenchmark {
+
+    @State(Scope.Thread)
+    public static class UrlState {
+        @Param({"0", "8", "32"})
+        private int queryCount;
+
+        private Map<String, String> querys;
+
+        @Setup
+        public void setup() {
+            querys = SignBenchmark.params("query", queryCount);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class BodyState {
+        @Param({"1024", "65536", "1048576"})
+        private int bodySize;
+
+        private byte[] body;
+
+        @Setup
+        public void setup() {
+            body = new byte[bodySize];
+            Arrays.fill(body, (byte) 'a');
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class RequestState {
+        private final Map<String, String> headers = new HashMap<String, String>();
+
+        private final List<String> signHeaderPrefixList = new ArrayList<String>();
+
+        private Map<String, String> querys;
+
+        private RequestTemplate template;
+
+        @Setup
+        public void setup() {
+            headers.put(HttpHeader.HTTP_HEADER_ACCEPT, "application/json");
+            headers.put("X-Ca-Stage", "RELEASE");
+            headers.put("a-header1", "header1Value");
+            headers.put("b-header2", "header2Value");
+            signHeaderPrefixList.add("a-header1");
+            signHeaderPrefixList.add("b-header2");
+            querys = SignBenchmark.params("query", 4);
+            template = RequestTemplate.of(newRequest());
+        }
+
+        Request newRequest() {
+            Request request = new Request(Method.POST_STRING, "http://api.aaaa.com", "/api/v1/resource",
+                    "appKey", "appSecret", 0);
+            request.setHeaders(new HashMap<String, String>(headers));
+            request.setSignHeaderPrefixList(new ArrayList<String>(signHeaderPrefixList));
+            return request;
+        }
+    }
+
+    @Benchmark
+    public HttpRequestBase buildRequest(RequestState state) throws Exception {
+        Request request = state.newRequest();
+        request.setQuerys(state.querys);
+        request.setStringBody("demo string body content");
+        return HttpUtil.buildRequest(request);
+    }
+
+    @Benchmark
+    public HttpRequestBase buildRequestFromTemplate(RequestState state) throws Exception {
+        Request request = state.template.newRequest(state.querys);
+        request.setStringBody("demo string body content");
+        return HttpUtil.buildRequest(request);
+    }
+
+    @Benchmark
+    public String initUrl(UrlState state) throws UnsupportedEncodingException {
+        return HttpUtil.initUrl("http://api.aaaa.com", "/api/v1/resource", state.querys);
+    }
+
+    @Benchmark
+    public String readStreamAsStr(BodyState state) throws IOException {
+        return HttpUtil.readStreamAsStr(new ByteArrayInputStream(state.body));
+    }
+
+    @Benchmark
+    public byte[] readStreamAsBytesKnownLength(BodyState state) throws IOException {
+        return HttpUtil.readStreamAsBytes(new ByteArrayInputStream(state.body), state.body.length);
+    }
+}
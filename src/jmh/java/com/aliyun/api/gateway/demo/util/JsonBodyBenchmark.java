@@ -0,0 +1,103 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.aliyun.api.gateway.demo.util;
+
+import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.HttpEntity;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.entity.StringEntity;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.alibaba.fastjson.JSON;
+import com.aliyun.api.gateway.demo.constant.Constants;
+
+/**
+ * 对象Body基准测试,对比序列化为String后计算Content-MD5并构建StringEntity,与JsonBody一次序列化同时计算Content-MD5
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class JsonBodyBenchmark {
+
+    public static class Item {
+        public int id;
+        public String name;
+        public boolean enabled;
+    }
+
+    public static class Order {
+        public long id;
+        public String remark;
+        public List<Item> items;
+    }
+
+    @Param({"10", "1000"})
+    public int items;
+
+    private Order order;
+
+    @Setup
+    public void setup() {
+        order = new Order();
+        order.id = 42;
+        order.remark = "备注";
+        order.items = new ArrayList<Item>(items);
+        for (int i = 0; i < items; i++) {
+            Item item = new Item();
+            item.id = i;
+            item.name = "名称-" + i;
+            item.enabled = true;
+            order.items.add(item);
+        }
+    }
+
+    @Benchmark
+    public HttpEntity stringBody() throws UnsupportedEncodingException {
+        String body = JSON.toJSONString(order);
+        String contentMD5 = MessageDigestUtil.base64AndMD5(body);
+        StringEntity entity = new StringEntity(body, Constants.ENCODING);
+        entity.setContentEncoding(contentMD5);
+        return entity;
+    }
+
+    @Benchmark
+    public HttpEntity jsonBody() {
+        JsonBody body = JsonBody.of(order);
+        ByteArrayEntity entity = new ByteArrayEntity(body.getBytes());
+        entity.setContentEncoding(body.getContentMD5());
+        return entity;
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.aliyun.api.gateway.demo.util;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * NonceStore多线程并发写入基准测试,线程数可通过-t调整
+ * 每个Nonce只写入一次,保存期设为10秒以便在测试时间内覆盖时间桶过期;结束时输出每个Nonce占用的内存
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(8)
+@Fork(1)
+public class NonceStoreBenchmark {
+
+    private static final AtomicInteger THREAD_IDS = new AtomicInteger();
+
+    private NonceStore store;
+
+    @State(Scope.Thread)
+    public static class Writer {
+
+        private final StringBuilder nonce = new StringBuilder(48);
+
+        private int prefixLength;
+
+        private long sequence;
+
+        @Setup
+        public void setup() {
+            nonce.append("a1b2c3d4-").append(THREAD_IDS.incrementAndGet()).append('-');
+            prefixLength = nonce.length();
+        }
+
+        CharSequence next() {
+            nonce.setLength(prefixLength);
+            return nonce.append(sequence++);
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setup() {
+        store = new NonceStore(10 * 1000, 1000, Runtime.getRuntime().availableProcessors() * 4);
+    }
+
+    @TearDown(Level.Trial)
+    public void report() {
+        System.out.printf("%nnonces=%d memory=%dKB bytesPerNonce=%.1f replays=%d%n", store.size(),
+                store.getMemoryBytes() >> 10, store.getBytesPerNonce(), store.getReplays());
+    }
+
+    @Benchmark
+    public boolean add(Writer writer) {
+        return store.add(writer.next());
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.aliyun.api.gateway.demo.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.TypeReference;
+import com.aliyun.api.gateway.demo.JsonArrayIterator;
+import com.aliyun.api.gateway.demo.Response;
+import com.aliyun.api.gateway.demo.constant.Constants;
+
+/**
+ * 响应Body的JSON解析基准测试,对比先转为字符串再解析与Response.as/iterateArray直接从字节解析
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ResponseJsonBenchmark {
+
+    public static class Item {
+        public int id;
+        public String name;
+        public boolean enabled;
+    }
+
+    private static final TypeReference<List<Item>> ITEMS = new TypeReference<List<Item>>() {
+    };
+
+    @Param({"10", "1000"})
+    public int items;
+
+    private byte[] body;
+
+    @Setup
+    public void setup() throws IOException {
+        StringBuilder json = new StringBuilder("[");
+        for (int i = 0; i < items; i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append("{\"id\":").append(i).append(",\"name\":\"名称-").append(i).append("\",\"enabled\":true}");
+        }
+        body = json.append(']').toString().getBytes(Constants.ENCODING);
+    }
+
+    @Benchmark
+    public List<Item> parseString() {
+        Response response = new Response();
+        response.setBodyBytes(body);
+        return JSON.parseObject(response.getBody(), ITEMS);
+    }
+
+    @Benchmark
+    public List<Item> as() throws IOException {
+        Response response = new Response();
+        response.setBodyBytes(body);
+        return response.as(ITEMS);
+    }
+
+    @Benchmark
+    public int iterateArray() {
+        Response response = new Response();
+        response.setBodyStream(new ByteArrayInputStream(body));
+        JsonArrayIterator<Item> iterator = response.iterateArray(Item.class);
+        int sum = 0;
+        while (iterator.hasNext()) {
+            sum += iterator.next().id;
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.aliyun.api.gateway.demo.util;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.aliyun.api.gateway.demo.constant.HttpHeader;
+import com.aliyun.api.gateway.demo.constant.HttpMethod;
+import com.aliyun.api.gateway.demo.constant.SystemHeader;
+
+/**
+ * SignUtil.sign基准测试,覆盖不同数量的Header、Query及Body参数
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SignBenchmark {
+
+    @Param({"0", "8", "32"})
+    private int headerCount;
+
+    @Param({"0", "8", "32"})
+    private int queryCount;
+
+    @Param({"0", "8"})
+    private int bodyCount;
+
+    private Map<String, String> headers;
+
+    private Map<String, String> querys;
+
+    private Map<String, String> bodys;
+
+    private List<String> signHeaderPrefixList;
+
+    @Setup
+    public void setup() {
+        headers = new HashMap<String, String>();
+        headers.put(HttpHeader.HTTP_HEADER_ACCEPT, "application/json");
+        headers.put(HttpHeader.HTTP_HEADER_CONTENT_TYPE, "application/x-www-form-urlencoded; charset=UTF-8");
+        headers.put(SystemHeader.X_CA_TIMESTAMP, String.valueOf(System.currentTimeMillis()));
+        headers.put(SystemHeader.X_CA_KEY, "app_key");
+        signHeaderPrefixList = new ArrayList<String>();
+        for (int i = 0; i < headerCount; i++) {
+            headers.put("x-custom-header-" + i, "header-value-" + i);
+            if (i % 2 == 0) {
+                signHeaderPrefixList.add("x-custom-header-" + i);
+            }
+        }
+        querys = params("query", queryCount);
+        bodys = bodyCount == 0 ? null : params("body", bodyCount);
+    }
+
+    @Benchmark
+    public String sign() {
+        return SignUtil.sign("APP_SECRET", HttpMethod.POST, "/api/v1/resource", headers, querys, bodys, signHeaderPrefixList);
+    }
+
+    static Map<String, String> params(String prefix, int count) {
+        Map<String, String> params = new HashMap<String, String>();
+        for (int i = 0; i < count; i++) {
+            params.put(prefix + "-" + i, prefix + " value " + i);
+        }
+        return params;
+    }
+}
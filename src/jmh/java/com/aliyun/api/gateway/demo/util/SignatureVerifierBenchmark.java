@@ -0,0 +1,100 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.aliyun.api.gateway.demo.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.aliyun.api.gateway.demo.constant.HttpHeader;
+import com.aliyun.api.gateway.demo.constant.HttpMethod;
+import com.aliyun.api.gateway.demo.constant.SystemHeader;
+import com.aliyun.api.gateway.demo.enums.VerifyResult;
+
+/**
+ * SignatureVerifier.verify基准测试,与SignBenchmark使用相同形状的请求
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SignatureVerifierBenchmark {
+
+    @Param({"0", "8"})
+    private int headerCount;
+
+    @Param({"0", "8", "32"})
+    private int queryCount;
+
+    private SignatureVerifier verifier;
+
+    private Map<String, String> headers;
+
+    private Map<String, String> tampered;
+
+    private Map<String, String> querys;
+
+    @Setup
+    public void setup() {
+        verifier = new SignatureVerifier(Collections.singletonMap("app_key", "APP_SECRET"));
+        headers = new HashMap<String, String>();
+        headers.put(HttpHeader.HTTP_HEADER_ACCEPT, "application/json");
+        headers.put(SystemHeader.X_CA_TIMESTAMP, String.valueOf(System.currentTimeMillis()));
+        headers.put(SystemHeader.X_CA_KEY, "app_key");
+        List<String> signHeaderPrefixList = new ArrayList<String>();
+        for (int i = 0; i < headerCount; i++) {
+            headers.put("x-custom-header-" + i, "header-value-" + i);
+            signHeaderPrefixList.add("x-custom-header-" + i);
+        }
+        querys = SignBenchmark.params("query", queryCount);
+        headers.put(SystemHeader.X_CA_SIGNATURE,
+                SignUtil.sign("APP_SECRET", HttpMethod.GET, "/api/v1/resource", headers, querys, null, signHeaderPrefixList));
+
+        tampered = new HashMap<String, String>(headers);
+        String signature = headers.get(SystemHeader.X_CA_SIGNATURE);
+        tampered.put(SystemHeader.X_CA_SIGNATURE, (signature.charAt(0) == 'A' ? 'B' : 'A') + signature.substring(1));
+    }
+
+    @Benchmark
+    public VerifyResult verify() {
+        return verifier.verify(HttpMethod.GET, "/api/v1/resource", headers, querys, null);
+    }
+
+    @Benchmark
+    public VerifyResult verifyTampered() {
+        return verifier.verify(HttpMethod.GET, "/api/v1/resource", tampered, querys, null);
+    }
+}
@@ -0,0 +1,44 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.aliyun.api.gateway.demo;
+
+/**
+ * 批量请求结果回调
+ * 同一批次的回调串行执行,实现类无需线程安全;回调抛出异常时批次停止发送后续请求
+ */
+public interface BatchCallback {
+
+    /**
+     * 收到响应,包括非2xx响应
+     *
+     * @param index 请求在列表中的位置
+     * @param request
+     * @param response
+     */
+    void onResponse(int index, Request request, Response response);
+
+    /**
+     * 签名或发送失败
+     *
+     * @param index 请求在列表中的位置
+     * @param request
+     * @param cause
+     */
+    void onFailure(int index, Request request, Throwable cause);
+}
@@ -0,0 +1,191 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.aliyun.api.gateway.demo;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+
+import org.apache.http.client.methods.HttpRequestBase;
+
+import com.aliyun.api.gateway.demo.enums.BatchOrder;
+import com.aliyun.api.gateway.demo.transport.Transport;
+import com.aliyun.api.gateway.demo.util.HttpUtil;
+
+/**
+ * 批量请求调度
+ * 签名在签名线程池并行完成后交给发送线程池,已签名未回调的请求数不超过parallelism,
+ * 既限制并发又避免提前签名过多导致时间戳过期
+ */
+class BatchDispatcher {
+
+    private final List<Request> requests;
+
+    private final int parallelism;
+
+    private final BatchOrder order;
+
+    private final BatchCallback callback;
+
+    private final Semaphore window;
+
+    private final BatchStats stats = new BatchStats();
+
+    //回调串行执行
+    private final Object deliveryLock = new Object();
+
+    //INPUT顺序下已完成但前面还有请求未完成的结果
+    private final Map<Integer, Outcome> pending = new HashMap<Integer, Outcome>();
+
+    //INPUT顺序下下一个要回调的位置
+    private int next;
+
+    //回调抛出的第一个异常
+    private volatile Throwable callbackError;
+
+    BatchDispatcher(List<Request> requests, int parallelism, BatchOrder order, BatchCallback callback) {
+        if (parallelism <= 0) {
+            throw new IllegalArgumentException("parallelism must be positive");
+        }
+        if (null == order || null == callback) {
+            throw new IllegalArgumentException("order and callback can not be null");
+        }
+        this.requests = requests;
+        this.parallelism = parallelism;
+        this.order = order;
+        this.callback = callback;
+        this.window = new Semaphore(parallelism);
+    }
+
+    BatchStats run(Executor signExecutor, Executor sendExecutor, Transport transport) throws InterruptedException {
+        long start = System.nanoTime();
+        int submitted = 0;
+        try {
+            for (int i = 0; i < requests.size() && null == callbackError; i++) {
+                window.acquire();
+                dispatch(i, signExecutor, sendExecutor, transport);
+                submitted++;
+            }
+        } finally {
+            //等待已提交的请求全部回调
+            window.acquireUninterruptibly(parallelism);
+            window.release(parallelism);
+            stats.finish(submitted, System.nanoTime() - start);
+        }
+
+        Throwable error = callbackError;
+        if (error instanceof RuntimeException) {
+            throw (RuntimeException) error;
+        }
+        if (error instanceof Error) {
+            throw (Error) error;
+        }
+        return stats;
+    }
+
+    private void dispatch(final int index, Executor signExecutor, final Executor sendExecutor, final Transport transport) {
+        final Request request = requests.get(index);
+        try {
+            signExecutor.execute(new Runnable() {
+                public void run() {
+                    final HttpRequestBase httpRequest;
+                    long start = System.nanoTime();
+                    try {
+                        httpRequest = HttpUtil.buildRequest(request);
+                    } catch (Throwable e) {
+                        complete(index, null, e);
+                        return;
+                    }
+                    stats.recordSign(System.nanoTime() - start);
+
+                    try {
+                        sendExecutor.execute(new Runnable() {
+                            public void run() {
+                                Response response;
+                                try {
+                                    response = Client.send(transport, request, httpRequest, false, null);
+                                } catch (Throwable e) {
+                                    complete(index, null, e);
+                                    return;
+                                }
+                                complete(index, response, null);
+                            }
+                        });
+                    } catch (RejectedExecutionException e) {
+                        complete(index, null, e);
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            complete(index, null, e);
+        }
+    }
+
+    private void complete(int index, Response response, Throwable error) {
+        if (null == error) {
+            stats.recordResponse(response.getStatusCode());
+        } else {
+            stats.recordFailure();
+        }
+
+        synchronized (deliveryLock) {
+            if (BatchOrder.COMPLETION == order) {
+                deliver(index, response, error);
+                window.release();
+                return;
+            }
+            pending.put(index, new Outcome(response, error));
+            Outcome outcome;
+            while (null != (outcome = pending.remove(next))) {
+                deliver(next, outcome.response, outcome.error);
+                next++;
+                window.release();
+            }
+        }
+    }
+
+    private void deliver(int index, Response response, Throwable error) {
+        if (null != callbackError) {
+            return;
+        }
+        try {
+            if (null == error) {
+                callback.onResponse(index, requests.get(index), response);
+            } else {
+                callback.onFailure(index, requests.get(index), error);
+            }
+        } catch (Throwable e) {
+            callbackError = e;
+        }
+    }
+
+    private static class Outcome {
+        private final Response response;
+
+        private final Throwable error;
+
+        Outcome(Response response, Throwable error) {
+            this.response = response;
+            this.error = error;
+        }
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.aliyun.api.gateway.demo;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 批量请求统计
+ */
+public class BatchStats {
+    private int total;
+    private int succeeded;
+    //收到非2xx响应的请求数
+    private int httpErrors;
+    //签名或发送失败的请求数
+    private int failed;
+    private long elapsedNanos;
+    //所有请求签名耗时之和
+    private long signNanos;
+    private final Map<Integer, Integer> statusCodes = new TreeMap<Integer, Integer>();
+
+    synchronized void recordResponse(int statusCode) {
+        if (statusCode >= 200 && statusCode < 300) {
+            succeeded++;
+        } else {
+            httpErrors++;
+        }
+        Integer count = statusCodes.get(statusCode);
+        statusCodes.put(statusCode, null == count ? 1 : count + 1);
+    }
+
+    synchronized void recordFailure() {
+        failed++;
+    }
+
+    synchronized void recordSign(long nanos) {
+        signNanos += nanos;
+    }
+
+    synchronized void finish(int total, long elapsedNanos) {
+        this.total = total;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    public synchronized int getTotal() {
+        return total;
+    }
+
+    public synchronized int getSucceeded() {
+        return succeeded;
+    }
+
+    public synchronized int getHttpErrors() {
+        return httpErrors;
+    }
+
+    public synchronized int getFailed() {
+        return failed;
+    }
+
+    public synchronized long getElapsedMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(elapsedNanos);
+    }
+
+    public synchronized long getSignMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(signNanos);
+    }
+
+    public synchronized Map<Integer, Integer> getStatusCodes() {
+        return new TreeMap<Integer, Integer>(statusCodes);
+    }
+
+    /**
+     * 每秒完成的请求数
+     *
+     * @return
+     */
+    public synchronized double getThroughput() {
+        return 0 == elapsedNanos ? 0 : total * 1e9 / elapsedNanos;
+    }
+
+    /**
+     * 失败率,包括非2xx响应
+     *
+     * @return
+     */
+    public synchronized double getFailureRate() {
+        return 0 == total ? 0 : (double) (httpErrors + failed) / total;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("total=%d succeeded=%d httpErrors=%d failed=%d elapsed=%dms sign=%dms throughput=%.1f/s status=%s",
+                total, succeeded, httpErrors, failed, getElapsedMillis(), getSignMillis(), getThroughput(), statusCodes);
+    }
+}
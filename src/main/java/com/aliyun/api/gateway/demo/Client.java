@@ -18,12 +18,68 @@
  */
 package com.aliyun.api.gateway.demo;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiConsumer;
+
+import org.apache.http.client.methods.HttpRequestBase;
+
+import com.aliyun.api.gateway.demo.cache.ResponseCache;
+import com.aliyun.api.gateway.demo.constant.Constants;
+import com.aliyun.api.gateway.demo.enums.BatchOrder;
+import com.aliyun.api.gateway.demo.enums.Method;
+import com.aliyun.api.gateway.demo.transport.HttpClientTransport;
+import com.aliyun.api.gateway.demo.transport.Transport;
+import com.aliyun.api.gateway.demo.util.BoundedExecutor;
 import com.aliyun.api.gateway.demo.util.HttpUtil;
+import com.aliyun.api.gateway.demo.util.RequestKey;
+import com.aliyun.api.gateway.demo.util.SingleFlight;
 
 /**
  * Client
  */
 public class Client {
+    //异步请求执行器,并发数与连接池每个Host的连接数一致,超出的请求排队
+    private static volatile BoundedExecutor asyncExecutor = new BoundedExecutor(
+            Executors.newCachedThreadPool(daemonThreadFactory("api-gateway-async-")),
+            Constants.DEFAULT_ASYNC_CONCURRENCY);
+
+    //请求发送方式
+    private static volatile Transport transport = new HttpClientTransport();
+
+    //HTTP/2 Transport实现类,需JDK 12及以上编译及运行
+    private static final String HTTP2_TRANSPORT = "com.aliyun.api.gateway.demo.transport.Http2Transport";
+
+    //GET请求响应缓存,为null时不缓存
+    private static volatile ResponseCache responseCache;
+
+    //GET请求合并,为null时不合并
+    private static volatile SingleFlight<String, Response> singleFlight;
+
+    //重试策略,为null时不重试
+    private static volatile RetryPolicy retryPolicy;
+
+    //批量请求签名线程池
+    private static final ExecutorService SIGN_EXECUTOR = Executors.newFixedThreadPool(
+            Runtime.getRuntime().availableProcessors(), daemonThreadFactory("api-gateway-sign-"));
+
+    //异步请求超时调度器
+    private static final ScheduledExecutorService TIMEOUT_SCHEDULER = newTimeoutScheduler();
+
     /**
      * 发送请求
      *
@@ -31,64 +87,353 @@ public class Client {
      * @return Response
      * @throws Exception
      */
-    public static Response execute(Request request) throws Exception {
-        switch (request.getMethod()) {
-            case GET:
-                return HttpUtil.httpGet(request.getHost(), request.getPath(), 
-                		request.getTimeout(), 
-                		request.getHeaders(), 
-                		request.getQuerys(),
-                		request.getSignHeaderPrefixList(), 
-                		request.getAppKey(), request.getAppSecret());
-            case POST_FORM:
-                return HttpUtil.httpPost(request.getHost(), request.getPath(), 
-                		request.getTimeout(), 
-                		request.getHeaders(), 
-                		request.getQuerys(),
-                		request.getBodys(),
-                		request.getSignHeaderPrefixList(), 
-                		request.getAppKey(), request.getAppSecret());
-            case POST_STRING:
-                return HttpUtil.httpPost(request.getHost(), request.getPath(), 
-                		request.getTimeout(), 
-                		request.getHeaders(), 
-                		request.getQuerys(),
-                		request.getStringBody(),
-                		request.getSignHeaderPrefixList(), 
-                		request.getAppKey(), request.getAppSecret());
-            case POST_BYTES:
-                return HttpUtil.httpPost(request.getHost(), request.getPath(), 
-                		request.getTimeout(), 
-                		request.getHeaders(), 
-                		request.getQuerys(),
-                		request.getBytesBody(),
-                		request.getSignHeaderPrefixList(), 
-                		request.getAppKey(), request.getAppSecret());
-            case PUT_STRING:
-                return HttpUtil.httpPut(request.getHost(), request.getPath(), 
-                		request.getTimeout(), 
-                		request.getHeaders(), 
-                		request.getQuerys(),
-                		request.getStringBody(),
-                		request.getSignHeaderPrefixList(), 
-                		request.getAppKey(), request.getAppSecret());
-            case PUT_BYTES:
-                return HttpUtil.httpPut(request.getHost(), request.getPath(), 
-                		request.getTimeout(), 
-                		request.getHeaders(), 
-                		request.getQuerys(),
-                		request.getBytesBody(),
-                		request.getSignHeaderPrefixList(), 
-                		request.getAppKey(), request.getAppSecret());
-            case DELETE:
-                return HttpUtil.httpDelete(request.getHost(), request.getPath(), 
-                		request.getTimeout(), 
-                		request.getHeaders(), 
-                		request.getQuerys(),
-                		request.getSignHeaderPrefixList(), 
-                		request.getAppKey(), request.getAppSecret());
-            default:
-                throw new IllegalArgumentException(String.format("unsupported method:%s", request.getMethod()));
+    public static Response execute(final Request request) throws Exception {
+        if (Method.GET == request.getMethod()) {
+            ResponseCache cache = responseCache;
+            if (null != cache) {
+                return cache.execute(request);
+            }
+            SingleFlight<String, Response> flights = singleFlight;
+            if (null != flights) {
+                return flights.execute(RequestKey.of(request), new Callable<Response>() {
+                    public Response call() throws Exception {
+                        return send(transport, request, null, false, null);
+                    }
+                });
+            }
+        }
+        return send(transport, request, null, false, null);
+    }
+
+    /**
+     * 发送已签名的请求,不经过响应缓存及请求合并;按重试策略重试时重新签名
+     * 供ResponseCache等在签名后还需补充Header的场景使用
+     *
+     * @param request request对象
+     * @param httpRequest 由request签名得到的请求
+     * @return Response
+     * @throws Exception
+     */
+    public static Response executeSigned(Request request, HttpRequestBase httpRequest) throws Exception {
+        if (null == httpRequest) {
+            throw new IllegalArgumentException("httpRequest can not be null");
+        }
+        return send(transport, request, httpRequest, false, null);
+    }
+
+    /**
+     * 按当前重试策略发送请求
+     *
+     * @param transport
+     * @param request
+     * @param httpRequest 已签名的首次请求,为null时在此签名
+     * @param streaming
+     * @param inFlight 记录正在发送的请求以便异步调用中断,可为null
+     * @return
+     * @throws Exception
+     */
+    static Response send(Transport transport, Request request, HttpRequestBase httpRequest, boolean streaming,
+            AtomicReference<HttpRequestBase> inFlight) throws Exception {
+        if (null == httpRequest) {
+            httpRequest = HttpUtil.buildRequest(request);
         }
+        RetryPolicy policy = retryPolicy;
+        if (null == policy) {
+            return transport.execute(httpRequest, request.getTimeout(), streaming);
+        }
+        return policy.execute(request, httpRequest, transport, streaming, inFlight);
+    }
+
+    /**
+     * 设置重试策略,传入null关闭重试
+     * 作用于所有发送方式,重试在发送线程内等待退避时间
+     *
+     * @param policy
+     */
+    public static void setRetryPolicy(RetryPolicy policy) {
+        retryPolicy = policy;
+    }
+
+    /**
+     * 当前的重试策略,未设置时返回null
+     *
+     * @return
+     */
+    public static RetryPolicy getRetryPolicy() {
+        return retryPolicy;
+    }
+
+    /**
+     * 开启或关闭GET请求合并
+     * 开启后并发的相同GET请求只发送一次,其余调用方得到同一结果的副本;与响应缓存相互独立,设置了响应缓存时由缓存负责合并
+     * 与响应缓存相同,作用于execute、executeAsync、submitAll及executeAll,不作用于executeBatch、executeSigned及executeStreaming
+     *
+     * @param enabled
+     */
+    public static void setSingleFlight(boolean enabled) {
+        singleFlight = enabled ? newResponseSingleFlight() : null;
+    }
+
+    /**
+     * 是否开启了GET请求合并
+     *
+     * @return
+     */
+    public static boolean isSingleFlight() {
+        return null != singleFlight;
+    }
+
+    private static SingleFlight<String, Response> newResponseSingleFlight() {
+        return new SingleFlight<String, Response>() {
+            @Override
+            protected Response share(Response value) {
+                return value.copy();
+            }
+        };
+    }
+
+    /**
+     * 设置请求发送方式,所有请求共用
+     *
+     * @param transport
+     */
+    public static void setTransport(Transport transport) {
+        if (null == transport) {
+            throw new IllegalArgumentException("transport can not be null");
+        }
+        Client.transport = transport;
+    }
+
+    /**
+     * 当前的请求发送方式
+     *
+     * @return
+     */
+    public static Transport getTransport() {
+        return transport;
+    }
+
+    /**
+     * 改为通过HTTP/2发送请求,多个请求复用少量连接
+     * 基于JDK 12及以上的java.net.http.HttpClient,https通过ALPN协商,http使用h2c升级;服务端不支持时回退到HTTP/1.1
+     *
+     * @throws UnsupportedOperationException 当前JDK不支持或构建时未包含HTTP/2 Transport
+     */
+    public static void useHttp2() {
+        try {
+            setTransport((Transport) Class.forName(HTTP2_TRANSPORT).getDeclaredConstructor().newInstance());
+        } catch (ClassNotFoundException e) {
+            throw new UnsupportedOperationException("HTTP/2 transport requires JDK 12 or later, current: "
+                    + System.getProperty("java.version"));
+        } catch (LinkageError e) {
+            throw new UnsupportedOperationException("HTTP/2 transport requires JDK 12 or later, current: "
+                    + System.getProperty("java.version"), e);
+        } catch (Exception e) {
+            throw new UnsupportedOperationException("HTTP/2 transport is not available", e);
+        }
+    }
+
+    /**
+     * 设置GET请求的响应缓存,传入null关闭缓存
+     * 作用于execute、executeAsync及基于executeAsync的submitAll、executeAll;
+     * executeBatch、executeSigned及executeStreaming不使用缓存
+     *
+     * @param cache
+     */
+    public static void setResponseCache(ResponseCache cache) {
+        responseCache = cache;
+    }
+
+    /**
+     * 当前的响应缓存,未设置时返回null
+     *
+     * @return
+     */
+    public static ResponseCache getResponseCache() {
+        return responseCache;
+    }
+
+    /**
+     * 发送请求,Body以流的形式返回而不在内存中缓冲
+     * 适合大文件导出等大响应,读取完毕后必须调用Response.close()归还连接;未读完时close会中断请求并关闭连接
+     *
+     * @param request request对象
+     * @return Response
+     * @throws Exception
+     */
+    public static Response executeStreaming(Request request) throws Exception {
+        return send(transport, request, null, true, null);
+    }
+
+    /**
+     * 异步发送请求,不设置整体超时
+     *
+     * @param request request对象
+     * @return 异步结果,取消时会中断正在进行的请求
+     */
+    public static CompletableFuture<Response> executeAsync(Request request) {
+        return executeAsync(request, 0);
+    }
+
+    /**
+     * 异步发送请求
+     *
+     * @param request request对象
+     * @param timeoutMillis 整体超时时间,单位毫秒,超时后请求被中断并以TimeoutException结束;小于等于0表示不限制
+     * @return 异步结果,取消时会中断正在进行的请求
+     */
+    public static CompletableFuture<Response> executeAsync(final Request request, long timeoutMillis) {
+        final CompletableFuture<Response> future = new CompletableFuture<Response>();
+        final AtomicReference<HttpRequestBase> inFlight = new AtomicReference<HttpRequestBase>();
+
+        if (timeoutMillis > 0) {
+            final ScheduledFuture<?> timeout = TIMEOUT_SCHEDULER.schedule(new Runnable() {
+                public void run() {
+                    future.completeExceptionally(new TimeoutException(
+                            String.format("request to %s%s timed out", request.getHost(), request.getPath())));
+                }
+            }, timeoutMillis, TimeUnit.MILLISECONDS);
+            future.whenComplete(new BiConsumer<Response, Throwable>() {
+                public void accept(Response response, Throwable throwable) {
+                    timeout.cancel(false);
+                }
+            });
+        }
+        //取消或超时后中断正在发送的请求
+        future.whenComplete(new BiConsumer<Response, Throwable>() {
+            public void accept(Response response, Throwable throwable) {
+                HttpRequestBase httpRequest = inFlight.get();
+                if (null != throwable && null != httpRequest) {
+                    httpRequest.abort();
+                }
+            }
+        });
+
+        try {
+            asyncExecutor.execute(new Runnable() {
+                public void run() {
+                    if (future.isDone()) {
+                        return;
+                    }
+                    try {
+                        if (Method.GET == request.getMethod() && (null != responseCache || null != singleFlight)) {
+                            //缓存及合并请求的调用无法单独中断
+                            future.complete(execute(request));
+                            return;
+                        }
+                        HttpRequestBase httpRequest = HttpUtil.buildRequest(request);
+                        inFlight.set(httpRequest);
+                        if (future.isDone()) {
+                            httpRequest.abort();
+                            return;
+                        }
+                        future.complete(send(transport, request, httpRequest, false, inFlight));
+                    } catch (Throwable e) {
+                        future.completeExceptionally(e);
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            future.completeExceptionally(e);
+        }
+
+        return future;
+    }
+
+    /**
+     * 批量异步发送请求
+     *
+     * @param requests request对象列表
+     * @return 与requests顺序一致的异步结果
+     */
+    public static List<CompletableFuture<Response>> submitAll(List<Request> requests) {
+        List<CompletableFuture<Response>> futures = new ArrayList<CompletableFuture<Response>>(requests.size());
+        for (Request request : requests) {
+            futures.add(executeAsync(request));
+        }
+        return futures;
+    }
+
+    /**
+     * 批量发送请求并等待全部完成
+     *
+     * @param requests request对象列表
+     * @return 与requests顺序一致的Response
+     * @throws Exception 任一请求失败时抛出第一个失败原因
+     */
+    public static List<Response> executeAll(List<Request> requests) throws Exception {
+        List<CompletableFuture<Response>> futures = submitAll(requests);
+        List<Response> responses = new ArrayList<Response>(futures.size());
+        for (CompletableFuture<Response> future : futures) {
+            try {
+                responses.add(future.get());
+            } catch (ExecutionException e) {
+                for (CompletableFuture<Response> other : futures) {
+                    other.cancel(true);
+                }
+                if (e.getCause() instanceof Exception) {
+                    throw (Exception) e.getCause();
+                }
+                throw e;
+            }
+        }
+        return responses;
+    }
+
+    /**
+     * 批量发送请求,结果通过回调返回,全部完成后返回统计
+     * 签名在与CPU核数相同的线程上并行完成,发送使用异步请求线程池及共享连接池;
+     * 批量请求直接发送,不经过响应缓存及请求合并
+     *
+     * @param requests request对象列表
+     * @param parallelism 同时处理的最大请求数,包括已签名等待发送及等待回调的请求
+     * @param order 回调顺序;INPUT顺序下先完成的结果会占用并发额度直到前面的请求回调
+     * @param callback 结果回调,串行执行
+     * @return 批次统计
+     * @throws InterruptedException 等待并发额度时被中断,已提交的请求仍会完成
+     */
+    public static BatchStats executeBatch(List<Request> requests, int parallelism, BatchOrder order,
+            BatchCallback callback) throws InterruptedException {
+        return new BatchDispatcher(requests, parallelism, order, callback).run(SIGN_EXECUTOR, asyncExecutor, transport);
+    }
+
+    /**
+     * 设置异步及批量请求使用的线程池
+     * 默认最多Constants.DEFAULT_ASYNC_CONCURRENCY个请求同时发送;通过HttpClientPool.configure调整连接数后应同时调整此处
+     *
+     * @param executor 线程池,由调用方负责关闭
+     * @param maxConcurrency 最大并发请求数,小于等于0表示不限制
+     */
+    public static void setAsyncExecutor(ExecutorService executor, int maxConcurrency) {
+        asyncExecutor = new BoundedExecutor(executor, maxConcurrency);
+    }
+
+    /**
+     * 异步及批量请求改为每个请求一个虚拟线程,需要JDK 21及以上
+     * 注意同时调整HttpClientPool的连接数,否则并发受限于连接池大小
+     *
+     * @param maxConcurrency 最大并发请求数,小于等于0表示不限制
+     * @throws UnsupportedOperationException 当前JDK不支持虚拟线程
+     */
+    public static void useVirtualThreads(int maxConcurrency) {
+        asyncExecutor = BoundedExecutor.virtualThreads(maxConcurrency);
+    }
+
+    private static ScheduledExecutorService newTimeoutScheduler() {
+        ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(1, daemonThreadFactory("api-gateway-timeout-"));
+        scheduler.setRemoveOnCancelPolicy(true);
+        return scheduler;
+    }
+
+    private static ThreadFactory daemonThreadFactory(final String prefix) {
+        return new ThreadFactory() {
+            private final AtomicInteger index = new AtomicInteger();
+
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, prefix + index.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        };
     }
 }
@@ -0,0 +1,231 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.aliyun.api.gateway.demo;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Type;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONException;
+import com.aliyun.api.gateway.demo.constant.Constants;
+
+/**
+ * 逐个解析JSON数组元素的迭代器
+ * 按字节切分出顶层数组的每个元素,再由fastjson直接从字节解析,内存中只保留当前元素;
+ * 读完最后一个元素后自动关闭并归还连接;提前结束时需调用close,此时会中断请求并关闭连接,不再读取剩余的Body
+ */
+public class JsonArrayIterator<T> implements Iterator<T>, Closeable {
+
+    private static final Charset UTF8 = Charset.forName(Constants.ENCODING);
+
+    private final InputStream in;
+
+    private final Type type;
+
+    private final byte[] buffer = new byte[8192];
+
+    private int position;
+
+    private int limit;
+
+    //当前元素的字节
+    private byte[] element = new byte[256];
+
+    private int elementLength;
+
+    //已切分出元素但尚未被next取走
+    private boolean ready;
+
+    private boolean first = true;
+
+    private boolean closed;
+
+    JsonArrayIterator(InputStream in, Type type) {
+        if (null == in) {
+            throw new JSONException("response has no body");
+        }
+        this.in = in;
+        this.type = type;
+        try {
+            int b = skipWhitespace();
+            if ('[' != b) {
+                throw new JSONException("expect [ but " + describe(b));
+            }
+        } catch (IOException e) {
+            close();
+            throw new JSONException(e.getMessage(), e);
+        } catch (RuntimeException e) {
+            close();
+            throw e;
+        }
+    }
+
+    public boolean hasNext() {
+        if (ready) {
+            return true;
+        }
+        if (closed) {
+            return false;
+        }
+        try {
+            ready = readElement();
+            if (!ready) {
+                //读过数组后的空白直到结尾,流式Body读完才能归还连接而不是中断请求
+                skipWhitespace();
+            }
+        } catch (IOException e) {
+            close();
+            throw new JSONException(e.getMessage(), e);
+        } catch (RuntimeException e) {
+            close();
+            throw e;
+        }
+        if (!ready) {
+            close();
+        }
+        return ready;
+    }
+
+    public T next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        ready = false;
+        return JSON.parseObject(element, 0, elementLength, UTF8, type);
+    }
+
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * 关闭Body,数组未读完时中断请求
+     */
+    public void close() {
+        if (!closed) {
+            closed = true;
+            try {
+                in.close();
+            } catch (IOException e) {
+                //已读取的元素仍然有效,关闭失败不影响结果
+            }
+        }
+    }
+
+    /**
+     * 切分下一个元素到element
+     *
+     * @return 数组已结束时返回false
+     */
+    private boolean readElement() throws IOException {
+        int b = skipWhitespace();
+        if (']' == b) {
+            return false;
+        }
+        if (!first) {
+            if (',' != b) {
+                throw new JSONException("expect , or ] but " + describe(b));
+            }
+            b = skipWhitespace();
+        }
+        first = false;
+        if (b < 0 || ']' == b || ',' == b) {
+            throw new JSONException("expect value but " + describe(b));
+        }
+
+        elementLength = 0;
+        int depth = 0;
+        boolean inString = false;
+        boolean escaped = false;
+        while (true) {
+            if (inString) {
+                if (escaped) {
+                    escaped = false;
+                } else if ('\\' == b) {
+                    escaped = true;
+                } else if ('"' == b) {
+                    inString = false;
+                }
+            } else if ('"' == b) {
+                inString = true;
+            } else if ('{' == b || '[' == b) {
+                depth++;
+            } else if ('}' == b || ']' == b) {
+                depth--;
+                if (depth < 0) {
+                    //标量元素后紧跟数组结束,留给下一次读取
+                    position--;
+                    return true;
+                }
+            } else if (0 == depth && (',' == b || isWhitespace(b))) {
+                position--;
+                return true;
+            }
+            append(b);
+            if (0 == depth && !inString && ('}' == b || ']' == b || '"' == b)) {
+                return true;
+            }
+            b = read();
+            if (b < 0) {
+                throw new JSONException("unexpected end of json array");
+            }
+        }
+    }
+
+    private void append(int b) {
+        if (elementLength == element.length) {
+            element = Arrays.copyOf(element, element.length * 2);
+        }
+        element[elementLength++] = (byte) b;
+    }
+
+    private int skipWhitespace() throws IOException {
+        int b;
+        do {
+            b = read();
+        } while (isWhitespace(b));
+        return b;
+    }
+
+    private int read() throws IOException {
+        if (position == limit) {
+            limit = in.read(buffer, 0, buffer.length);
+            position = 0;
+            if (limit <= 0) {
+                limit = 0;
+                return -1;
+            }
+        }
+        return buffer[position++] & 0xff;
+    }
+
+    private static boolean isWhitespace(int b) {
+        return ' ' == b || '\n' == b || '\r' == b || '\t' == b;
+    }
+
+    private static String describe(int b) {
+        return b < 0 ? "end of input" : "'" + (char) b + "'";
+    }
+}
@@ -19,27 +19,23 @@
 package com.aliyun.api.gateway.demo;
 
 import com.aliyun.api.gateway.demo.enums.Method;
-
+import com.aliyun.api.gateway.demo.util.JsonBody;
+
+import java.io.File;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
 /**
  * Request
+ * 通过Request.builder创建的Request不可修改,可在多个线程间共享并重复发送;签名时不会修改Request中的任何内容
  */
 public class Request {
 
-    public Request() {
-    }
-
-    public Request(Method method, String host, String path, String appKey, String appSecret, int timeout) {
-        this.method = method;
-        this.host = host;
-        this.path = path;        
-        this.appKey = appKey;
-        this.appSecret = appSecret;
-        this.timeout = timeout;
-    }
-
     /**
      * （必选）请求方法
      */
@@ -90,21 +86,169 @@ public class Request {
      */
     private String stringBody;
 
+    /**
+     * （可选）对象序列化得到的JSON Body,POST_STRING/PUT_STRING在未设置stringBody时使用
+     */
+    private JsonBody jsonBody;
+
     /**
      * （可选）字节数组类型Body体
      */
     private byte[] bytesBody;
 
+    /**
+     * （可选）ByteBuffer类型Body体,如FileMapUtil.map得到的MappedByteBuffer,发送position到limit之间的内容,不复制到堆内存
+     */
+    private ByteBuffer bufferBody;
+
+    /**
+     * （可选）文件类型Body体,按文件长度流式发送,不整体读入内存
+     */
+    private File fileBody;
+
+    /**
+     * （可选）流类型Body体,流式发送,不整体读入内存;请求发送后不会自动关闭
+     */
+    private InputStream streamBody;
+
+    /**
+     * （可选）流类型Body体长度,未知时为-1,使用chunked方式发送
+     */
+    private long streamBodyLength = -1;
+
     /**
      * （可选）自定义参与签名Header前缀
      */
     private List<String> signHeaderPrefixList;
 
+    /**
+     * 由RequestTemplate创建时指向该模板,构建请求时直接使用模板预先计算的部分
+     */
+    private RequestTemplate template;
+
+    private final boolean immutable;
+
+    public Request() {
+        this.immutable = false;
+    }
+
+    public Request(Method method, String host, String path, String appKey, String appSecret, int timeout) {
+        this.method = method;
+        this.host = host;
+        this.path = path;        
+        this.appKey = appKey;
+        this.appSecret = appSecret;
+        this.timeout = timeout;
+        this.immutable = false;
+    }
+
+    private Request(Builder builder) {
+        this.method = builder.method;
+        this.host = builder.host;
+        this.path = builder.path;
+        this.appKey = builder.appKey;
+        this.appSecret = builder.appSecret;
+        this.timeout = builder.timeout;
+        this.headers = unmodifiableCopy(builder.headers);
+        this.querys = unmodifiableCopy(builder.querys);
+        this.bodys = unmodifiableCopy(builder.bodys);
+        this.stringBody = builder.stringBody;
+        this.jsonBody = builder.jsonBody;
+        this.bytesBody = builder.bytesBody;
+        this.bufferBody = null == builder.bufferBody ? null : builder.bufferBody.asReadOnlyBuffer();
+        this.fileBody = builder.fileBody;
+        this.streamBody = builder.streamBody;
+        this.streamBodyLength = builder.streamBodyLength;
+        this.signHeaderPrefixList = null == builder.signHeaderPrefixList ? null
+                : Collections.unmodifiableList(new ArrayList<String>(builder.signHeaderPrefixList));
+        this.immutable = true;
+    }
+
+    /**
+     * 创建不可修改Request的Builder
+     *
+     * @param method 请求方法
+     * @param host
+     * @param path
+     * @param appKey APP KEY
+     * @param appSecret APP密钥
+     * @return
+     */
+    public static Builder builder(Method method, String host, String path, String appKey, String appSecret) {
+        return new Builder(method, host, path, appKey, appSecret);
+    }
+
+    /**
+     * 以当前Request的内容创建Builder,用于派生新的Request
+     *
+     * @return
+     */
+    public Builder toBuilder() {
+        Builder builder = new Builder(method, host, path, appKey, appSecret);
+        builder.timeout = timeout;
+        if (null != headers) {
+            builder.headers(headers);
+        }
+        if (null != querys) {
+            builder.querys(querys);
+        }
+        if (null != bodys) {
+            builder.bodys(bodys);
+        }
+        builder.stringBody = stringBody;
+        builder.jsonBody = jsonBody;
+        builder.bytesBody = bytesBody;
+        builder.bufferBody = bufferBody;
+        builder.fileBody = fileBody;
+        builder.streamBody = streamBody;
+        builder.streamBodyLength = streamBodyLength;
+        builder.signHeaderPrefixList = null == signHeaderPrefixList ? null
+                : new ArrayList<String>(signHeaderPrefixList);
+        return builder;
+    }
+
+    /**
+     * 返回替换了一个Header的浅拷贝,其余内容及所属模板不变,供重试时更换Nonce等
+     *
+     * @param name
+     * @param value
+     * @return
+     */
+    Request withHeader(String name, String value) {
+        Request copy = new Request(method, host, path, appKey, appSecret, timeout);
+        Map<String, String> copyHeaders = null == headers ? new LinkedHashMap<String, String>()
+                : new LinkedHashMap<String, String>(headers);
+        copyHeaders.put(name, value);
+        copy.headers = copyHeaders;
+        copy.querys = querys;
+        copy.bodys = bodys;
+        copy.stringBody = stringBody;
+        copy.jsonBody = jsonBody;
+        copy.bytesBody = bytesBody;
+        copy.bufferBody = bufferBody;
+        copy.fileBody = fileBody;
+        copy.streamBody = streamBody;
+        copy.streamBodyLength = streamBodyLength;
+        copy.signHeaderPrefixList = signHeaderPrefixList;
+        copy.template = template;
+        return copy;
+    }
+
+    /**
+     * 是否为Builder创建的不可修改Request
+     *
+     * @return
+     */
+    public boolean isImmutable() {
+        return immutable;
+    }
+
     public Method getMethod() {
         return method;
     }
 
     public void setMethod(Method method) {
+        checkMutable();
         this.method = method;
     }
 
@@ -113,6 +257,7 @@ public class Request {
     }
 
     public void setPath(String path) {
+        checkMutable();
         this.path = path;
     }
     
@@ -121,6 +266,7 @@ public class Request {
     }
 
     public void setHost(String host) {
+        checkMutable();
         this.host = host;
     }
 
@@ -129,6 +275,7 @@ public class Request {
     }
 
     public void setAppKey(String appKey) {
+        checkMutable();
         this.appKey = appKey;
     }
 
@@ -137,6 +284,7 @@ public class Request {
     }
 
     public void setAppSecret(String appSecret) {
+        checkMutable();
         this.appSecret = appSecret;
     }
 
@@ -145,6 +293,7 @@ public class Request {
     }
 
     public void setTimeout(int timeout) {
+        checkMutable();
         this.timeout = timeout;
     }
 
@@ -153,6 +302,7 @@ public class Request {
     }
 
     public void setHeaders(Map<String, String> headers) {
+        checkMutable();
         this.headers = headers;
     }
     
@@ -161,6 +311,7 @@ public class Request {
     }
 
     public void setQuerys(Map<String, String> querys) {
+        checkMutable();
         this.querys = querys;
     }
     
@@ -169,6 +320,7 @@ public class Request {
     }
 
     public void setBodys(Map<String, String> bodys) {
+        checkMutable();
         this.bodys = bodys;
     }
 
@@ -177,22 +329,268 @@ public class Request {
     }
 
     public void setStringBody(String stringBody) {
+        checkMutable();
         this.stringBody = stringBody;
     }
 
+    public JsonBody getJsonBody() {
+        return jsonBody;
+    }
+
+    /**
+     * 将对象序列化为JSON Body,序列化在调用时完成,之后修改对象不影响已设置的Body
+     * 发送时自动添加Content-MD5,未设置Content-Type时使用application/json
+     *
+     * @param value
+     */
+    public void setJsonBody(Object value) {
+        checkMutable();
+        this.jsonBody = null == value ? null : JsonBody.of(value);
+    }
+
     public byte[] getBytesBody() {
         return bytesBody;
     }
 
     public void setBytesBody(byte[] bytesBody) {
+        checkMutable();
         this.bytesBody = bytesBody;
     }
 
+    public ByteBuffer getBufferBody() {
+        return bufferBody;
+    }
+
+    public void setBufferBody(ByteBuffer bufferBody) {
+        checkMutable();
+        this.bufferBody = bufferBody;
+    }
+
+    public File getFileBody() {
+        return fileBody;
+    }
+
+    public void setFileBody(File fileBody) {
+        checkMutable();
+        this.fileBody = fileBody;
+    }
+
+    public InputStream getStreamBody() {
+        return streamBody;
+    }
+
+    public long getStreamBodyLength() {
+        return streamBodyLength;
+    }
+
+    public void setStreamBody(InputStream streamBody) {
+        checkMutable();
+        setStreamBody(streamBody, -1);
+    }
+
+    public void setStreamBody(InputStream streamBody, long streamBodyLength) {
+        checkMutable();
+        this.streamBody = streamBody;
+        this.streamBodyLength = streamBodyLength;
+    }
+
+    /**
+     * 创建该Request的模板,普通Request为null
+     *
+     * @return
+     */
+    public RequestTemplate getTemplate() {
+        return template;
+    }
+
+    void setTemplate(RequestTemplate template) {
+        this.template = template;
+    }
+
     public List<String> getSignHeaderPrefixList() {
         return signHeaderPrefixList;
     }
 
     public void setSignHeaderPrefixList(List<String> signHeaderPrefixList) {
+        checkMutable();
         this.signHeaderPrefixList = signHeaderPrefixList;
     }
+
+    private void checkMutable() {
+        if (immutable) {
+            throw new UnsupportedOperationException("request created by Request.Builder is immutable, use toBuilder()");
+        }
+    }
+
+    private static Map<String, String> unmodifiableCopy(Map<String, String> map) {
+        return null == map ? null : Collections.unmodifiableMap(new LinkedHashMap<String, String>(map));
+    }
+
+    /**
+     * 不可修改Request的Builder,build后可继续修改并再次build,已创建的Request不受影响
+     */
+    public static class Builder {
+
+        private final Method method;
+
+        private final String host;
+
+        private final String path;
+
+        private final String appKey;
+
+        private final String appSecret;
+
+        private int timeout;
+
+        private Map<String, String> headers;
+
+        private Map<String, String> querys;
+
+        private Map<String, String> bodys;
+
+        private String stringBody;
+
+        private JsonBody jsonBody;
+
+        private byte[] bytesBody;
+
+        private ByteBuffer bufferBody;
+
+        private File fileBody;
+
+        private InputStream streamBody;
+
+        private long streamBodyLength = -1;
+
+        private List<String> signHeaderPrefixList;
+
+        private Builder(Method method, String host, String path, String appKey, String appSecret) {
+            this.method = method;
+            this.host = host;
+            this.path = path;
+            this.appKey = appKey;
+            this.appSecret = appSecret;
+        }
+
+        /**
+         * @param timeout 超时时间,单位毫秒,零表示使用默认值
+         */
+        public Builder timeout(int timeout) {
+            this.timeout = timeout;
+            return this;
+        }
+
+        public Builder header(String name, String value) {
+            if (null == headers) {
+                headers = new LinkedHashMap<String, String>();
+            }
+            headers.put(name, value);
+            return this;
+        }
+
+        public Builder headers(Map<String, String> headers) {
+            for (Map.Entry<String, String> e : headers.entrySet()) {
+                header(e.getKey(), e.getValue());
+            }
+            return this;
+        }
+
+        public Builder query(String name, String value) {
+            if (null == querys) {
+                querys = new LinkedHashMap<String, String>();
+            }
+            querys.put(name, value);
+            return this;
+        }
+
+        public Builder querys(Map<String, String> querys) {
+            for (Map.Entry<String, String> e : querys.entrySet()) {
+                query(e.getKey(), e.getValue());
+            }
+            return this;
+        }
+
+        /**
+         * 添加表单参数
+         */
+        public Builder body(String name, String value) {
+            if (null == bodys) {
+                bodys = new LinkedHashMap<String, String>();
+            }
+            bodys.put(name, value);
+            return this;
+        }
+
+        public Builder bodys(Map<String, String> bodys) {
+            for (Map.Entry<String, String> e : bodys.entrySet()) {
+                body(e.getKey(), e.getValue());
+            }
+            return this;
+        }
+
+        public Builder stringBody(String stringBody) {
+            this.stringBody = stringBody;
+            return this;
+        }
+
+        /**
+         * 立即将对象序列化为JSON Body
+         */
+        public Builder jsonBody(Object value) {
+            this.jsonBody = null == value ? null : JsonBody.of(value);
+            return this;
+        }
+
+        /**
+         * 字节数组不会被复制,build后不应再修改
+         */
+        public Builder bytesBody(byte[] bytesBody) {
+            this.bytesBody = bytesBody;
+            return this;
+        }
+
+        /**
+         * Request持有只读视图,不改变原buffer的position
+         */
+        public Builder bufferBody(ByteBuffer bufferBody) {
+            this.bufferBody = bufferBody;
+            return this;
+        }
+
+        public Builder fileBody(File fileBody) {
+            this.fileBody = fileBody;
+            return this;
+        }
+
+        /**
+         * 流只能读取一次,使用流类型Body的Request不能重复发送
+         */
+        public Builder streamBody(InputStream streamBody, long streamBodyLength) {
+            this.streamBody = streamBody;
+            this.streamBodyLength = streamBodyLength;
+            return this;
+        }
+
+        public Builder signHeaderPrefix(String prefix) {
+            if (null == signHeaderPrefixList) {
+                signHeaderPrefixList = new ArrayList<String>();
+            }
+            signHeaderPrefixList.add(prefix);
+            return this;
+        }
+
+        public Builder signHeaderPrefixList(List<String> signHeaderPrefixList) {
+            this.signHeaderPrefixList = null == signHeaderPrefixList ? null
+                    : new ArrayList<String>(signHeaderPrefixList);
+            return this;
+        }
+
+        public Request build() {
+            if (null == method || null == host || null == appKey || null == appSecret) {
+                throw new IllegalArgumentException("method, host, appKey and appSecret can not be null");
+            }
+            return new Request(this);
+        }
+    }
 }
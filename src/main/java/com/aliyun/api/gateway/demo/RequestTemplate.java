@@ -0,0 +1,289 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.aliyun.api.gateway.demo;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.lang.StringUtils;
+
+import com.aliyun.api.gateway.demo.constant.Constants;
+import com.aliyun.api.gateway.demo.constant.ContentType;
+import com.aliyun.api.gateway.demo.constant.HttpHeader;
+import com.aliyun.api.gateway.demo.constant.HttpMethod;
+import com.aliyun.api.gateway.demo.constant.SystemHeader;
+import com.aliyun.api.gateway.demo.enums.Method;
+import com.aliyun.api.gateway.demo.util.HttpUtil;
+import com.aliyun.api.gateway.demo.util.SignUtil;
+import com.aliyun.api.gateway.demo.util.Signer;
+
+/**
+ * 预编译的请求模板,创建后不可修改
+ * 适合Host、Path、Header及签名Header前缀固定的热点接口:参与签名的Header在创建时选出并排序,URL前缀预先拼接,签名器预先按密钥生成;
+ * 每次调用通过newRequest获取Request,只需填充Query及Body
+ */
+public final class RequestTemplate {
+
+    private final Method method;
+
+    private final String httpMethod;
+
+    private final String host;
+
+    private final String path;
+
+    private final String appKey;
+
+    private final String appSecret;
+
+    private final int timeout;
+
+    private final Map<String, String> headers;
+
+    private final Map<String, String> querys;
+
+    private final List<String> signHeaderPrefixList;
+
+    //参与签名的Header名称,已排序
+    private final String[] signHeaderNames;
+
+    //X-Ca-Signature-Headers的值,不签名任何Header时为null
+    private final String signatureHeaders;
+
+    private final String urlPrefix;
+
+    private final Signer signer;
+
+    //创建时是否开启了X-Ca-Nonce
+    private final boolean nonceEnabled;
+
+    private RequestTemplate(Request request) {
+        this.method = request.getMethod();
+        this.httpMethod = toHttpMethod(method);
+        this.host = request.getHost();
+        this.path = request.getPath();
+        this.appKey = request.getAppKey();
+        this.appSecret = request.getAppSecret();
+        this.timeout = request.getTimeout();
+
+        Map<String, String> fixedHeaders = new HashMap<String, String>();
+        if (null != request.getHeaders()) {
+            fixedHeaders.putAll(request.getHeaders());
+        }
+        //去掉上次发送时写入的签名Header
+        fixedHeaders.remove(SystemHeader.X_CA_SIGNATURE);
+        fixedHeaders.remove(SystemHeader.X_CA_SIGNATURE_HEADERS);
+        fixedHeaders.remove(SystemHeader.X_CA_TIMESTAMP);
+        fixedHeaders.remove(SystemHeader.X_CA_KEY);
+        this.nonceEnabled = HttpUtil.isNonceEnabled();
+        if (nonceEnabled) {
+            fixedHeaders.remove(SystemHeader.X_CA_NONCE);
+        }
+        if (Method.POST_FORM == method || Method.PUT_FORM == method) {
+            fixedHeaders.put(HttpHeader.HTTP_HEADER_CONTENT_TYPE, ContentType.CONTENT_TYPE_FORM);
+        }
+        this.headers = Collections.unmodifiableMap(fixedHeaders);
+        this.querys = null == request.getQuerys() ? Collections.<String, String>emptyMap()
+                : Collections.unmodifiableMap(new HashMap<String, String>(request.getQuerys()));
+        this.signHeaderPrefixList = null == request.getSignHeaderPrefixList() ? null
+                : Collections.unmodifiableList(new ArrayList<String>(request.getSignHeaderPrefixList()));
+
+        //发送时还会加入X-Ca-Timestamp、X-Ca-Key及X-Ca-Nonce
+        List<String> headerNames = new ArrayList<String>(fixedHeaders.keySet());
+        headerNames.add(SystemHeader.X_CA_TIMESTAMP);
+        headerNames.add(SystemHeader.X_CA_KEY);
+        if (nonceEnabled) {
+            headerNames.add(SystemHeader.X_CA_NONCE);
+        }
+        this.signHeaderNames = SignUtil.selectHeadersToSign(headerNames, signHeaderPrefixList);
+        this.signatureHeaders = null == signHeaderPrefixList ? null
+                : StringUtils.join(signHeaderNames, Constants.SPE1);
+
+        this.urlPrefix = StringUtils.isBlank(path) ? host : host + path;
+        this.signer = SignUtil.getSigner(appSecret);
+    }
+
+    /**
+     * 以request的Method、Host、Path、APP KEY、密钥、超时时间、Header、Query及签名Header前缀创建模板,request本身的Body不会被使用
+     *
+     * @param request
+     * @return
+     */
+    public static RequestTemplate of(Request request) {
+        if (null == request) {
+            throw new IllegalArgumentException("request can not be null");
+        }
+        if (null == request.getMethod() || null == request.getHost() || null == request.getAppKey()
+                || null == request.getAppSecret()) {
+            throw new IllegalArgumentException("method, host, appKey and appSecret can not be null");
+        }
+        return new RequestTemplate(request);
+    }
+
+    /**
+     * 创建一次调用的Request,Header及Query为模板的副本,可继续添加Query及设置Body
+     * 之后新增的Header会随请求发送,但不参与签名
+     *
+     * @return
+     */
+    public Request newRequest() {
+        Request request = new Request(method, host, path, appKey, appSecret, timeout);
+        request.setHeaders(new HashMap<String, String>(headers));
+        request.setQuerys(new HashMap<String, String>(querys));
+        //签名时不会修改前缀列表,直接共享模板中的只读列表
+        request.setSignHeaderPrefixList(signHeaderPrefixList);
+        request.setTemplate(this);
+        return request;
+    }
+
+    /**
+     * 创建一次调用的Request并加入Query
+     *
+     * @param querys 本次调用的Query,与模板中的Query同名时覆盖
+     * @return
+     */
+    public Request newRequest(Map<String, String> querys) {
+        Request request = newRequest();
+        if (null != querys) {
+            request.getQuerys().putAll(querys);
+        }
+        return request;
+    }
+
+    /**
+     * request的Method、Host、Path、密钥及签名Header前缀是否仍与模板一致,不一致时按普通Request签名
+     *
+     * @param request
+     * @return
+     */
+    public boolean matches(Request request) {
+        return method == request.getMethod()
+                && StringUtils.equals(host, request.getHost())
+                && StringUtils.equals(path, request.getPath())
+                && StringUtils.equals(appKey, request.getAppKey())
+                && StringUtils.equals(appSecret, request.getAppSecret())
+                && null != request.getHeaders()
+                && matchesSignHeaderPrefixList(request.getSignHeaderPrefixList());
+    }
+
+    private boolean matchesSignHeaderPrefixList(List<String> prefixList) {
+        //newRequest共享模板中的列表,通常直接按引用命中
+        if (prefixList == signHeaderPrefixList) {
+            return true;
+        }
+        return null != prefixList && prefixList.equals(signHeaderPrefixList);
+    }
+
+    /**
+     * 使用预先排序的参与签名Header及签名器计算签名
+     *
+     * @param headers 本次调用的Header,需已包含X-Ca-Timestamp及X-Ca-Key
+     * @param querys
+     * @param bodys 表单参数,非表单请求传null
+     * @return
+     */
+    public String sign(Map<String, String> headers, Map<String, String> querys, Map<String, String> bodys) {
+        return SignUtil.sign(signer, httpMethod, path, headers, querys, bodys, signHeaderNames);
+    }
+
+    public Method getMethod() {
+        return method;
+    }
+
+    public String getHttpMethod() {
+        return httpMethod;
+    }
+
+    public String getHost() {
+        return host;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public String getAppKey() {
+        return appKey;
+    }
+
+    public int getTimeout() {
+        return timeout;
+    }
+
+    public Map<String, String> getHeaders() {
+        return headers;
+    }
+
+    public Map<String, String> getQuerys() {
+        return querys;
+    }
+
+    public List<String> getSignHeaderPrefixList() {
+        return signHeaderPrefixList;
+    }
+
+    /**
+     * X-Ca-Signature-Headers的值,签名Header前缀为null时返回null
+     *
+     * @return
+     */
+    public String getSignatureHeaders() {
+        return signatureHeaders;
+    }
+
+    /**
+     * Host+Path,发送时只需追加Query
+     *
+     * @return
+     */
+    public String getUrlPrefix() {
+        return urlPrefix;
+    }
+
+    /**
+     * 发送时是否生成X-Ca-Nonce,取决于创建模板时HttpUtil.isNonceEnabled
+     *
+     * @return
+     */
+    public boolean isNonceEnabled() {
+        return nonceEnabled;
+    }
+
+    private static String toHttpMethod(Method method) {
+        switch (method) {
+            case GET:
+                return HttpMethod.GET;
+            case POST_FORM:
+            case POST_STRING:
+            case POST_BYTES:
+                return HttpMethod.POST;
+            case PUT_FORM:
+            case PUT_STRING:
+            case PUT_BYTES:
+                return HttpMethod.PUT;
+            case DELETE:
+                return HttpMethod.DELETE;
+            default:
+                throw new IllegalArgumentException(String.format("unsupported method:%s", method));
+        }
+    }
+}
@@ -1,15 +1,31 @@
 package com.aliyun.api.gateway.demo;
 
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
+import java.lang.reflect.Type;
+import java.nio.charset.Charset;
 import java.util.HashMap;
 import java.util.Map;
 
-public class Response {
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.TypeReference;
+import com.alibaba.fastjson.annotation.JSONField;
+import com.aliyun.api.gateway.demo.constant.Constants;
+
+public class Response implements Closeable {
     private int statusCode;
     private String contentType;
     private String requestId;
     private String errorMessage;
     private Map<String, String> headers;
     private String body;
+    //原始Body字节,getBody时才解码为字符串
+    private byte[] bodyBytes;
+    //流式Body,由Client.executeStreaming返回,使用完毕需调用close
+    private InputStream bodyStream;
     
     public Response() {
 		
@@ -71,11 +87,152 @@ public class Response {
 	}
 
 	public String getBody() {
+		if (null == body && null != bodyBytes) {
+			try {
+				body = new String(bodyBytes, Constants.ENCODING);
+			} catch (UnsupportedEncodingException e) {
+				throw new RuntimeException(e.getMessage(), e);
+			}
+		}
 		return body;
 	}
 
 	public void setBody(String body) {
 		this.body = body;
+		this.bodyBytes = null;
+	}
+
+	/**
+	 * 原始Body字节,未解码
+	 *
+	 * @return
+	 */
+	@JSONField(serialize = false)
+	public byte[] getBodyBytes() {
+		if (null == bodyBytes && null != body) {
+			try {
+				bodyBytes = body.getBytes(Constants.ENCODING);
+			} catch (UnsupportedEncodingException e) {
+				throw new RuntimeException(e.getMessage(), e);
+			}
+		}
+		return bodyBytes;
+	}
+
+	public void setBodyBytes(byte[] bodyBytes) {
+		this.bodyBytes = bodyBytes;
+		this.body = null;
+	}
+
+	/**
+	 * Body输入流
+	 * 流式响应直接返回网络流,只能读取一次;否则返回已缓冲Body的输入流
+	 *
+	 * @return
+	 */
+	@JSONField(serialize = false)
+	public InputStream getBodyStream() {
+		if (null != bodyStream) {
+			return bodyStream;
+		}
+		byte[] bytes = getBodyBytes();
+		return null == bytes ? null : new ByteArrayInputStream(bytes);
+	}
+
+	public void setBodyStream(InputStream bodyStream) {
+		this.bodyStream = bodyStream;
+	}
+
+	/**
+	 * 将JSON Body解析为指定类型
+	 * 直接从Body字节或流式Body解析,不生成中间字符串;流式Body读取后自动关闭,Body为空时返回null
+	 *
+	 * @param clazz
+	 * @return
+	 * @throws IOException
+	 */
+	public <T> T as(Class<T> clazz) throws IOException {
+		return parse(clazz);
+	}
+
+	/**
+	 * 将JSON Body解析为泛型类型,如new TypeReference&lt;List&lt;Item&gt;&gt;() {}
+	 *
+	 * @param type
+	 * @return
+	 * @throws IOException
+	 */
+	public <T> T as(TypeReference<T> type) throws IOException {
+		return parse(type.getType());
+	}
+
+	/**
+	 * 逐个解析JSON数组Body中的元素
+	 * 配合Client.executeStreaming使用时,大数组边读取边解析,内存中只保留当前元素
+	 *
+	 * @param clazz 元素类型
+	 * @return 需读完或调用close以释放连接,提前close会中断请求
+	 */
+	public <T> JsonArrayIterator<T> iterateArray(Class<T> clazz) {
+		return new JsonArrayIterator<T>(getBodyStream(), clazz);
+	}
+
+	/**
+	 * 逐个解析JSON数组Body中的元素
+	 *
+	 * @param type 元素类型
+	 * @return 需读完或调用close以释放连接
+	 */
+	public <T> JsonArrayIterator<T> iterateArray(TypeReference<T> type) {
+		return new JsonArrayIterator<T>(getBodyStream(), type.getType());
+	}
+
+	private <T> T parse(Type type) throws IOException {
+		if (null != bodyStream) {
+			try {
+				return JSON.parseObject(bodyStream, Charset.forName(Constants.ENCODING), type);
+			} finally {
+				close();
+			}
+		}
+		if (null != bodyBytes) {
+			return 0 == bodyBytes.length ? null : JSON.<T>parseObject(bodyBytes, type);
+		}
+		return null == body ? null : JSON.<T>parseObject(body, type);
+	}
+
+	/**
+	 * 关闭流式Body,释放底层连接
+	 * Body已读完时连接归还连接池;未读完时中断请求并关闭连接,不会读取剩余的Body
+	 */
+	public void close() throws IOException {
+		if (null != bodyStream) {
+			bodyStream.close();
+		}
+	}
+
+	/**
+	 * 复制响应,Header及Body均为独立副本;流式Body无法复制
+	 *
+	 * @return
+	 */
+	public Response copy() {
+		if (null != bodyStream) {
+			throw new IllegalStateException("streaming response can not be copied");
+		}
+		Response copy = new Response();
+		copy.statusCode = statusCode;
+		copy.contentType = contentType;
+		copy.requestId = requestId;
+		copy.errorMessage = errorMessage;
+		if (null != headers) {
+			copy.headers = new HashMap<String, String>(headers);
+		}
+		copy.body = body;
+		if (null != bodyBytes) {
+			copy.bodyBytes = bodyBytes.clone();
+		}
+		return copy;
 	}
     
     
@@ -0,0 +1,110 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.aliyun.api.gateway.demo;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 重试预算,令牌桶实现
+ * 每次重试消耗一个令牌,令牌按固定速率补充;网关大面积故障时重试总量被限制在补充速率以内,避免重试放大流量
+ */
+public class RetryBudget {
+
+    private final double tokensPerSecond;
+
+    private final double maxTokens;
+
+    private double tokens;
+
+    private long lastRefillNanos;
+
+    private long acquired;
+
+    private long exhausted;
+
+    /**
+     * @param tokensPerSecond 每秒补充的令牌数,即持续故障时每秒最多重试次数
+     * @param maxTokens 令牌上限,即可突发的重试次数;创建时令牌是满的
+     */
+    public RetryBudget(double tokensPerSecond, int maxTokens) {
+        if (tokensPerSecond < 0 || maxTokens < 0) {
+            throw new IllegalArgumentException("tokensPerSecond and maxTokens can not be negative");
+        }
+        this.tokensPerSecond = tokensPerSecond;
+        this.maxTokens = maxTokens;
+        this.tokens = maxTokens;
+        this.lastRefillNanos = System.nanoTime();
+    }
+
+    /**
+     * 尝试获取一次重试的令牌
+     *
+     * @return 预算耗尽时返回false
+     */
+    public synchronized boolean tryAcquire() {
+        refill();
+        if (tokens >= 1) {
+            tokens -= 1;
+            acquired++;
+            return true;
+        }
+        exhausted++;
+        return false;
+    }
+
+    private void refill() {
+        long now = System.nanoTime();
+        double elapsedSeconds = (now - lastRefillNanos) / (double) TimeUnit.SECONDS.toNanos(1);
+        tokens = Math.min(maxTokens, tokens + elapsedSeconds * tokensPerSecond);
+        lastRefillNanos = now;
+    }
+
+    /**
+     * 当前可用令牌数
+     *
+     * @return
+     */
+    public synchronized double getAvailableTokens() {
+        refill();
+        return tokens;
+    }
+
+    /**
+     * 已放行的重试次数
+     *
+     * @return
+     */
+    public synchronized long getAcquired() {
+        return acquired;
+    }
+
+    /**
+     * 因预算耗尽而放弃的重试次数
+     *
+     * @return
+     */
+    public synchronized long getExhausted() {
+        return exhausted;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("tokens=%.1f/%.0f acquired=%d exhausted=%d", tokens, maxTokens, acquired, exhausted);
+    }
+}
@@ -0,0 +1,356 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.aliyun.api.gateway.demo;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.ConnectException;
+import java.net.NoRouteToHostException;
+import java.net.SocketTimeoutException;
+import java.net.URI;
+import java.net.UnknownHostException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.conn.ConnectTimeoutException;
+import org.apache.http.conn.ConnectionPoolTimeoutException;
+
+import com.aliyun.api.gateway.demo.constant.HttpHeader;
+import com.aliyun.api.gateway.demo.constant.SystemHeader;
+import com.aliyun.api.gateway.demo.enums.Method;
+import com.aliyun.api.gateway.demo.metrics.ClientMetrics;
+import com.aliyun.api.gateway.demo.metrics.Metrics;
+import com.aliyun.api.gateway.demo.transport.Transport;
+import com.aliyun.api.gateway.demo.util.HttpUtil;
+import com.aliyun.api.gateway.demo.util.NonceUtil;
+
+/**
+ * 请求重试策略
+ * 指数退避加全随机抖动,重试次数受RetryBudget限制;每次重试重新签名,带有X-Ca-Nonce的请求会换用新的Nonce
+ * 非幂等请求(POST)只在请求确定未发出时重试,如连接失败、获取连接超时
+ */
+public class RetryPolicy {
+
+    private final int maxAttempts;
+
+    private final long baseDelayMillis;
+
+    private final long maxDelayMillis;
+
+    private final Set<Integer> retryStatusCodes;
+
+    private final boolean retryNonIdempotent;
+
+    private final RetryBudget budget;
+
+    private RetryPolicy(Builder builder) {
+        this.maxAttempts = builder.maxAttempts;
+        this.baseDelayMillis = builder.baseDelayMillis;
+        this.maxDelayMillis = builder.maxDelayMillis;
+        this.retryStatusCodes = Collections.unmodifiableSet(new HashSet<Integer>(builder.retryStatusCodes));
+        this.retryNonIdempotent = builder.retryNonIdempotent;
+        this.budget = builder.budget;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * 请求方法是否幂等,GET、PUT、DELETE重复发送不会产生额外副作用
+     *
+     * @param method
+     * @return
+     */
+    public static boolean isIdempotent(Method method) {
+        return Method.POST_FORM != method && Method.POST_STRING != method && Method.POST_BYTES != method;
+    }
+
+    /**
+     * 请求失败时是否重试
+     *
+     * @param cause 发送请求时抛出的异常
+     * @param idempotent 请求是否可以重复发送
+     * @return
+     */
+    public boolean isRetryable(Throwable cause, boolean idempotent) {
+        if (!(cause instanceof IOException)) {
+            return false;
+        }
+        //请求未发出,任何方法都可以安全重试
+        if (isNotSent(cause)) {
+            return true;
+        }
+        //被中断的请求不重试
+        if (cause instanceof InterruptedIOException && !(cause instanceof SocketTimeoutException)) {
+            return false;
+        }
+        return idempotent || retryNonIdempotent;
+    }
+
+    /**
+     * 异常是否表示请求尚未发出
+     */
+    private static boolean isNotSent(Throwable cause) {
+        return cause instanceof ConnectException || cause instanceof ConnectTimeoutException
+                || cause instanceof ConnectionPoolTimeoutException || cause instanceof UnknownHostException
+                || cause instanceof NoRouteToHostException;
+    }
+
+    /**
+     * 收到响应时是否重试
+     *
+     * @param statusCode
+     * @param idempotent 请求是否可以重复发送
+     * @return
+     */
+    public boolean isRetryable(int statusCode, boolean idempotent) {
+        return retryStatusCodes.contains(statusCode) && (idempotent || retryNonIdempotent);
+    }
+
+    /**
+     * 第retry次重试前的等待时间,在0到min(maxDelay, baseDelay * 2^(retry-1))之间均匀随机
+     *
+     * @param retry 从1开始
+     * @return 单位毫秒
+     */
+    public long backoffMillis(int retry) {
+        long ceiling = baseDelayMillis << Math.min(retry - 1, 30);
+        if (ceiling <= 0 || ceiling > maxDelayMillis) {
+            ceiling = maxDelayMillis;
+        }
+        return ThreadLocalRandom.current().nextLong(ceiling + 1);
+    }
+
+    /**
+     * 按策略发送请求,每次尝试重新签名
+     *
+     * @param request
+     * @param first 已签名的首次请求,为null时在此构建
+     * @param transport
+     * @param streaming
+     * @param inFlight 记录正在发送的请求以便异步调用中断,可为null
+     * @return 最后一次尝试的响应
+     * @throws Exception 最后一次尝试的异常
+     */
+    Response execute(Request request, HttpRequestBase first, Transport transport, boolean streaming,
+            AtomicReference<HttpRequestBase> inFlight) throws Exception {
+        boolean idempotent = isIdempotent(request.getMethod());
+        //流式Body只能读取一次,已发出后无法重放
+        boolean replayable = null == request.getStreamBody();
+        HttpRequestBase httpRequest = first;
+        for (int attempt = 1; ; attempt++) {
+            if (null == httpRequest) {
+                httpRequest = HttpUtil.buildRequest(renewNonce(request));
+                if (null != inFlight) {
+                    HttpRequestBase previous = inFlight.getAndSet(httpRequest);
+                    if (null != previous && previous.isAborted()) {
+                        httpRequest.abort();
+                    }
+                }
+            }
+
+            Response response = null;
+            Exception failure = null;
+            try {
+                response = transport.execute(httpRequest, request.getTimeout(), streaming);
+            } catch (Exception e) {
+                failure = e;
+            }
+
+            long delay;
+            if (null != failure) {
+                if (attempt >= maxAttempts || httpRequest.isAborted() || !isRetryable(failure, idempotent)
+                        || !(replayable || isNotSent(failure))) {
+                    throw failure;
+                }
+                delay = backoffMillis(attempt);
+            } else {
+                if (attempt >= maxAttempts || !replayable || !isRetryable(response.getStatusCode(), idempotent)) {
+                    return response;
+                }
+                delay = backoffMillis(attempt);
+                long retryAfter = retryAfterMillis(response);
+                if (retryAfter > maxDelayMillis) {
+                    return response;
+                }
+                delay = Math.max(delay, retryAfter);
+            }
+
+            ClientMetrics metrics = Metrics.getClientMetrics();
+            URI uri = httpRequest.getURI();
+            if (null != budget && !budget.tryAcquire()) {
+                if (null != metrics) {
+                    metrics.recordRetryBudgetExhausted(Metrics.host(uri), Metrics.path(uri),
+                            httpRequest.getMethod());
+                }
+                if (null != failure) {
+                    throw failure;
+                }
+                return response;
+            }
+            if (null != metrics) {
+                metrics.recordRetry(Metrics.host(uri), Metrics.path(uri), httpRequest.getMethod(),
+                        attempt + 1);
+            }
+            if (null != response) {
+                //释放流式响应占用的连接
+                response.close();
+            }
+            if (delay > 0) {
+                Thread.sleep(delay);
+            }
+            if (httpRequest.isAborted()) {
+                throw new InterruptedIOException("request aborted");
+            }
+            httpRequest = null;
+        }
+    }
+
+    /**
+     * 带有X-Ca-Nonce的请求换用新的Nonce,避免重试被网关当作重放拒绝
+     */
+    private static Request renewNonce(Request request) {
+        Map<String, String> headers = request.getHeaders();
+        if (null == headers || !headers.containsKey(SystemHeader.X_CA_NONCE)) {
+            return request;
+        }
+        return request.withHeader(SystemHeader.X_CA_NONCE, NonceUtil.newNonce());
+    }
+
+    /**
+     * 解析以秒为单位的Retry-After,没有或无法解析时返回0
+     */
+    private static long retryAfterMillis(Response response) {
+        Map<String, String> headers = response.getHeaders();
+        if (null == headers) {
+            return 0;
+        }
+        for (Map.Entry<String, String> entry : headers.entrySet()) {
+            if (HttpHeader.HTTP_HEADER_RETRY_AFTER.equalsIgnoreCase(entry.getKey()) && null != entry.getValue()) {
+                try {
+                    return Math.max(0, Long.parseLong(entry.getValue().trim()) * 1000);
+                } catch (NumberFormatException e) {
+                    return 0;
+                }
+            }
+        }
+        return 0;
+    }
+
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    public long getBaseDelayMillis() {
+        return baseDelayMillis;
+    }
+
+    public long getMaxDelayMillis() {
+        return maxDelayMillis;
+    }
+
+    public Set<Integer> getRetryStatusCodes() {
+        return retryStatusCodes;
+    }
+
+    public boolean isRetryNonIdempotent() {
+        return retryNonIdempotent;
+    }
+
+    public RetryBudget getBudget() {
+        return budget;
+    }
+
+    public static class Builder {
+
+        private int maxAttempts = 3;
+
+        private long baseDelayMillis = 50;
+
+        private long maxDelayMillis = 2000;
+
+        private Set<Integer> retryStatusCodes = new HashSet<Integer>(Arrays.asList(502, 503, 504));
+
+        private boolean retryNonIdempotent;
+
+        private RetryBudget budget = new RetryBudget(10, 100);
+
+        private Builder() {
+        }
+
+        /**
+         * @param maxAttempts 包括首次在内的最多尝试次数,默认3
+         */
+        public Builder maxAttempts(int maxAttempts) {
+            if (maxAttempts < 1) {
+                throw new IllegalArgumentException("maxAttempts must be at least 1");
+            }
+            this.maxAttempts = maxAttempts;
+            return this;
+        }
+
+        /**
+         * @param baseDelayMillis 首次重试的最大等待时间,之后每次翻倍,默认50毫秒
+         * @param maxDelayMillis 单次等待时间上限,默认2000毫秒;Retry-After超过该值时不再重试
+         */
+        public Builder backoff(long baseDelayMillis, long maxDelayMillis) {
+            if (baseDelayMillis < 0 || maxDelayMillis < baseDelayMillis) {
+                throw new IllegalArgumentException("require 0 <= baseDelayMillis <= maxDelayMillis");
+            }
+            this.baseDelayMillis = baseDelayMillis;
+            this.maxDelayMillis = maxDelayMillis;
+            return this;
+        }
+
+        /**
+         * @param statusCodes 需要重试的状态码,默认502、503、504
+         */
+        public Builder retryStatusCodes(Integer... statusCodes) {
+            this.retryStatusCodes = new HashSet<Integer>(Arrays.asList(statusCodes));
+            return this;
+        }
+
+        /**
+         * @param retryNonIdempotent POST请求在可能已发出时是否也重试,默认false
+         */
+        public Builder retryNonIdempotent(boolean retryNonIdempotent) {
+            this.retryNonIdempotent = retryNonIdempotent;
+            return this;
+        }
+
+        /**
+         * @param budget 重试预算,默认每秒补充10次、最多突发100次;为null时不限制
+         */
+        public Builder budget(RetryBudget budget) {
+            this.budget = budget;
+            return this;
+        }
+
+        public RetryPolicy build() {
+            return new RetryPolicy(this);
+        }
+    }
+}
@@ -0,0 +1,170 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.aliyun.api.gateway.demo.cache;
+
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 响应缓存存储
+ * 按估算占用的字节数限制容量,超出时按LRU淘汰;子类决定Body存放位置
+ * 每条缓存除Body外还按Key及Header长度加固定开销计入容量,Body为空的响应也会被淘汰
+ *
+ * @param <T> Body的存放形式
+ */
+public abstract class CacheStorage<T> {
+    //每条缓存Map节点、Slot及CachedResponse等对象的估算开销,单位字节
+    static final int ENTRY_OVERHEAD = 256;
+
+    private final long maxBytes;
+
+    private long bytes;
+
+    private final LinkedHashMap<String, Slot<T>> slots = new LinkedHashMap<String, Slot<T>>(16, 0.75f, true);
+
+    /**
+     * @param maxBytes 缓存的最大总字节数,包括Body及每条缓存的估算开销
+     */
+    protected CacheStorage(long maxBytes) {
+        if (maxBytes <= 0) {
+            throw new IllegalArgumentException("maxBytes must be positive");
+        }
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * 保存Body,在锁外调用
+     * body可能已是本存储存放的形式(重新验证后再次放入),此时可直接沿用;不得修改body的内容
+     *
+     * @param body
+     * @return 存放后的Body
+     */
+    protected abstract T store(ByteBuffer body);
+
+    /**
+     * 读取Body,在锁内调用,只返回视图不复制内容
+     *
+     * @param stored
+     * @return
+     */
+    protected abstract ByteBuffer load(T stored);
+
+    /**
+     * 查找缓存
+     * 返回的Body是缓存内容的视图,由CachedResponse.toResponse在锁外复制
+     *
+     * @param key
+     * @return 不存在时返回null
+     */
+    public synchronized CachedResponse get(String key) {
+        Slot<T> slot = slots.get(key);
+        if (null == slot) {
+            return null;
+        }
+        return slot.response.withBody(load(slot.body));
+    }
+
+    /**
+     * 放入缓存,Body超过容量时不缓存
+     *
+     * @param key
+     * @param response
+     */
+    public void put(String key, CachedResponse response) {
+        ByteBuffer body = response.body();
+        long size = body.remaining() + ENTRY_OVERHEAD + 2L * key.length() + response.headerBytes();
+        if (size > maxBytes) {
+            remove(key);
+            return;
+        }
+        Slot<T> slot = new Slot<T>(response.withBody(null), store(body), size);
+        synchronized (this) {
+            Slot<T> old = slots.put(key, slot);
+            if (null != old) {
+                bytes -= old.size;
+            }
+            bytes += size;
+            Iterator<Map.Entry<String, Slot<T>>> it = slots.entrySet().iterator();
+            while (bytes > maxBytes && it.hasNext()) {
+                Slot<T> eldest = it.next().getValue();
+                it.remove();
+                bytes -= eldest.size;
+            }
+        }
+    }
+
+    /**
+     * 删除缓存
+     *
+     * @param key
+     */
+    public synchronized void remove(String key) {
+        Slot<T> old = slots.remove(key);
+        if (null != old) {
+            bytes -= old.size;
+        }
+    }
+
+    /**
+     * 清空缓存
+     */
+    public synchronized void clear() {
+        slots.clear();
+        bytes = 0;
+    }
+
+    /**
+     * 缓存的响应数
+     *
+     * @return
+     */
+    public synchronized int getCount() {
+        return slots.size();
+    }
+
+    /**
+     * 缓存估算占用的总字节数,包括Body及每条缓存的开销
+     *
+     * @return
+     */
+    public synchronized long getBytes() {
+        return bytes;
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    private static class Slot<T> {
+        //不含Body的响应
+        private final CachedResponse response;
+
+        private final T body;
+
+        private final long size;
+
+        Slot(CachedResponse response, T body, long size) {
+            this.response = response;
+            this.body = body;
+            this.size = size;
+        }
+    }
+}
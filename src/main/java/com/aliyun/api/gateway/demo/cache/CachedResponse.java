@@ -0,0 +1,294 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.aliyun.api.gateway.demo.cache;
+
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.http.impl.cookie.DateParseException;
+import org.apache.http.impl.cookie.DateUtils;
+
+import com.aliyun.api.gateway.demo.Response;
+import com.aliyun.api.gateway.demo.constant.HttpHeader;
+
+/**
+ * 缓存的响应
+ * 按Cache-Control(max-age/no-cache/no-store)、Age及Expires计算新鲜期,过期后使用ETag/Last-Modified条件请求重新验证
+ */
+public class CachedResponse {
+
+    private final int statusCode;
+
+    private final Map<String, String> headers;
+
+    //只读使用,读取时先duplicate,可能位于堆外
+    private final ByteBuffer body;
+
+    //新鲜期截止时间,过期或需每次验证时不大于缓存时间
+    private final long expiresAt;
+
+    private final String etag;
+
+    private final String lastModified;
+
+    private CachedResponse(int statusCode, Map<String, String> headers, ByteBuffer body, long expiresAt) {
+        this.statusCode = statusCode;
+        this.headers = headers;
+        this.body = body;
+        this.expiresAt = expiresAt;
+        this.etag = header(headers, HttpHeader.HTTP_HEADER_ETAG);
+        this.lastModified = header(headers, HttpHeader.HTTP_HEADER_LAST_MODIFIED);
+    }
+
+    /**
+     * 根据响应创建缓存,不可缓存时返回null
+     * 只缓存200响应;no-store不缓存;没有新鲜期且没有ETag/Last-Modified时无法验证,也不缓存
+     *
+     * @param response
+     * @param now 收到响应的时间
+     * @return
+     */
+    public static CachedResponse of(Response response, long now) {
+        if (200 != response.getStatusCode() || null == response.getHeaders()) {
+            return null;
+        }
+        Map<String, String> headers = new HashMap<String, String>(response.getHeaders());
+        long freshness = freshnessMillis(headers);
+        if (freshness < 0) {
+            return null;
+        }
+        byte[] body = response.getBodyBytes();
+        CachedResponse cached = new CachedResponse(200, headers,
+                ByteBuffer.wrap(null == body ? new byte[0] : body.clone()), now + freshness);
+        if (0 == freshness && null == cached.etag && null == cached.lastModified) {
+            return null;
+        }
+        return cached;
+    }
+
+    /**
+     * 收到304后用新的响应头刷新新鲜期,Body保持不变
+     *
+     * @param notModified 304响应
+     * @param now
+     * @return 刷新后的缓存,响应要求不再缓存时返回null
+     */
+    public CachedResponse revalidated(Response notModified, long now) {
+        Map<String, String> merged = new HashMap<String, String>(headers);
+        if (null != notModified.getHeaders()) {
+            for (Map.Entry<String, String> entry : notModified.getHeaders().entrySet()) {
+                if (null == entry.getKey() || "Content-Length".equalsIgnoreCase(entry.getKey())) {
+                    continue;
+                }
+                removeIgnoreCase(merged, entry.getKey());
+                merged.put(entry.getKey(), entry.getValue());
+            }
+        }
+        long freshness = freshnessMillis(merged);
+        if (freshness < 0) {
+            return null;
+        }
+        return new CachedResponse(statusCode, merged, body, now + freshness);
+    }
+
+    /**
+     * 是否仍在新鲜期内
+     *
+     * @param now
+     * @return
+     */
+    public boolean isFresh(long now) {
+        return now < expiresAt;
+    }
+
+    /**
+     * 是否可以通过条件请求验证
+     *
+     * @return
+     */
+    public boolean isRevalidatable() {
+        return null != etag || null != lastModified;
+    }
+
+    /**
+     * 生成新的Response对象,每次调用返回独立的副本
+     * Body只在此处复制一次,不在缓存存储的锁内进行
+     *
+     * @return
+     */
+    public Response toResponse() {
+        Response response = new Response();
+        response.setStatusCode(statusCode);
+        response.setHeaders(new HashMap<String, String>(headers));
+        response.setContentType(header(headers, HttpHeader.HTTP_HEADER_CONTENT_TYPE));
+        response.setRequestId(header(headers, "X-Ca-Request-Id"));
+        response.setErrorMessage(header(headers, "X-Ca-Error-Message"));
+        byte[] bytes = new byte[body.remaining()];
+        body.duplicate().get(bytes);
+        response.setBodyBytes(bytes);
+        return response;
+    }
+
+    /**
+     * 替换Body,供缓存存储将Body转存到其他位置
+     *
+     * @param body
+     * @return
+     */
+    public CachedResponse withBody(ByteBuffer body) {
+        return new CachedResponse(statusCode, headers, body, expiresAt);
+    }
+
+    public int getStatusCode() {
+        return statusCode;
+    }
+
+    /**
+     * Body的只读视图,position与limit独立于缓存
+     *
+     * @return
+     */
+    public ByteBuffer getBody() {
+        return body.asReadOnlyBuffer();
+    }
+
+    /**
+     * Header按每个字符2字节估算的占用
+     */
+    long headerBytes() {
+        long bytes = 0;
+        for (Map.Entry<String, String> entry : headers.entrySet()) {
+            bytes += 2L * (length(entry.getKey()) + length(entry.getValue()));
+        }
+        return bytes;
+    }
+
+    private static int length(String value) {
+        return null == value ? 0 : value.length();
+    }
+
+    /**
+     * 供缓存存储直接转存Body,不复制内容
+     */
+    ByteBuffer body() {
+        return body.duplicate();
+    }
+
+    public long getExpiresAt() {
+        return expiresAt;
+    }
+
+    public String getEtag() {
+        return etag;
+    }
+
+    public String getLastModified() {
+        return lastModified;
+    }
+
+    /**
+     * 按响应头计算新鲜期
+     *
+     * @return 毫秒;0表示每次都需验证;-1表示不可缓存
+     */
+    private static long freshnessMillis(Map<String, String> headers) {
+        String cacheControl = header(headers, HttpHeader.HTTP_HEADER_CACHE_CONTROL);
+        long maxAge = -1;
+        if (null != cacheControl) {
+            for (String directive : cacheControl.split(",")) {
+                directive = directive.trim().toLowerCase();
+                if (directive.equals("no-store")) {
+                    return -1;
+                } else if (directive.equals("no-cache")) {
+                    return 0;
+                } else if (directive.startsWith("max-age=")) {
+                    maxAge = parseSeconds(directive.substring("max-age=".length()));
+                }
+            }
+        }
+
+        long freshness;
+        if (maxAge >= 0) {
+            freshness = maxAge * 1000;
+        } else {
+            freshness = expiresMillis(headers);
+        }
+        long age = parseSeconds(header(headers, HttpHeader.HTTP_HEADER_AGE));
+        if (age > 0) {
+            freshness -= age * 1000;
+        }
+        return Math.max(freshness, 0);
+    }
+
+    private static long expiresMillis(Map<String, String> headers) {
+        String expires = header(headers, HttpHeader.HTTP_HEADER_EXPIRES);
+        if (null == expires) {
+            return 0;
+        }
+        try {
+            long expiresAt = DateUtils.parseDate(expires).getTime();
+            String date = header(headers, HttpHeader.HTTP_HEADER_DATE);
+            long dateAt = null == date ? System.currentTimeMillis() : DateUtils.parseDate(date).getTime();
+            return expiresAt - dateAt;
+        } catch (DateParseException e) {
+            //无法解析的Expires视为已过期
+            return 0;
+        }
+    }
+
+    private static long parseSeconds(String value) {
+        if (StringUtils.isBlank(value)) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(value.trim().replace("\"", ""));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * 忽略大小写读取Header
+     */
+    static String header(Map<String, String> headers, String name) {
+        if (null == headers) {
+            return null;
+        }
+        String value = headers.get(name);
+        if (null != value) {
+            return value;
+        }
+        for (Map.Entry<String, String> entry : headers.entrySet()) {
+            if (name.equalsIgnoreCase(entry.getKey())) {
+                return entry.getValue();
+            }
+        }
+        return null;
+    }
+
+    private static void removeIgnoreCase(Map<String, String> headers, String name) {
+        for (String key : headers.keySet().toArray(new String[headers.size()])) {
+            if (name.equalsIgnoreCase(key)) {
+                headers.remove(key);
+            }
+        }
+    }
+}
@@ -0,0 +1,51 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.aliyun.api.gateway.demo.cache;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Body存放在堆内的缓存存储
+ */
+public class HeapCacheStorage extends CacheStorage<byte[]> {
+
+    /**
+     * @param maxBytes 缓存的最大总字节数,包括Body及每条缓存的估算开销
+     */
+    public HeapCacheStorage(long maxBytes) {
+        super(maxBytes);
+    }
+
+    @Override
+    protected byte[] store(ByteBuffer body) {
+        //CachedResponse.of已复制过Body,完整包装数组时直接沿用
+        if (body.hasArray() && 0 == body.arrayOffset() && 0 == body.position()
+                && body.remaining() == body.array().length) {
+            return body.array();
+        }
+        byte[] bytes = new byte[body.remaining()];
+        body.get(bytes);
+        return bytes;
+    }
+
+    @Override
+    protected ByteBuffer load(byte[] stored) {
+        return ByteBuffer.wrap(stored);
+    }
+}
@@ -0,0 +1,52 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.aliyun.api.gateway.demo.cache;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Body存放在堆外内存的缓存存储
+ * 大量缓存数据不占用堆空间,减轻GC压力;被淘汰的Body在DirectByteBuffer被回收时释放,总量受-XX:MaxDirectMemorySize限制
+ */
+public class OffHeapCacheStorage extends CacheStorage<ByteBuffer> {
+
+    /**
+     * @param maxBytes 缓存的最大总字节数,包括Body及每条缓存的估算开销
+     */
+    public OffHeapCacheStorage(long maxBytes) {
+        super(maxBytes);
+    }
+
+    @Override
+    protected ByteBuffer store(ByteBuffer body) {
+        //重新验证后放回的Body已在堆外
+        if (body.isDirect()) {
+            return body;
+        }
+        ByteBuffer buffer = ByteBuffer.allocateDirect(body.remaining());
+        buffer.put(body);
+        buffer.flip();
+        return buffer;
+    }
+
+    @Override
+    protected ByteBuffer load(ByteBuffer stored) {
+        return stored.duplicate();
+    }
+}
@@ -0,0 +1,176 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.aliyun.api.gateway.demo.cache;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.http.client.methods.HttpRequestBase;
+
+import com.aliyun.api.gateway.demo.Client;
+import com.aliyun.api.gateway.demo.Request;
+import com.aliyun.api.gateway.demo.Response;
+import com.aliyun.api.gateway.demo.constant.HttpHeader;
+import com.aliyun.api.gateway.demo.enums.Method;
+import com.aliyun.api.gateway.demo.util.HttpUtil;
+import com.aliyun.api.gateway.demo.util.RequestKey;
+import com.aliyun.api.gateway.demo.util.SingleFlight;
+
+/**
+ * GET请求的客户端响应缓存
+ * 新鲜期内直接返回缓存;过期后带If-None-Match/If-Modified-Since重新验证,304时沿用缓存的Body;
+ * 并发的相同请求合并为一次网关调用
+ */
+public class ResponseCache {
+
+    private final CacheStorage<?> storage;
+
+    //合并相同Key的网关调用
+    private final SingleFlight<String, Response> flights = new SingleFlight<String, Response>() {
+        @Override
+        protected Response share(Response value) {
+            return value.copy();
+        }
+    };
+
+    private final AtomicLong hits = new AtomicLong();
+
+    private final AtomicLong misses = new AtomicLong();
+
+    private final AtomicLong revalidations = new AtomicLong();
+
+    /**
+     * @param storage 缓存存储,见HeapCacheStorage、OffHeapCacheStorage
+     */
+    public ResponseCache(CacheStorage<?> storage) {
+        if (null == storage) {
+            throw new IllegalArgumentException("storage can not be null");
+        }
+        this.storage = storage;
+    }
+
+    /**
+     * 发送GET请求,优先使用缓存
+     *
+     * @param request request对象
+     * @return 每次调用返回独立的Response对象
+     * @throws Exception
+     */
+    public Response execute(final Request request) throws Exception {
+        if (Method.GET != request.getMethod()) {
+            throw new IllegalArgumentException(String.format("only GET requests are cacheable, got %s", request.getMethod()));
+        }
+        final String key = RequestKey.of(request);
+        final CachedResponse cached = storage.get(key);
+        if (null != cached && cached.isFresh(System.currentTimeMillis()) && !isNoCache(request)) {
+            hits.incrementAndGet();
+            return cached.toResponse();
+        }
+
+        return flights.execute(key, new Callable<Response>() {
+            public Response call() throws Exception {
+                return fetch(key, request, cached);
+            }
+        });
+    }
+
+    private Response fetch(String key, Request request, CachedResponse cached) throws Exception {
+        HttpRequestBase httpRequest = HttpUtil.buildRequest(request);
+        //条件Header加在构建好的请求上,不修改调用方的Request
+        boolean conditional = null != cached && cached.isRevalidatable();
+        if (conditional) {
+            if (null != cached.getEtag()) {
+                httpRequest.setHeader(HttpHeader.HTTP_HEADER_IF_NONE_MATCH, cached.getEtag());
+            }
+            if (null != cached.getLastModified()) {
+                httpRequest.setHeader(HttpHeader.HTTP_HEADER_IF_MODIFIED_SINCE, cached.getLastModified());
+            }
+        }
+
+        //重试时重新签名的请求不带条件Header,服务端返回完整响应,按未命中处理
+        Response response = Client.executeSigned(request, httpRequest);
+        long now = System.currentTimeMillis();
+
+        if (conditional && 304 == response.getStatusCode()) {
+            revalidations.incrementAndGet();
+            CachedResponse refreshed = cached.revalidated(response, now);
+            if (null == refreshed) {
+                storage.remove(key);
+                refreshed = cached;
+            } else {
+                storage.put(key, refreshed);
+            }
+            return refreshed.toResponse();
+        }
+
+        misses.incrementAndGet();
+        CachedResponse fresh = CachedResponse.of(response, now);
+        if (null != fresh) {
+            storage.put(key, fresh);
+        } else if (null != cached && 200 == response.getStatusCode()) {
+            storage.remove(key);
+        }
+        return response;
+    }
+
+    private static boolean isNoCache(Request request) {
+        String cacheControl = CachedResponse.header(request.getHeaders(), HttpHeader.HTTP_HEADER_CACHE_CONTROL);
+        return null != cacheControl && cacheControl.toLowerCase().contains("no-cache");
+    }
+
+    /**
+     * 新鲜期内直接返回缓存的次数
+     *
+     * @return
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * 请求网关并收到完整响应的次数
+     *
+     * @return
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * 重新验证后沿用缓存的次数
+     *
+     * @return
+     */
+    public long getRevalidations() {
+        return revalidations.get();
+    }
+
+    /**
+     * 合并到其他请求的次数
+     *
+     * @return
+     */
+    public long getCoalesced() {
+        return flights.getShared();
+    }
+
+    public CacheStorage<?> getStorage() {
+        return storage;
+    }
+}
@@ -42,6 +42,26 @@ public class Constants {
     public static final String SPE5 = "?";
     //默认请求超时时间,单位毫秒
     public static final int DEFAULT_TIMEOUT = 1000;
+    //从连接池获取连接默认最长等待时间,单位毫秒,应短于请求超时以便连接池耗尽时快速失败
+    public static final long DEFAULT_CONNECTION_REQUEST_TIMEOUT = 200;
+    //连接池默认最大连接数
+    public static final int DEFAULT_MAX_TOTAL_CONNECTIONS = 200;
+    //连接池默认每个Host最大连接数
+    public static final int DEFAULT_MAX_CONNECTIONS_PER_ROUTE = 50;
+    //异步及批量请求默认最大并发数,与每个Host最大连接数一致,超出的请求排队而不是等待连接池超时
+    public static final int DEFAULT_ASYNC_CONCURRENCY = DEFAULT_MAX_CONNECTIONS_PER_ROUTE;
+    //空闲连接默认最长保持时间,单位毫秒
+    public static final long DEFAULT_KEEP_ALIVE = 30000;
+    //启用待签名固定部分缓存时建议的缓存数量,缓存默认关闭
+    public static final int DEFAULT_CANONICAL_CACHE_SIZE = 512;
+    //启用待签名固定部分缓存时建议的缓存时间,单位毫秒
+    public static final long DEFAULT_CANONICAL_CACHE_TTL = 10 * 60 * 1000;
+    //TLS会话缓存数量
+    public static final int DEFAULT_TLS_SESSION_CACHE_SIZE = 1024;
+    //TLS会话缓存时间,单位秒
+    public static final int DEFAULT_TLS_SESSION_TIMEOUT = 24 * 60 * 60;
+    //校验签名时X-Ca-Timestamp与当前时间允许的默认偏差,单位毫秒
+    public static final long DEFAULT_TIMESTAMP_TOLERANCE = 15 * 60 * 1000;
     //参与签名的系统Header前缀,只有指定前缀的Header才会参与到签名中
     public static final String CA_HEADER_TO_SIGN_PREFIX_SYSTEM = "X-Ca-";
 }
@@ -32,4 +32,20 @@ public class HttpHeader {
     public static final String HTTP_HEADER_USER_AGENT = "User-Agent";
     //请求Header Date
     public static final String HTTP_HEADER_DATE = "Date";
+    //响应Header Cache-Control
+    public static final String HTTP_HEADER_CACHE_CONTROL = "Cache-Control";
+    //重试等待时间
+    public static final String HTTP_HEADER_RETRY_AFTER = "Retry-After";
+    //响应Header Expires
+    public static final String HTTP_HEADER_EXPIRES = "Expires";
+    //响应Header Age
+    public static final String HTTP_HEADER_AGE = "Age";
+    //响应Header ETag
+    public static final String HTTP_HEADER_ETAG = "ETag";
+    //响应Header Last-Modified
+    public static final String HTTP_HEADER_LAST_MODIFIED = "Last-Modified";
+    //条件请求Header If-None-Match
+    public static final String HTTP_HEADER_IF_NONE_MATCH = "If-None-Match";
+    //条件请求Header If-Modified-Since
+    public static final String HTTP_HEADER_IF_MODIFIED_SINCE = "If-Modified-Since";
 }
@@ -0,0 +1,37 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.aliyun.api.gateway.demo.enums;
+
+/**
+ * 请求处理阶段
+ */
+public enum Phase {
+    //计算签名
+    SIGN,
+    //从连接池获取连接
+    CONNECTION_LEASE,
+    //建立新连接,https包含TLS握手
+    CONNECT,
+    //发送请求到收到响应头
+    SERVER,
+    //读取响应Body
+    BODY_READ,
+    //从获取连接到读取完响应的总耗时,不含签名
+    TOTAL;
+}
@@ -0,0 +1,60 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.aliyun.api.gateway.demo.enums;
+
+/**
+ * 签名校验结果
+ */
+public enum VerifyResult {
+    //校验通过
+    OK(null),
+    //X-Ca-Key缺失或未配置对应密钥
+    INVALID_APP_KEY("Invalid AppKey"),
+    //X-Ca-Signature缺失
+    MISSING_SIGNATURE("Empty Signature"),
+    //X-Ca-Timestamp缺失或无法解析
+    INVALID_TIMESTAMP("Invalid Timestamp"),
+    //校验时间戳时X-Ca-Timestamp未列入X-Ca-Signature-Headers,可被篡改
+    UNSIGNED_TIMESTAMP("Unsigned Timestamp"),
+    //X-Ca-Timestamp超出允许的时间偏差
+    EXPIRED_TIMESTAMP("Timestamp Expired"),
+    //签名不匹配
+    INVALID_SIGNATURE("Invalid Signature"),
+    //配置了NonceStore但X-Ca-Nonce缺失
+    MISSING_NONCE("Empty Nonce"),
+    //配置了NonceStore但X-Ca-Nonce未列入X-Ca-Signature-Headers,可被替换
+    UNSIGNED_NONCE("Unsigned Nonce"),
+    //X-Ca-Nonce在保存期内已使用过
+    NONCE_USED("Nonce Used");
+
+    private final String errorMessage;
+
+    VerifyResult(String errorMessage) {
+        this.errorMessage = errorMessage;
+    }
+
+    /**
+     * 可作为X-Ca-Error-Message返回的失败原因,校验通过时为null
+     *
+     * @return
+     */
+    public String getErrorMessage() {
+        return errorMessage;
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.aliyun.api.gateway.demo.metrics;
+
+import com.aliyun.api.gateway.demo.enums.Phase;
+
+/**
+ * 请求指标收集接口
+ * 通过Metrics.setClientMetrics注册,未注册时不产生任何计时开销;实现类需线程安全
+ */
+public interface ClientMetrics {
+
+    /**
+     * 记录阶段耗时
+     *
+     * @param phase 阶段
+     * @param host 如http://api.aaaa.com
+     * @param path
+     * @param method HTTP方法
+     * @param nanos 耗时,单位纳秒
+     */
+    void recordTime(Phase phase, String host, String path, String method, long nanos);
+
+    /**
+     * 记录响应
+     *
+     * @param host
+     * @param path
+     * @param method
+     * @param statusCode
+     * @param errorMessage X-Ca-Error-Message,没有时为null
+     * @param bytesIn 响应Body字节数,未知时为-1
+     * @param bytesOut 请求Body字节数,未知时为-1
+     */
+    void recordResponse(String host, String path, String method, int statusCode, String errorMessage, long bytesIn, long bytesOut);
+
+    /**
+     * 记录未收到响应的失败请求
+     *
+     * @param host
+     * @param path
+     * @param method
+     * @param cause
+     */
+    void recordFailure(String host, String path, String method, Throwable cause);
+
+    /**
+     * 记录一次重试,默认不记录
+     *
+     * @param host
+     * @param path
+     * @param method
+     * @param attempt 即将进行的尝试序号,首次重试为2
+     */
+    default void recordRetry(String host, String path, String method, int attempt) {
+    }
+
+    /**
+     * 记录因重试预算耗尽而放弃的重试,默认不记录
+     *
+     * @param host
+     * @param path
+     * @param method
+     */
+    default void recordRetryBudgetExhausted(String host, String path, String method) {
+    }
+}
@@ -0,0 +1,258 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.aliyun.api.gateway.demo.metrics;
+
+import java.io.PrintStream;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.apache.http.pool.PoolStats;
+
+import com.aliyun.api.gateway.demo.enums.Phase;
+import com.aliyun.api.gateway.demo.util.HttpClientPool;
+
+/**
+ * 基于HdrHistogram的内存指标实现
+ * 按host、path、method分组,每组每个阶段一个直方图,另有状态码、错误信息、失败数及收发字节数计数
+ */
+public class HdrHistogramMetrics implements ClientMetrics {
+    //直方图可记录的最大耗时
+    private static final long HIGHEST_TRACKABLE_NANOS = TimeUnit.MINUTES.toNanos(5);
+
+    //直方图精度,有效数字位数
+    private static final int SIGNIFICANT_DIGITS = 2;
+
+    private final ConcurrentMap<Tags, Stats> stats = new ConcurrentHashMap<Tags, Stats>();
+
+    public void recordTime(Phase phase, String host, String path, String method, long nanos) {
+        stats(host, path, method).histograms[phase.ordinal()]
+                .recordValue(Math.min(Math.max(nanos, 0), HIGHEST_TRACKABLE_NANOS));
+    }
+
+    public void recordResponse(String host, String path, String method, int statusCode, String errorMessage,
+            long bytesIn, long bytesOut) {
+        Stats s = stats(host, path, method);
+        LongAdder counter = s.statusCodes.get(statusCode);
+        if (null == counter) {
+            LongAdder created = new LongAdder();
+            counter = s.statusCodes.putIfAbsent(statusCode, created);
+            if (null == counter) {
+                counter = created;
+            }
+        }
+        counter.increment();
+        if (null != errorMessage) {
+            s.errorMessages.increment();
+        }
+        if (bytesIn > 0) {
+            s.bytesIn.add(bytesIn);
+        }
+        if (bytesOut > 0) {
+            s.bytesOut.add(bytesOut);
+        }
+    }
+
+    public void recordFailure(String host, String path, String method, Throwable cause) {
+        stats(host, path, method).failures.increment();
+    }
+
+    public void recordRetry(String host, String path, String method, int attempt) {
+        stats(host, path, method).retries.increment();
+    }
+
+    public void recordRetryBudgetExhausted(String host, String path, String method) {
+        stats(host, path, method).budgetExhausted.increment();
+    }
+
+    /**
+     * 获取阶段耗时直方图的副本,没有记录时返回null
+     *
+     * @param phase
+     * @param host
+     * @param path
+     * @param method
+     * @return 单位纳秒
+     */
+    public Histogram getHistogram(Phase phase, String host, String path, String method) {
+        Stats s = stats.get(new Tags(host, path, method));
+        return null == s ? null : s.histograms[phase.ordinal()].copy();
+    }
+
+    /**
+     * 获取状态码计数
+     *
+     * @param host
+     * @param path
+     * @param method
+     * @param statusCode
+     * @return
+     */
+    public long getStatusCount(String host, String path, String method, int statusCode) {
+        Stats s = stats.get(new Tags(host, path, method));
+        LongAdder counter = null == s ? null : s.statusCodes.get(statusCode);
+        return null == counter ? 0 : counter.sum();
+    }
+
+    /**
+     * 获取重试次数
+     *
+     * @param host
+     * @param path
+     * @param method
+     * @return
+     */
+    public long getRetryCount(String host, String path, String method) {
+        Stats s = stats.get(new Tags(host, path, method));
+        return null == s ? 0 : s.retries.sum();
+    }
+
+    /**
+     * 获取因重试预算耗尽而放弃的重试次数
+     *
+     * @param host
+     * @param path
+     * @param method
+     * @return
+     */
+    public long getRetryBudgetExhaustedCount(String host, String path, String method) {
+        Stats s = stats.get(new Tags(host, path, method));
+        return null == s ? 0 : s.budgetExhausted.sum();
+    }
+
+    /**
+     * 清空已记录的指标
+     */
+    public void reset() {
+        stats.clear();
+    }
+
+    /**
+     * 输出各分组的耗时分位数、计数及连接池状态
+     *
+     * @param out
+     */
+    public void report(PrintStream out) {
+        for (Map.Entry<Tags, Stats> entry : stats.entrySet()) {
+            Tags tags = entry.getKey();
+            Stats s = entry.getValue();
+            out.printf("%s %s%s%n", tags.method, tags.host, tags.path);
+            for (Phase phase : Phase.values()) {
+                Histogram h = s.histograms[phase.ordinal()].copy();
+                if (h.getTotalCount() == 0) {
+                    continue;
+                }
+                out.printf("  %-16s count=%-8d p50=%-10.1f p99=%-10.1f p999=%-10.1f max=%.1f (us)%n",
+                        phase, h.getTotalCount(),
+                        h.getValueAtPercentile(50) / 1000.0, h.getValueAtPercentile(99) / 1000.0,
+                        h.getValueAtPercentile(99.9) / 1000.0, h.getMaxValue() / 1000.0);
+            }
+            out.printf("  status=%s errorMessages=%d failures=%d retries=%d budgetExhausted=%d bytesIn=%d bytesOut=%d%n",
+                    s.statusCodes, s.errorMessages.sum(), s.failures.sum(), s.retries.sum(), s.budgetExhausted.sum(),
+                    s.bytesIn.sum(), s.bytesOut.sum());
+        }
+        PoolStats pool = HttpClientPool.getStatsIfCreated();
+        if (null != pool) {
+            out.printf("pool leased=%d available=%d pending=%d max=%d%n",
+                    pool.getLeased(), pool.getAvailable(), pool.getPending(), pool.getMax());
+        }
+    }
+
+    private Stats stats(String host, String path, String method) {
+        Tags tags = new Tags(host, path, method);
+        Stats s = stats.get(tags);
+        if (null == s) {
+            Stats created = new Stats();
+            s = stats.putIfAbsent(tags, created);
+            if (null == s) {
+                s = created;
+            }
+        }
+        return s;
+    }
+
+    private static class Tags {
+        private final String host;
+
+        private final String path;
+
+        private final String method;
+
+        private final int hash;
+
+        Tags(String host, String path, String method) {
+            this.host = host;
+            this.path = path;
+            this.method = method;
+            int h = null == host ? 0 : host.hashCode();
+            h = 31 * h + (null == path ? 0 : path.hashCode());
+            this.hash = 31 * h + (null == method ? 0 : method.hashCode());
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof Tags)) {
+                return false;
+            }
+            Tags other = (Tags) obj;
+            return hash == other.hash && equal(host, other.host) && equal(path, other.path)
+                    && equal(method, other.method);
+        }
+
+        private static boolean equal(String a, String b) {
+            return null == a ? null == b : a.equals(b);
+        }
+    }
+
+    private static class Stats {
+        private final Histogram[] histograms = new Histogram[Phase.values().length];
+
+        private final ConcurrentMap<Integer, LongAdder> statusCodes = new ConcurrentHashMap<Integer, LongAdder>();
+
+        private final LongAdder errorMessages = new LongAdder();
+
+        private final LongAdder failures = new LongAdder();
+
+        private final LongAdder retries = new LongAdder();
+
+        private final LongAdder budgetExhausted = new LongAdder();
+
+        private final LongAdder bytesIn = new LongAdder();
+
+        private final LongAdder bytesOut = new LongAdder();
+
+        Stats() {
+            for (int i = 0; i < histograms.length; i++) {
+                histograms[i] = new ConcurrentHistogram(HIGHEST_TRACKABLE_NANOS, SIGNIFICANT_DIGITS);
+            }
+        }
+    }
+}
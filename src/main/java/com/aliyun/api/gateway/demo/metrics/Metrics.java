@@ -0,0 +1,138 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.aliyun.api.gateway.demo.metrics;
+
+import java.net.URI;
+
+/**
+ * 指标注册入口
+ * 同时负责在发送线程内累计连接获取及建连耗时,供HttpUtil在请求结束后按请求维度上报
+ */
+public class Metrics {
+
+    private static volatile ClientMetrics clientMetrics;
+
+    private static final ThreadLocal<CallTimer> CALL_TIMER = new ThreadLocal<CallTimer>() {
+        @Override
+        protected CallTimer initialValue() {
+            return new CallTimer();
+        }
+    };
+
+    /**
+     * 注册指标收集器,传入null关闭指标收集
+     *
+     * @param metrics
+     */
+    public static void setClientMetrics(ClientMetrics metrics) {
+        clientMetrics = metrics;
+    }
+
+    /**
+     * 当前指标收集器,未注册时返回null
+     *
+     * @return
+     */
+    public static ClientMetrics getClientMetrics() {
+        return clientMetrics;
+    }
+
+    /**
+     * 指标的Host标签,各阶段统一由请求URI生成
+     *
+     * @param uri
+     * @return
+     */
+    public static String host(URI uri) {
+        return uri.getScheme() + "://" + uri.getRawAuthority();
+    }
+
+    /**
+     * 指标的Path标签,各阶段统一由请求URI生成
+     *
+     * @param uri
+     * @return
+     */
+    public static String path(URI uri) {
+        return uri.getRawPath();
+    }
+
+    /**
+     * 开始统计当前线程的一次请求
+     *
+     * @return
+     */
+    public static CallTimer beginCall() {
+        CallTimer timer = CALL_TIMER.get();
+        timer.active = true;
+        timer.leaseNanos = 0;
+        timer.connectNanos = 0;
+        return timer;
+    }
+
+    /**
+     * 结束统计当前线程的请求
+     */
+    public static void endCall() {
+        CALL_TIMER.get().active = false;
+    }
+
+    /**
+     * 累计当前请求获取连接的耗时
+     *
+     * @param nanos
+     */
+    public static void addConnectionLease(long nanos) {
+        CallTimer timer = CALL_TIMER.get();
+        if (timer.active) {
+            timer.leaseNanos += nanos;
+        }
+    }
+
+    /**
+     * 累计当前请求建立连接的耗时
+     *
+     * @param nanos
+     */
+    public static void addConnect(long nanos) {
+        CallTimer timer = CALL_TIMER.get();
+        if (timer.active) {
+            timer.connectNanos += nanos;
+        }
+    }
+
+    /**
+     * 单次请求在发送线程内累计的耗时
+     */
+    public static class CallTimer {
+        private boolean active;
+
+        private long leaseNanos;
+
+        private long connectNanos;
+
+        public long getLeaseNanos() {
+            return leaseNanos;
+        }
+
+        public long getConnectNanos() {
+            return connectNanos;
+        }
+    }
+}
@@ -0,0 +1,43 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.aliyun.api.gateway.demo.transport;
+
+import java.io.IOException;
+
+import org.apache.http.client.methods.HttpRequestBase;
+
+import com.aliyun.api.gateway.demo.Response;
+
+/**
+ * 请求发送方式
+ * 请求由HttpUtil.buildRequest构建并签名后交给Transport发送,不同Transport的签名结果完全一致
+ */
+public interface Transport {
+
+    /**
+     * 发送已签名的请求
+     *
+     * @param request 已签名的请求,可在其他线程通过abort()中断
+     * @param connectTimeout 连接超时时间,单位毫秒,0表示使用默认值
+     * @param streaming 为true时Body以流的形式返回,调用方读取完毕后需调用Response.close()
+     * @return
+     * @throws IOException
+     */
+    Response execute(HttpRequestBase request, int connectTimeout, boolean streaming) throws IOException;
+}
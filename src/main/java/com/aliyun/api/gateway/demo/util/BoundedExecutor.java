@@ -0,0 +1,185 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.aliyun.api.gateway.demo.util;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 限制并发数的执行器
+ * 超过并发数的任务在本执行器内排队,有任务结束时才交给底层线程池,平台线程池及虚拟线程均不会有线程阻塞等待许可;
+ * 提交不会阻塞,排队的任务按提交顺序执行
+ */
+public class BoundedExecutor implements Executor {
+
+    private final ExecutorService executor;
+
+    private final int maxConcurrency;
+
+    //等待交给底层线程池的任务
+    private final Queue<Runnable> pending = new ConcurrentLinkedQueue<Runnable>();
+
+    //已交给底层线程池尚未结束的任务数
+    private final AtomicInteger active = new AtomicInteger();
+
+    /**
+     * @param executor 实际执行任务的线程池
+     * @param maxConcurrency 最大并发数,小于等于0表示不限制
+     */
+    public BoundedExecutor(ExecutorService executor, int maxConcurrency) {
+        if (null == executor) {
+            throw new IllegalArgumentException("executor can not be null");
+        }
+        this.executor = executor;
+        this.maxConcurrency = maxConcurrency;
+    }
+
+    /**
+     * 创建每个任务一个虚拟线程的执行器,需要运行在支持虚拟线程的JDK上
+     *
+     * @param maxConcurrency 最大并发数,小于等于0表示不限制
+     * @return
+     * @throws UnsupportedOperationException 当前JDK不支持虚拟线程
+     */
+    public static BoundedExecutor virtualThreads(int maxConcurrency) {
+        ExecutorService executor;
+        try {
+            //编译目标为Java 8,通过反射调用JDK 21+的Executors.newVirtualThreadPerTaskExecutor
+            executor = (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (NoSuchMethodException e) {
+            throw new UnsupportedOperationException("virtual threads require JDK 21 or later, current: "
+                    + System.getProperty("java.version"));
+        } catch (Exception e) {
+            throw new UnsupportedOperationException("virtual threads are not available", e);
+        }
+        return new BoundedExecutor(executor, maxConcurrency);
+    }
+
+    /**
+     * 当前JDK是否支持虚拟线程
+     *
+     * @return
+     */
+    public static boolean isVirtualThreadSupported() {
+        try {
+            Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return true;
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+    /**
+     * 提交任务,达到并发上限时排队
+     * 排队的任务在交给底层线程池时被拒绝,则在结束前一个任务的线程上直接执行,不会丢失
+     *
+     * @throws RejectedExecutionException 底层线程池已关闭
+     */
+    public void execute(Runnable command) {
+        if (maxConcurrency <= 0) {
+            executor.execute(command);
+            return;
+        }
+        if (executor.isShutdown()) {
+            throw new RejectedExecutionException("executor has been shut down");
+        }
+        pending.offer(command);
+        drain();
+    }
+
+    /**
+     * 在并发额度内将排队的任务交给底层线程池
+     * 入队后及任务结束后都会调用,保证有空闲额度时队列中的任务不会被遗漏
+     */
+    private void drain() {
+        while (!pending.isEmpty()) {
+            int current = active.get();
+            if (current >= maxConcurrency) {
+                return;
+            }
+            if (!active.compareAndSet(current, current + 1)) {
+                continue;
+            }
+            final Runnable next = pending.poll();
+            if (null == next) {
+                active.decrementAndGet();
+                continue;
+            }
+            Runnable task = new Runnable() {
+                public void run() {
+                    try {
+                        next.run();
+                    } finally {
+                        active.decrementAndGet();
+                        drain();
+                    }
+                }
+            };
+            try {
+                executor.execute(task);
+            } catch (RejectedExecutionException e) {
+                //在当前循环内继续处理队列,不递归调用drain
+                try {
+                    next.run();
+                } finally {
+                    active.decrementAndGet();
+                }
+            }
+        }
+    }
+
+    /**
+     * 最大并发数,小于等于0表示不限制
+     *
+     * @return
+     */
+    public int getMaxConcurrency() {
+        return maxConcurrency;
+    }
+
+    /**
+     * 正在执行的任务数,不限制并发时返回-1
+     *
+     * @return
+     */
+    public int getActiveCount() {
+        return maxConcurrency <= 0 ? -1 : active.get();
+    }
+
+    /**
+     * 排队等待执行的任务数
+     *
+     * @return
+     */
+    public int getPendingCount() {
+        return pending.size();
+    }
+
+    /**
+     * 关闭底层线程池
+     */
+    public void shutdown() {
+        executor.shutdown();
+    }
+}
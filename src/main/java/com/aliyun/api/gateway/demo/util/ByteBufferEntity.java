@@ -0,0 +1,120 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.aliyun.api.gateway.demo.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+import org.apache.http.entity.AbstractHttpEntity;
+
+/**
+ * ByteBuffer类型的Body
+ * 直接从MappedByteBuffer或直接内存发送,不预先复制成字节数组;可重复发送,不改变原buffer的position
+ */
+public class ByteBufferEntity extends AbstractHttpEntity {
+    //写出时的分块大小
+    private static final int CHUNK_SIZE = 64 * 1024;
+
+    private final ByteBuffer buffer;
+
+    /**
+     * @param buffer 发送position到limit之间的内容
+     */
+    public ByteBufferEntity(ByteBuffer buffer) {
+        if (null == buffer) {
+            throw new IllegalArgumentException("buffer can not be null");
+        }
+        this.buffer = buffer.duplicate();
+    }
+
+    public boolean isRepeatable() {
+        return true;
+    }
+
+    public long getContentLength() {
+        return buffer.remaining();
+    }
+
+    public InputStream getContent() {
+        return new ByteBufferInputStream(buffer.duplicate());
+    }
+
+    public void writeTo(OutputStream out) throws IOException {
+        if (null == out) {
+            throw new IllegalArgumentException("Output stream may not be null");
+        }
+        final ByteBuffer src = buffer.duplicate();
+        if (src.hasArray()) {
+            out.write(src.array(), src.arrayOffset() + src.position(), src.remaining());
+        } else {
+            final byte[] chunk = new byte[Math.min(CHUNK_SIZE, src.remaining())];
+            while (src.hasRemaining()) {
+                int length = Math.min(chunk.length, src.remaining());
+                src.get(chunk, 0, length);
+                out.write(chunk, 0, length);
+            }
+        }
+        out.flush();
+    }
+
+    public boolean isStreaming() {
+        return false;
+    }
+
+    private static class ByteBufferInputStream extends InputStream {
+
+        private final ByteBuffer buffer;
+
+        ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xff : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (len == 0) {
+                return 0;
+            }
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            int length = Math.min(len, buffer.remaining());
+            buffer.get(b, off, length);
+            return length;
+        }
+
+        @Override
+        public long skip(long n) {
+            int length = (int) Math.max(0, Math.min(n, buffer.remaining()));
+            buffer.position(buffer.position() + length);
+            return length;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+    }
+}
@@ -0,0 +1,282 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.aliyun.api.gateway.demo.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 待签名字符串固定部分的缓存
+ * 相同Method、Path、Query、Header名称集合及签名Header前缀的请求,参与签名的Header名称及排序后的Path+Query不变,
+ * 缓存后每次只需追加Header值;按LRU及过期时间淘汰
+ * Key包含Query的值,只适合Query取值有限的请求;按Key的hash分段加锁,各段独立淘汰
+ */
+public class CanonicalCache {
+
+    //每段的最小容量,避免段过小导致频繁淘汰
+    private static final int MIN_STRIPE_ENTRIES = 16;
+
+    private final int maxEntries;
+
+    private final long ttlMillis;
+
+    private final LinkedHashMap<Key, Entry>[] stripes;
+
+    private final AtomicLong hits = new AtomicLong();
+
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * @param maxEntries 最大缓存数,小于等于0表示不缓存
+     * @param ttlMillis 缓存时间,单位毫秒,小于等于0表示不过期
+     */
+    public CanonicalCache(int maxEntries, long ttlMillis) {
+        this.maxEntries = maxEntries;
+        this.ttlMillis = ttlMillis;
+        int count = 1;
+        if (maxEntries > 0) {
+            //段数为2的幂,每段至少容纳MIN_STRIPE_ENTRIES个
+            int target = Math.min(Runtime.getRuntime().availableProcessors() * 4, maxEntries / MIN_STRIPE_ENTRIES);
+            while (count < target) {
+                count <<= 1;
+            }
+        }
+        this.stripes = newStripes(count, Math.max(1, maxEntries / count));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static LinkedHashMap<Key, Entry>[] newStripes(int count, final int maxStripeEntries) {
+        LinkedHashMap<Key, Entry>[] stripes = new LinkedHashMap[count];
+        for (int i = 0; i < count; i++) {
+            stripes[i] = new LinkedHashMap<Key, Entry>(16, 0.75f, true) {
+                private static final long serialVersionUID = 1L;
+
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Key, CanonicalCache.Entry> eldest) {
+                    return size() > maxStripeEntries;
+                }
+            };
+        }
+        return stripes;
+    }
+
+    private LinkedHashMap<Key, Entry> stripe(Key key) {
+        int h = key.hash;
+        h ^= h >>> 16;
+        return stripes[h & (stripes.length - 1)];
+    }
+
+    /**
+     * 是否启用
+     *
+     * @return
+     */
+    public boolean isEnabled() {
+        return maxEntries > 0;
+    }
+
+    /**
+     * 查找缓存
+     *
+     * @param probe 查找用的Key,引用调用方的参数,不会被缓存
+     * @return 未命中或已过期时返回null
+     */
+    Entry get(Key probe) {
+        Entry entry;
+        LinkedHashMap<Key, Entry> entries = stripe(probe);
+        synchronized (entries) {
+            entry = entries.get(probe);
+            if (null != entry && ttlMillis > 0 && System.currentTimeMillis() - entry.createdAt > ttlMillis) {
+                entries.remove(probe);
+                entry = null;
+            }
+        }
+        if (null == entry) {
+            misses.incrementAndGet();
+        } else {
+            hits.incrementAndGet();
+        }
+        return entry;
+    }
+
+    /**
+     * 放入缓存,Key中的参数会被复制
+     *
+     * @param probe
+     * @param entry
+     */
+    void put(Key probe, Entry entry) {
+        Key key = probe.copy();
+        LinkedHashMap<Key, Entry> entries = stripe(key);
+        synchronized (entries) {
+            entries.put(key, entry);
+        }
+    }
+
+    /**
+     * 命中次数
+     *
+     * @return
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * 未命中次数
+     *
+     * @return
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * 当前缓存数
+     *
+     * @return
+     */
+    public int size() {
+        int size = 0;
+        for (LinkedHashMap<Key, Entry> entries : stripes) {
+            synchronized (entries) {
+                size += entries.size();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * 清空缓存及计数
+     */
+    public void clear() {
+        for (LinkedHashMap<Key, Entry> entries : stripes) {
+            synchronized (entries) {
+                entries.clear();
+            }
+        }
+        hits.set(0);
+        misses.set(0);
+    }
+
+    /**
+     * 缓存Key,查找时复用同一实例引用调用方参数,放入缓存时复制
+     */
+    static class Key {
+        private String method;
+
+        private String path;
+
+        private Map<String, String> querys;
+
+        private Set<String> headerNames;
+
+        private List<String> signHeaderPrefixList;
+
+        private int hash;
+
+        Key set(String method, String path, Map<String, String> querys, Set<String> headerNames,
+                List<String> signHeaderPrefixList) {
+            this.method = method;
+            this.path = path;
+            this.querys = querys;
+            this.headerNames = headerNames;
+            this.signHeaderPrefixList = signHeaderPrefixList;
+            int h = method.hashCode();
+            h = 31 * h + (null == path ? 0 : path.hashCode());
+            h = 31 * h + (null == querys ? 0 : querys.hashCode());
+            h = 31 * h + (null == headerNames ? 0 : headerNames.hashCode());
+            this.hash = 31 * h + (null == signHeaderPrefixList ? 0 : signHeaderPrefixList.hashCode());
+            return this;
+        }
+
+        /**
+         * 清理对调用方参数的引用
+         */
+        void release() {
+            this.querys = null;
+            this.headerNames = null;
+            this.signHeaderPrefixList = null;
+        }
+
+        private Key copy() {
+            Key key = new Key();
+            key.method = method;
+            key.path = path;
+            key.querys = null == querys ? null : Collections.unmodifiableMap(new HashMap<String, String>(querys));
+            key.headerNames = null == headerNames ? null : Collections.unmodifiableSet(new HashSet<String>(headerNames));
+            key.signHeaderPrefixList = null == signHeaderPrefixList ? null
+                    : Collections.unmodifiableList(new ArrayList<String>(signHeaderPrefixList));
+            key.hash = hash;
+            return key;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) obj;
+            return hash == other.hash && method.equals(other.method) && equal(path, other.path)
+                    && equal(querys, other.querys) && equal(headerNames, other.headerNames)
+                    && equal(signHeaderPrefixList, other.signHeaderPrefixList);
+        }
+
+        private static boolean equal(Object a, Object b) {
+            return null == a ? null == b : a.equals(b);
+        }
+    }
+
+    /**
+     * 缓存的待签名固定部分
+     */
+    static class Entry {
+        //排序后参与签名的Header名称
+        final String[] signHeaderNames;
+
+        //X-Ca-Signature-Headers的值,未指定签名Header前缀时为null
+        final String signatureHeaders;
+
+        //Path+Query
+        final String resource;
+
+        private final long createdAt = System.currentTimeMillis();
+
+        Entry(String[] signHeaderNames, String signatureHeaders, String resource) {
+            this.signHeaderNames = signHeaderNames;
+            this.signatureHeaders = signatureHeaders;
+            this.resource = resource;
+        }
+    }
+}
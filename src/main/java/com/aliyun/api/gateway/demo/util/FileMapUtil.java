@@ -0,0 +1,70 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.aliyun.api.gateway.demo.util;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * 文件内存映射工具
+ * 映射结果可同时用于计算Content-MD5(MessageDigestUtil.base64AndMD5(ByteBuffer))及作为Request的Body发送,文件内容只从页缓存读取
+ */
+public class FileMapUtil {
+
+    /**
+     * 只读映射整个文件,映射在文件关闭后仍然有效
+     *
+     * @param path
+     * @return
+     * @throws IOException
+     */
+    public static MappedByteBuffer map(Path path) throws IOException {
+        if (path == null) {
+            throw new IllegalArgumentException("path can not be null");
+        }
+        final FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            return map(channel);
+        } finally {
+            channel.close();
+        }
+    }
+
+    /**
+     * 只读映射整个文件,不改变channel的position
+     *
+     * @param channel
+     * @return
+     * @throws IOException
+     */
+    public static MappedByteBuffer map(FileChannel channel) throws IOException {
+        if (channel == null) {
+            throw new IllegalArgumentException("channel can not be null");
+        }
+        final long size = channel.size();
+        //单个ByteBuffer最大为2GB
+        if (size > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("file is too large to map: " + size);
+        }
+        return channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+    }
+}
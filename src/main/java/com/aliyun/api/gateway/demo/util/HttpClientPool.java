@@ -0,0 +1,245 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.aliyun.api.gateway.demo.util;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.HttpHost;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.HttpClient;
+import org.apache.http.conn.ClientConnectionOperator;
+import org.apache.http.conn.ClientConnectionRequest;
+import org.apache.http.conn.ConnectionKeepAliveStrategy;
+import org.apache.http.conn.ConnectionPoolTimeoutException;
+import org.apache.http.conn.ManagedClientConnection;
+import org.apache.http.conn.OperatedClientConnection;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.conn.scheme.PlainSocketFactory;
+import org.apache.http.conn.scheme.Scheme;
+import org.apache.http.conn.scheme.SchemeRegistry;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.DefaultHttpClient;
+import org.apache.http.impl.conn.DefaultClientConnectionOperator;
+import org.apache.http.impl.conn.PoolingClientConnectionManager;
+import org.apache.http.params.HttpParams;
+import org.apache.http.pool.PoolStats;
+import org.apache.http.protocol.HttpContext;
+
+import com.aliyun.api.gateway.demo.constant.Constants;
+import com.aliyun.api.gateway.demo.metrics.Metrics;
+
+/**
+ * 共享的Http连接池
+ * 所有请求复用同一个HttpClient及连接管理器,避免每次请求重新建立TCP/TLS连接
+ */
+public class HttpClientPool {
+
+    private static volatile HttpClientPool instance;
+
+    private static volatile long connectionRequestTimeout = Constants.DEFAULT_CONNECTION_REQUEST_TIMEOUT;
+
+    private final PoolingClientConnectionManager connectionManager;
+
+    private final DefaultHttpClient httpClient;
+
+    private HttpClientPool(int maxTotal, int maxPerRoute, final long keepAliveMillis, TlsContext tlsContext) {
+        SchemeRegistry registry = new SchemeRegistry();
+        registry.register(new Scheme("http", 80, PlainSocketFactory.getSocketFactory()));
+        registry.register(new Scheme("https", 443, tlsContext.getSocketFactory()));
+
+        connectionManager = new TimedConnectionManager(registry);
+        connectionManager.setMaxTotal(maxTotal);
+        connectionManager.setDefaultMaxPerRoute(maxPerRoute);
+
+        httpClient = new DefaultHttpClient(connectionManager);
+        httpClient.setKeepAliveStrategy(new ConnectionKeepAliveStrategy() {
+            private final ConnectionKeepAliveStrategy delegate = new DefaultConnectionKeepAliveStrategy();
+
+            public long getKeepAliveDuration(HttpResponse response, HttpContext context) {
+                long duration = delegate.getKeepAliveDuration(response, context);
+                if (duration < 0 || duration > keepAliveMillis) {
+                    return keepAliveMillis;
+                }
+                return duration;
+            }
+        });
+    }
+
+    /**
+     * 配置连接池,需在发送请求前调用;重复调用会关闭旧连接池
+     *
+     * @param maxTotal 最大连接数
+     * @param maxPerRoute 每个Host最大连接数
+     * @param keepAliveMillis 空闲连接最长保持时间,单位毫秒
+     */
+    public static void configure(int maxTotal, int maxPerRoute, long keepAliveMillis) {
+        configure(maxTotal, maxPerRoute, keepAliveMillis, TlsContext.getDefault());
+    }
+
+    /**
+     * 配置连接池并指定TLS配置,需在发送请求前调用;重复调用会关闭旧连接池
+     * 沿用同一TlsContext时新连接池仍可恢复旧连接池建立的TLS会话
+     *
+     * @param maxTotal 最大连接数
+     * @param maxPerRoute 每个Host最大连接数
+     * @param keepAliveMillis 空闲连接最长保持时间,单位毫秒
+     * @param tlsContext https连接使用的TLS配置
+     */
+    public static synchronized void configure(int maxTotal, int maxPerRoute, long keepAliveMillis,
+            TlsContext tlsContext) {
+        if (null == tlsContext) {
+            throw new IllegalArgumentException("tlsContext can not be null");
+        }
+        HttpClientPool old = instance;
+        instance = new HttpClientPool(maxTotal, maxPerRoute, keepAliveMillis, tlsContext);
+        if (null != old) {
+            old.connectionManager.shutdown();
+        }
+    }
+
+    /**
+     * 设置从连接池获取连接的最长等待时间,与请求超时分开设置,超过请求超时时按请求超时等待
+     *
+     * @param timeoutMillis 单位毫秒,必须大于0
+     */
+    public static void setConnectionRequestTimeout(long timeoutMillis) {
+        if (timeoutMillis <= 0) {
+            throw new IllegalArgumentException("connectionRequestTimeout must be positive");
+        }
+        connectionRequestTimeout = timeoutMillis;
+    }
+
+    /**
+     * 从连接池获取连接的最长等待时间,单位毫秒
+     *
+     * @return
+     */
+    public static long getConnectionRequestTimeout() {
+        return connectionRequestTimeout;
+    }
+
+    /**
+     * 关闭连接池,释放所有连接
+     */
+    public static synchronized void shutdown() {
+        if (null != instance) {
+            instance.connectionManager.shutdown();
+            instance = null;
+        }
+    }
+
+    /**
+     * 获取共享HttpClient,未配置时使用默认参数初始化
+     *
+     * @return
+     */
+    public static HttpClient getClient() {
+        return get().httpClient;
+    }
+
+    /**
+     * 连接池统计
+     *
+     * @return
+     */
+    public static PoolStats getStats() {
+        return get().connectionManager.getTotalStats();
+    }
+
+    /**
+     * 连接池统计,连接池尚未创建时返回null且不会创建连接池
+     *
+     * @return
+     */
+    public static PoolStats getStatsIfCreated() {
+        HttpClientPool pool = instance;
+        return null == pool ? null : pool.connectionManager.getTotalStats();
+    }
+
+    private static HttpClientPool get() {
+        HttpClientPool pool = instance;
+        if (null == pool) {
+            synchronized (HttpClientPool.class) {
+                if (null == instance) {
+                    instance = new HttpClientPool(Constants.DEFAULT_MAX_TOTAL_CONNECTIONS,
+                            Constants.DEFAULT_MAX_CONNECTIONS_PER_ROUTE,
+                            Constants.DEFAULT_KEEP_ALIVE,
+                            TlsContext.getDefault());
+                }
+                pool = instance;
+            }
+        }
+        return pool;
+    }
+
+    /**
+     * 启用指标收集时统计获取连接及建立连接的耗时
+     */
+    private static class TimedConnectionManager extends PoolingClientConnectionManager {
+
+        TimedConnectionManager(SchemeRegistry registry) {
+            super(registry);
+        }
+
+        @Override
+        protected ClientConnectionOperator createConnectionOperator(SchemeRegistry registry) {
+            return new DefaultClientConnectionOperator(registry) {
+                @Override
+                public void openConnection(OperatedClientConnection conn, HttpHost target, InetAddress local,
+                        HttpContext context, HttpParams params) throws IOException {
+                    if (null == Metrics.getClientMetrics()) {
+                        super.openConnection(conn, target, local, context, params);
+                        return;
+                    }
+                    long start = System.nanoTime();
+                    try {
+                        super.openConnection(conn, target, local, context, params);
+                    } finally {
+                        Metrics.addConnect(System.nanoTime() - start);
+                    }
+                }
+            };
+        }
+
+        @Override
+        public ClientConnectionRequest requestConnection(HttpRoute route, Object state) {
+            final ClientConnectionRequest request = super.requestConnection(route, state);
+            if (null == Metrics.getClientMetrics()) {
+                return request;
+            }
+            return new ClientConnectionRequest() {
+                public ManagedClientConnection getConnection(long timeout, TimeUnit tunit)
+                        throws InterruptedException, ConnectionPoolTimeoutException {
+                    long start = System.nanoTime();
+                    try {
+                        return request.getConnection(timeout, tunit);
+                    } finally {
+                        Metrics.addConnectionLease(System.nanoTime() - start);
+                    }
+                }
+
+                public void abortRequest() {
+                    request.abortRequest();
+                }
+            };
+        }
+    }
+}
@@ -18,60 +18,78 @@
  */
 package com.aliyun.api.gateway.demo.util;
 
-import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.UnsupportedEncodingException;
 import java.net.MalformedURLException;
+import java.net.URI;
 import java.net.URLEncoder;
-import java.nio.ByteBuffer;
-import java.nio.channels.Channels;
-import java.nio.channels.ReadableByteChannel;
-import java.nio.channels.WritableByteChannel;
-import java.security.KeyManagementException;
-import java.security.NoSuchAlgorithmException;
-import java.security.cert.X509Certificate;
 import java.util.ArrayList;
-import java.util.Date;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
-import javax.net.ssl.SSLContext;
-import javax.net.ssl.TrustManager;
-import javax.net.ssl.X509TrustManager;
-
 import org.apache.commons.lang.StringUtils;
 import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpEntityEnclosingRequest;
 import org.apache.http.HttpResponse;
 import org.apache.http.NameValuePair;
-import org.apache.http.client.HttpClient;
 import org.apache.http.client.entity.UrlEncodedFormEntity;
 import org.apache.http.client.methods.HttpDelete;
+import org.apache.http.client.methods.HttpEntityEnclosingRequestBase;
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.client.methods.HttpPost;
 import org.apache.http.client.methods.HttpPut;
-import org.apache.http.conn.ClientConnectionManager;
-import org.apache.http.conn.scheme.Scheme;
-import org.apache.http.conn.scheme.SchemeRegistry;
-import org.apache.http.conn.ssl.SSLSocketFactory;
+import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.client.params.ClientPNames;
 import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.entity.FileEntity;
+import org.apache.http.entity.InputStreamEntity;
 import org.apache.http.entity.StringEntity;
-import org.apache.http.impl.client.DefaultHttpClient;
 import org.apache.http.message.BasicNameValuePair;
 import org.apache.http.params.CoreConnectionPNames;
 
+import com.aliyun.api.gateway.demo.Request;
+import com.aliyun.api.gateway.demo.RequestTemplate;
 import com.aliyun.api.gateway.demo.Response;
 import com.aliyun.api.gateway.demo.constant.Constants;
 import com.aliyun.api.gateway.demo.constant.ContentType;
 import com.aliyun.api.gateway.demo.constant.HttpHeader;
 import com.aliyun.api.gateway.demo.constant.HttpMethod;
 import com.aliyun.api.gateway.demo.constant.SystemHeader;
+import com.aliyun.api.gateway.demo.enums.Method;
+import com.aliyun.api.gateway.demo.enums.Phase;
+import com.aliyun.api.gateway.demo.metrics.ClientMetrics;
+import com.aliyun.api.gateway.demo.metrics.Metrics;
 
 /**
  * Http工具类
  */
 public class HttpUtil {
+    //是否为每个请求生成X-Ca-Nonce
+    private static volatile boolean nonceEnabled;
+
+    /**
+     * 开启后每个请求携带新生成的X-Ca-Nonce并参与签名,网关可据此拒绝重放;已创建的RequestTemplate不受影响
+     *
+     * @param enabled
+     */
+    public static void setNonceEnabled(boolean enabled) {
+        nonceEnabled = enabled;
+    }
+
+    /**
+     * 是否为每个请求生成X-Ca-Nonce
+     *
+     * @return
+     */
+    public static boolean isNonceEnabled() {
+        return nonceEnabled;
+    }
+
     /**
      * HTTP GET
      * @param host
@@ -87,18 +105,7 @@ public class HttpUtil {
      */
     public static Response httpGet(String host, String path, int connectTimeout, Map<String, String> headers, Map<String, String> querys, List<String> signHeaderPrefixList, String appKey, String appSecret)
             throws Exception {
-        headers = initialBasicHeader(HttpMethod.GET, path, headers, querys, null, signHeaderPrefixList, appKey, appSecret);
-
-        HttpClient httpClient = wrapClient(host);
-        httpClient.getParams().setParameter(CoreConnectionPNames.CONNECTION_TIMEOUT, getTimeout(connectTimeout));
-
-        HttpGet get = new HttpGet(initUrl(host, path, querys));
-
-        for (Map.Entry<String, String> e : headers.entrySet()) {
-            get.addHeader(e.getKey(), MessageDigestUtil.utf8ToIso88591(e.getValue()));
-        }
-
-        return convert(httpClient.execute(get));
+        return execute(newHttpGet(host, path, headers, querys, signHeaderPrefixList, appKey, appSecret), connectTimeout);
     }
 
     /**
@@ -117,28 +124,7 @@ public class HttpUtil {
      */
     public static Response httpPost(String host, String path, int connectTimeout, Map<String, String> headers, Map<String, String> querys, Map<String, String> bodys, List<String> signHeaderPrefixList, String appKey, String appSecret)
             throws Exception {
-        if (headers == null) {
-            headers = new HashMap<String, String>();
-        }
-
-        headers.put(HttpHeader.HTTP_HEADER_CONTENT_TYPE, ContentType.CONTENT_TYPE_FORM);
-
-        headers = initialBasicHeader(HttpMethod.POST, path, headers, querys, bodys, signHeaderPrefixList, appKey, appSecret);
-
-        HttpClient httpClient = wrapClient(host);
-        httpClient.getParams().setParameter(CoreConnectionPNames.CONNECTION_TIMEOUT, getTimeout(connectTimeout));
-
-        HttpPost post = new HttpPost(initUrl(host, path, querys));
-        for (Map.Entry<String, String> e : headers.entrySet()) {
-            post.addHeader(e.getKey(), MessageDigestUtil.utf8ToIso88591(e.getValue()));
-        }
-
-        UrlEncodedFormEntity formEntity = buildFormEntity(bodys);
-        if (formEntity != null) {
-            post.setEntity(formEntity);
-        }
-
-        return convert(httpClient.execute(post));
+        return execute(newHttpPost(host, path, headers, querys, bodys, signHeaderPrefixList, appKey, appSecret), connectTimeout);
     }
 
     /**
@@ -157,22 +143,7 @@ public class HttpUtil {
      */
     public static Response httpPost(String host, String path, int connectTimeout, Map<String, String> headers, Map<String, String> querys, String body, List<String> signHeaderPrefixList, String appKey, String appSecret)
             throws Exception {
-    	headers = initialBasicHeader(HttpMethod.POST, path, headers, querys, null, signHeaderPrefixList, appKey, appSecret);
-
-    	HttpClient httpClient = wrapClient(host);
-        httpClient.getParams().setParameter(CoreConnectionPNames.CONNECTION_TIMEOUT, getTimeout(connectTimeout));
-
-        HttpPost post = new HttpPost(initUrl(host, path, querys));
-        for (Map.Entry<String, String> e : headers.entrySet()) {
-            post.addHeader(e.getKey(), MessageDigestUtil.utf8ToIso88591(e.getValue()));
-        }
-
-        if (StringUtils.isNotBlank(body)) {
-            post.setEntity(new StringEntity(body, Constants.ENCODING));
-
-        }
-
-        return convert(httpClient.execute(post));
+        return execute(newHttpPost(host, path, headers, querys, body, signHeaderPrefixList, appKey, appSecret), connectTimeout);
     }
 
     /**
@@ -191,21 +162,26 @@ public class HttpUtil {
      */
     public static Response httpPost(String host, String path, int connectTimeout, Map<String, String> headers, Map<String, String> querys, byte[] bodys, List<String> signHeaderPrefixList, String appKey, String appSecret)
             throws Exception {
-    	headers = initialBasicHeader(HttpMethod.POST, path, headers, querys, null, signHeaderPrefixList, appKey, appSecret);
-
-    	HttpClient httpClient = wrapClient(host);
-        httpClient.getParams().setParameter(CoreConnectionPNames.CONNECTION_TIMEOUT, getTimeout(connectTimeout));
-
-        HttpPost post = new HttpPost(initUrl(host, path, querys));
-        for (Map.Entry<String, String> e : headers.entrySet()) {
-            post.addHeader(e.getKey(), MessageDigestUtil.utf8ToIso88591(e.getValue()));
-        }
-
-        if (bodys != null) {
-            post.setEntity(new ByteArrayEntity(bodys));
-        }
+        return execute(newHttpPost(host, path, headers, querys, bytesEntity(bodys), signHeaderPrefixList, appKey, appSecret), connectTimeout);
+    }
 
-        return convert(httpClient.execute(post));
+    /**
+     * HTTP PUT表单
+     * @param host
+     * @param path
+     * @param connectTimeout
+     * @param headers
+     * @param querys
+     * @param bodys
+     * @param signHeaderPrefixList
+     * @param appKey
+     * @param appSecret
+     * @return
+     * @throws Exception
+     */
+    public static Response httpPut(String host, String path, int connectTimeout, Map<String, String> headers, Map<String, String> querys, Map<String, String> bodys, List<String> signHeaderPrefixList, String appKey, String appSecret)
+            throws Exception {
+        return execute(newHttpPut(host, path, headers, querys, bodys, signHeaderPrefixList, appKey, appSecret), connectTimeout);
     }
 
     /**
@@ -224,22 +200,7 @@ public class HttpUtil {
      */
     public static Response httpPut(String host, String path, int connectTimeout, Map<String, String> headers, Map<String, String> querys, String body, List<String> signHeaderPrefixList, String appKey, String appSecret)
             throws Exception {
-    	headers = initialBasicHeader(HttpMethod.PUT, path, headers, querys, null, signHeaderPrefixList, appKey, appSecret);
-
-    	HttpClient httpClient = wrapClient(host);
-        httpClient.getParams().setParameter(CoreConnectionPNames.CONNECTION_TIMEOUT, getTimeout(connectTimeout));
-
-        HttpPut put = new HttpPut(initUrl(host, path, querys));
-        for (Map.Entry<String, String> e : headers.entrySet()) {
-            put.addHeader(e.getKey(), MessageDigestUtil.utf8ToIso88591(e.getValue()));
-        }
-
-        if (StringUtils.isNotBlank(body)) {
-            put.setEntity(new StringEntity(body, Constants.ENCODING));
-
-        }
-
-        return convert(httpClient.execute(put));
+        return execute(newHttpPut(host, path, headers, querys, body, signHeaderPrefixList, appKey, appSecret), connectTimeout);
     }
 
     /**
@@ -258,21 +219,7 @@ public class HttpUtil {
      */
     public static Response httpPut(String host, String path, int connectTimeout, Map<String, String> headers, Map<String, String> querys, byte[] bodys, List<String> signHeaderPrefixList, String appKey, String appSecret)
             throws Exception {
-    	headers = initialBasicHeader(HttpMethod.PUT, path, headers, querys, null, signHeaderPrefixList, appKey, appSecret);
-
-    	HttpClient httpClient = wrapClient(host);
-        httpClient.getParams().setParameter(CoreConnectionPNames.CONNECTION_TIMEOUT, getTimeout(connectTimeout));
-
-        HttpPut put = new HttpPut(initUrl(host, path, querys));
-        for (Map.Entry<String, String> e : headers.entrySet()) {
-        	put.addHeader(e.getKey(), MessageDigestUtil.utf8ToIso88591(e.getValue()));
-        }
-
-        if (bodys != null) {
-        	put.setEntity(new ByteArrayEntity(bodys));
-        }
-
-        return convert(httpClient.execute(put));
+        return execute(newHttpPut(host, path, headers, querys, bytesEntity(bodys), signHeaderPrefixList, appKey, appSecret), connectTimeout);
     }
 
     /**
@@ -290,17 +237,342 @@ public class HttpUtil {
      */
     public static Response httpDelete(String host, String path, int connectTimeout, Map<String, String> headers, Map<String, String> querys, List<String> signHeaderPrefixList, String appKey, String appSecret)
             throws Exception {
-        headers = initialBasicHeader(HttpMethod.DELETE, path, headers, querys, null, signHeaderPrefixList, appKey, appSecret);
+        return execute(newHttpDelete(host, path, headers, querys, signHeaderPrefixList, appKey, appSecret), connectTimeout);
+    }
+
+    /**
+     * 根据Request构建已签名的Http请求
+     *
+     * @param request request对象
+     * @return 可直接发送的Http请求
+     * @throws Exception
+     */
+    public static HttpRequestBase buildRequest(Request request) throws Exception {
+        RequestTemplate template = request.getTemplate();
+        if (null != template && template.matches(request)) {
+            return buildRequest(template, request);
+        }
+        switch (request.getMethod()) {
+            case GET:
+                return newHttpGet(request.getHost(), request.getPath(),
+                		request.getHeaders(),
+                		request.getQuerys(),
+                		request.getSignHeaderPrefixList(),
+                		request.getAppKey(), request.getAppSecret());
+            case POST_FORM:
+                return newHttpPost(request.getHost(), request.getPath(),
+                		request.getHeaders(),
+                		request.getQuerys(),
+                		request.getBodys(),
+                		request.getSignHeaderPrefixList(),
+                		request.getAppKey(), request.getAppSecret());
+            case POST_STRING:
+                if (isJsonBody(request)) {
+                    return newHttpPost(request.getHost(), request.getPath(),
+                            jsonBodyHeaders(request.getHeaders(), request.getJsonBody()),
+                            request.getQuerys(),
+                            new ByteArrayEntity(request.getJsonBody().getBytes()),
+                            request.getSignHeaderPrefixList(),
+                            request.getAppKey(), request.getAppSecret());
+                }
+                return newHttpPost(request.getHost(), request.getPath(),
+                		request.getHeaders(),
+                		request.getQuerys(),
+                		request.getStringBody(),
+                		request.getSignHeaderPrefixList(),
+                		request.getAppKey(), request.getAppSecret());
+            case POST_BYTES:
+                return newHttpPost(request.getHost(), request.getPath(),
+                		request.getHeaders(),
+                		request.getQuerys(),
+                		bytesEntity(request),
+                		request.getSignHeaderPrefixList(),
+                		request.getAppKey(), request.getAppSecret());
+            case PUT_FORM:
+                return newHttpPut(request.getHost(), request.getPath(),
+                		request.getHeaders(),
+                		request.getQuerys(),
+                		request.getBodys(),
+                		request.getSignHeaderPrefixList(),
+                		request.getAppKey(), request.getAppSecret());
+            case PUT_STRING:
+                if (isJsonBody(request)) {
+                    return newHttpPut(request.getHost(), request.getPath(),
+                            jsonBodyHeaders(request.getHeaders(), request.getJsonBody()),
+                            request.getQuerys(),
+                            new ByteArrayEntity(request.getJsonBody().getBytes()),
+                            request.getSignHeaderPrefixList(),
+                            request.getAppKey(), request.getAppSecret());
+                }
+                return newHttpPut(request.getHost(), request.getPath(),
+                		request.getHeaders(),
+                		request.getQuerys(),
+                		request.getStringBody(),
+                		request.getSignHeaderPrefixList(),
+                		request.getAppKey(), request.getAppSecret());
+            case PUT_BYTES:
+                return newHttpPut(request.getHost(), request.getPath(),
+                		request.getHeaders(),
+                		request.getQuerys(),
+                		bytesEntity(request),
+                		request.getSignHeaderPrefixList(),
+                		request.getAppKey(), request.getAppSecret());
+            case DELETE:
+                return newHttpDelete(request.getHost(), request.getPath(),
+                		request.getHeaders(),
+                		request.getQuerys(),
+                		request.getSignHeaderPrefixList(),
+                		request.getAppKey(), request.getAppSecret());
+            default:
+                throw new IllegalArgumentException(String.format("unsupported method:%s", request.getMethod()));
+        }
+    }
+
+    /**
+     * 构建由RequestTemplate创建的Request
+     * URL前缀、参与签名的Header及签名器均取自模板,只需编码Query、计算签名及构建Body
+     */
+    private static HttpRequestBase buildRequest(RequestTemplate template, Request request) throws Exception {
+        Method method = request.getMethod();
+        boolean form = Method.POST_FORM == method || Method.PUT_FORM == method;
+        Map<String, String> headers = copyHeaders(request.getHeaders());
+        Map<String, String> querys = request.getQuerys();
+        Map<String, String> bodys = form ? request.getBodys() : null;
+        boolean json = !form && isJsonBody(request);
+        if (json) {
+            putJsonBodyHeaders(headers, request.getJsonBody());
+        }
+
+        headers.put(SystemHeader.X_CA_TIMESTAMP, NonceUtil.currentTimestamp());
+        if (template.isNonceEnabled()) {
+            headers.put(SystemHeader.X_CA_NONCE, NonceUtil.newNonce());
+        }
+        headers.put(SystemHeader.X_CA_KEY, template.getAppKey());
+        ClientMetrics metrics = Metrics.getClientMetrics();
+        long start = null == metrics ? 0 : System.nanoTime();
+        headers.put(SystemHeader.X_CA_SIGNATURE, template.sign(headers, querys, bodys));
+        if (null != metrics) {
+            recordSign(metrics, template.getUrlPrefix(), template.getHttpMethod(), System.nanoTime() - start);
+        }
+        if (null != template.getSignatureHeaders()) {
+            headers.put(SystemHeader.X_CA_SIGNATURE_HEADERS, template.getSignatureHeaders());
+        }
+
+        String url = appendQuerys(new StringBuilder(template.getUrlPrefix()), querys);
+        HttpRequestBase http;
+        HttpEntity entity = null;
+        switch (method) {
+            case GET:
+                http = new HttpGet(url);
+                break;
+            case DELETE:
+                http = new HttpDelete(url);
+                break;
+            default:
+                http = HttpMethod.POST.equals(template.getHttpMethod()) ? new HttpPost(url) : new HttpPut(url);
+                if (form) {
+                    entity = buildFormEntity(bodys);
+                } else if (json) {
+                    entity = new ByteArrayEntity(request.getJsonBody().getBytes());
+                } else if (Method.POST_STRING == method || Method.PUT_STRING == method) {
+                    if (StringUtils.isNotBlank(request.getStringBody())) {
+                        entity = new StringEntity(request.getStringBody(), Constants.ENCODING);
+                    }
+                } else {
+                    entity = bytesEntity(request);
+                }
+                if (null != entity) {
+                    ((HttpEntityEnclosingRequestBase) http).setEntity(entity);
+                }
+        }
+        for (Map.Entry<String, String> e : headers.entrySet()) {
+            http.addHeader(e.getKey(), MessageDigestUtil.utf8ToIso88591(e.getValue()));
+        }
+        return http;
+    }
+
+    private static HttpGet newHttpGet(String host, String path, Map<String, String> headers, Map<String, String> querys, List<String> signHeaderPrefixList, String appKey, String appSecret)
+            throws Exception {
+        headers = initialBasicHeader(HttpMethod.GET, host, path, headers, querys, null, signHeaderPrefixList, appKey, appSecret);
+
+        HttpGet get = new HttpGet(initUrl(host, path, querys));
+
+        for (Map.Entry<String, String> e : headers.entrySet()) {
+            get.addHeader(e.getKey(), MessageDigestUtil.utf8ToIso88591(e.getValue()));
+        }
+
+        return get;
+    }
+
+    private static HttpPost newHttpPost(String host, String path, Map<String, String> headers, Map<String, String> querys, Map<String, String> bodys, List<String> signHeaderPrefixList, String appKey, String appSecret)
+            throws Exception {
+        headers = initialBasicHeader(HttpMethod.POST, host, path, headers, ContentType.CONTENT_TYPE_FORM, querys, bodys, signHeaderPrefixList, appKey, appSecret);
+
+        HttpPost post = new HttpPost(initUrl(host, path, querys));
+        for (Map.Entry<String, String> e : headers.entrySet()) {
+            post.addHeader(e.getKey(), MessageDigestUtil.utf8ToIso88591(e.getValue()));
+        }
+
+        UrlEncodedFormEntity formEntity = buildFormEntity(bodys);
+        if (formEntity != null) {
+            post.setEntity(formEntity);
+        }
+
+        return post;
+    }
+
+    private static HttpPost newHttpPost(String host, String path, Map<String, String> headers, Map<String, String> querys, String body, List<String> signHeaderPrefixList, String appKey, String appSecret)
+            throws Exception {
+    	headers = initialBasicHeader(HttpMethod.POST, host, path, headers, querys, null, signHeaderPrefixList, appKey, appSecret);
+
+        HttpPost post = new HttpPost(initUrl(host, path, querys));
+        for (Map.Entry<String, String> e : headers.entrySet()) {
+            post.addHeader(e.getKey(), MessageDigestUtil.utf8ToIso88591(e.getValue()));
+        }
+
+        if (StringUtils.isNotBlank(body)) {
+            post.setEntity(new StringEntity(body, Constants.ENCODING));
+
+        }
+
+        return post;
+    }
+
+    private static HttpPost newHttpPost(String host, String path, Map<String, String> headers, Map<String, String> querys, HttpEntity entity, List<String> signHeaderPrefixList, String appKey, String appSecret)
+            throws Exception {
+    	headers = initialBasicHeader(HttpMethod.POST, host, path, headers, querys, null, signHeaderPrefixList, appKey, appSecret);
+
+        HttpPost post = new HttpPost(initUrl(host, path, querys));
+        for (Map.Entry<String, String> e : headers.entrySet()) {
+            post.addHeader(e.getKey(), MessageDigestUtil.utf8ToIso88591(e.getValue()));
+        }
+
+        if (entity != null) {
+            post.setEntity(entity);
+        }
+
+        return post;
+    }
+
+    private static HttpPut newHttpPut(String host, String path, Map<String, String> headers, Map<String, String> querys, Map<String, String> bodys, List<String> signHeaderPrefixList, String appKey, String appSecret)
+            throws Exception {
+        headers = initialBasicHeader(HttpMethod.PUT, host, path, headers, ContentType.CONTENT_TYPE_FORM, querys, bodys, signHeaderPrefixList, appKey, appSecret);
+
+        HttpPut put = new HttpPut(initUrl(host, path, querys));
+        for (Map.Entry<String, String> e : headers.entrySet()) {
+            put.addHeader(e.getKey(), MessageDigestUtil.utf8ToIso88591(e.getValue()));
+        }
+
+        UrlEncodedFormEntity formEntity = buildFormEntity(bodys);
+        if (formEntity != null) {
+            put.setEntity(formEntity);
+        }
+
+        return put;
+    }
+
+    private static HttpPut newHttpPut(String host, String path, Map<String, String> headers, Map<String, String> querys, String body, List<String> signHeaderPrefixList, String appKey, String appSecret)
+            throws Exception {
+    	headers = initialBasicHeader(HttpMethod.PUT, host, path, headers, querys, null, signHeaderPrefixList, appKey, appSecret);
+
+        HttpPut put = new HttpPut(initUrl(host, path, querys));
+        for (Map.Entry<String, String> e : headers.entrySet()) {
+            put.addHeader(e.getKey(), MessageDigestUtil.utf8ToIso88591(e.getValue()));
+        }
+
+        if (StringUtils.isNotBlank(body)) {
+            put.setEntity(new StringEntity(body, Constants.ENCODING));
+
+        }
+
+        return put;
+    }
+
+    private static HttpPut newHttpPut(String host, String path, Map<String, String> headers, Map<String, String> querys, HttpEntity entity, List<String> signHeaderPrefixList, String appKey, String appSecret)
+            throws Exception {
+    	headers = initialBasicHeader(HttpMethod.PUT, host, path, headers, querys, null, signHeaderPrefixList, appKey, appSecret);
+
+        HttpPut put = new HttpPut(initUrl(host, path, querys));
+        for (Map.Entry<String, String> e : headers.entrySet()) {
+        	put.addHeader(e.getKey(), MessageDigestUtil.utf8ToIso88591(e.getValue()));
+        }
+
+        if (entity != null) {
+        	put.setEntity(entity);
+        }
 
-        HttpClient httpClient = wrapClient(host);
-        httpClient.getParams().setParameter(CoreConnectionPNames.CONNECTION_TIMEOUT, getTimeout(connectTimeout));
+        return put;
+    }
+
+    private static HttpDelete newHttpDelete(String host, String path, Map<String, String> headers, Map<String, String> querys, List<String> signHeaderPrefixList, String appKey, String appSecret)
+            throws Exception {
+        headers = initialBasicHeader(HttpMethod.DELETE, host, path, headers, querys, null, signHeaderPrefixList, appKey, appSecret);
 
         HttpDelete delete = new HttpDelete(initUrl(host, path, querys));
         for (Map.Entry<String, String> e : headers.entrySet()) {
             delete.addHeader(e.getKey(), MessageDigestUtil.utf8ToIso88591(e.getValue()));
         }
 
-        return convert(httpClient.execute(delete));
+        return delete;
+    }
+
+    /**
+     * POST_STRING/PUT_STRING未设置字符串Body时使用对象序列化得到的JSON Body
+     */
+    private static boolean isJsonBody(Request request) {
+        return null != request.getJsonBody() && StringUtils.isBlank(request.getStringBody());
+    }
+
+    /**
+     * 复制调用方的Header并写入JSON Body的Content-MD5及默认Content-Type
+     */
+    private static Map<String, String> jsonBodyHeaders(Map<String, String> headers, JsonBody body) {
+        Map<String, String> copy = copyHeaders(headers);
+        putJsonBodyHeaders(copy, body);
+        return copy;
+    }
+
+    /**
+     * Content-MD5在序列化时已计算,直接参与签名;未指定Content-Type时使用JSON类型
+     */
+    private static void putJsonBodyHeaders(Map<String, String> headers, JsonBody body) {
+        headers.put(HttpHeader.HTTP_HEADER_CONTENT_MD5, body.getContentMD5());
+        if (!headers.containsKey(HttpHeader.HTTP_HEADER_CONTENT_TYPE)) {
+            headers.put(HttpHeader.HTTP_HEADER_CONTENT_TYPE, ContentType.CONTENT_TYPE_JSON);
+        }
+    }
+
+    /**
+     * 构建字节数组类型Body
+     *
+     * @param bodys
+     * @return
+     */
+    private static HttpEntity bytesEntity(byte[] bodys) {
+        return bodys == null ? null : new ByteArrayEntity(bodys);
+    }
+
+    /**
+     * 构建POST_BYTES/PUT_BYTES的Body,依次使用字节数组、ByteBuffer、文件、输入流
+     * 文件及输入流以流的方式发送,长度未知时使用chunked编码
+     *
+     * @param request
+     * @return
+     */
+    private static HttpEntity bytesEntity(Request request) {
+        if (null != request.getBytesBody()) {
+            return bytesEntity(request.getBytesBody());
+        }
+        if (null != request.getBufferBody()) {
+            return new ByteBufferEntity(request.getBufferBody());
+        }
+        if (null != request.getFileBody()) {
+            return new FileEntity(request.getFileBody());
+        }
+        if (null != request.getStreamBody()) {
+            return new InputStreamEntity(request.getStreamBody(), request.getStreamBodyLength());
+        }
+        return null;
     }
 
     /**
@@ -326,12 +598,19 @@ public class HttpUtil {
         return null;
     }
     
-    private static String initUrl(String host, String path, Map<String, String> querys) throws UnsupportedEncodingException {
+    static String initUrl(String host, String path, Map<String, String> querys) throws UnsupportedEncodingException {
     	StringBuilder sbUrl = new StringBuilder();
     	sbUrl.append(host);
     	if (!StringUtils.isBlank(path)) {
     		sbUrl.append(path);
         }
+    	return appendQuerys(sbUrl, querys);
+    }
+
+    /**
+     * 在URL前缀后追加编码后的Query
+     */
+    private static String appendQuerys(StringBuilder sbUrl, Map<String, String> querys) throws UnsupportedEncodingException {
     	if (null != querys) {
     		StringBuilder sbQuery = new StringBuilder();
         	for (Map.Entry<String, String> query : querys.entrySet()) {
@@ -361,6 +640,7 @@ public class HttpUtil {
     /**
      * 初始化基础Header
      * @param method
+     * @param host
      * @param path
      * @param headers
      * @param querys
@@ -371,26 +651,72 @@ public class HttpUtil {
      * @return
      * @throws MalformedURLException
      */
-    private static Map<String, String> initialBasicHeader(String method, String path,
+    private static Map<String, String> initialBasicHeader(String method, String host, String path,
                                                           Map<String, String> headers, 
                                                           Map<String, String> querys,
                                                           Map<String, String> bodys,
                                                           List<String> signHeaderPrefixList,
                                                           String appKey, String appSecret)
             throws MalformedURLException {
-        if (headers == null) {
-            headers = new HashMap<String, String>();
+        return initialBasicHeader(method, host, path, headers, null, querys, bodys, signHeaderPrefixList, appKey, appSecret);
+    }
+
+    /**
+     * 初始化基础Header
+     * 签名相关Header写入本次请求自己的Header副本,调用方传入的headers及signHeaderPrefixList不会被修改,同一Request可在多线程间共享
+     *
+     * @param contentType 覆盖Content-Type,为null时使用headers中的值
+     * @return 本次请求的Header
+     */
+    private static Map<String, String> initialBasicHeader(String method, String host, String path,
+                                                          Map<String, String> headers,
+                                                          String contentType,
+                                                          Map<String, String> querys,
+                                                          Map<String, String> bodys,
+                                                          List<String> signHeaderPrefixList,
+                                                          String appKey, String appSecret)
+            throws MalformedURLException {
+        headers = copyHeaders(headers);
+        if (null != contentType) {
+            headers.put(HttpHeader.HTTP_HEADER_CONTENT_TYPE, contentType);
         }
 
-        headers.put(SystemHeader.X_CA_TIMESTAMP, String.valueOf(new Date().getTime()));
-        //headers.put(SystemHeader.X_CA_NONCE, UUID.randomUUID().toString());
+        headers.put(SystemHeader.X_CA_TIMESTAMP, NonceUtil.currentTimestamp());
+        if (nonceEnabled) {
+            headers.put(SystemHeader.X_CA_NONCE, NonceUtil.newNonce());
+        }
         headers.put(SystemHeader.X_CA_KEY, appKey);
+        ClientMetrics metrics = Metrics.getClientMetrics();
+        long start = null == metrics ? 0 : System.nanoTime();
         headers.put(SystemHeader.X_CA_SIGNATURE,
                 SignUtil.sign(appSecret, method, path, headers, querys, bodys, signHeaderPrefixList));
+        if (null != metrics) {
+            recordSign(metrics, StringUtils.isBlank(path) ? host : host + path, method, System.nanoTime() - start);
+        }
 
         return headers;
     }
 
+    /**
+     * 记录签名耗时,Host及Path标签与发送阶段一样由请求URI生成
+     */
+    private static void recordSign(ClientMetrics metrics, String urlPrefix, String method, long nanos) {
+        URI uri = URI.create(urlPrefix);
+        metrics.recordTime(Phase.SIGN, Metrics.host(uri), Metrics.path(uri), method, nanos);
+    }
+
+    /**
+     * 复制调用方的Header作为本次请求的Header,预留签名相关Header的空间
+     */
+    private static Map<String, String> copyHeaders(Map<String, String> headers) {
+        if (null == headers) {
+            return new HashMap<String, String>(8);
+        }
+        Map<String, String> copy = new HashMap<String, String>((headers.size() + 5) * 4 / 3 + 1);
+        copy.putAll(headers);
+        return copy;
+    }
+
     /**
      * 读取超时时间
      * 
@@ -405,7 +731,7 @@ public class HttpUtil {
         return timeout;
     }
     
-    private static Response convert(HttpResponse response) throws IOException {
+    private static Response convert(HttpRequestBase request, HttpResponse response, boolean streaming) throws IOException {
     	Response res = new Response(); 
     	
     	if (null != response) {
@@ -417,7 +743,14 @@ public class HttpUtil {
     		res.setContentType(res.getHeader("Content-Type"));
     		res.setRequestId(res.getHeader("X-Ca-Request-Id"));
     		res.setErrorMessage(res.getHeader("X-Ca-Error-Message"));
-    		res.setBody(readStreamAsStr(response.getEntity().getContent()));
+    		HttpEntity entity = response.getEntity();
+    		if (null != entity) {
+    			if (streaming) {
+    				res.setBodyStream(new AbortableInputStream(entity.getContent(), request));
+    			} else {
+    				res.setBodyBytes(readStreamAsBytes(entity.getContent(), entity.getContentLength()));
+    			}
+    		}
     		
     	} else {
     		//服务器无回应
@@ -437,55 +770,209 @@ public class HttpUtil {
 	 * @throws IOException
 	 */
 	public static String readStreamAsStr(InputStream is) throws IOException {
-	    ByteArrayOutputStream bos = new ByteArrayOutputStream();
-	    WritableByteChannel dest = Channels.newChannel(bos);
-	    ReadableByteChannel src = Channels.newChannel(is);
-	    ByteBuffer bb = ByteBuffer.allocate(4096);
-	
-	    while (src.read(bb) != -1) {
-	        bb.flip();
-	        dest.write(bb);
-	        bb.clear();
+	    return new String(readStreamAsBytes(is, -1), Constants.ENCODING);
+	}
+
+	/**
+	 * 读取流的全部内容并关闭流
+	 * 已知长度时直接读入等长数组,不再经过中间缓冲区复制
+	 *
+	 * @param is
+	 * @param length 内容长度,未知时传-1
+	 * @return
+	 * @throws IOException
+	 */
+	public static byte[] readStreamAsBytes(InputStream is, long length) throws IOException {
+	    try {
+	        if (length >= 0 && length <= Integer.MAX_VALUE) {
+	            byte[] bytes = new byte[(int) length];
+	            int offset = 0;
+	            while (offset < bytes.length) {
+	                int read = is.read(bytes, offset, bytes.length - offset);
+	                if (read == -1) {
+	                    throw new IOException(String.format("premature end of stream, expected %d bytes but got %d", length, offset));
+	                }
+	                offset += read;
+	            }
+	            return bytes;
+	        }
+
+	        byte[] bytes = new byte[4096];
+	        int size = 0;
+	        int read;
+	        while ((read = is.read(bytes, size, bytes.length - size)) != -1) {
+	            size += read;
+	            if (size == bytes.length) {
+	                bytes = Arrays.copyOf(bytes, bytes.length * 2);
+	            }
+	        }
+	        return size == bytes.length ? bytes : Arrays.copyOf(bytes, size);
+	    } finally {
+	        is.close();
 	    }
-	    src.close();
-	    dest.close();
-	
-	    return new String(bos.toByteArray(), Constants.ENCODING);
 	}
 
-	private static HttpClient wrapClient(String host) {
-		HttpClient httpClient = new DefaultHttpClient();
-		if (host.startsWith("https://")) {
-			sslClient(httpClient);
+	/**
+	 * 使用共享连接池发送请求
+	 * 请求可在其他线程通过HttpRequestBase.abort()中断
+	 *
+	 * @param request
+	 * @param connectTimeout
+	 * @return
+	 * @throws IOException
+	 */
+	public static Response execute(HttpRequestBase request, int connectTimeout) throws IOException {
+		return execute(request, connectTimeout, false);
+	}
+
+	/**
+	 * 使用共享连接池发送请求,Body不做缓冲直接以流的形式返回
+	 * 调用方读取完毕后必须调用Response.close()归还连接;未读完时close会中断请求并关闭连接,而不是读完剩余Body
+	 *
+	 * @param request
+	 * @param connectTimeout
+	 * @return
+	 * @throws IOException
+	 */
+	public static Response executeStreaming(HttpRequestBase request, int connectTimeout) throws IOException {
+		return execute(request, connectTimeout, true);
+	}
+
+	private static Response execute(HttpRequestBase request, int connectTimeout, boolean streaming) throws IOException {
+		int timeout = getTimeout(connectTimeout);
+		request.getParams().setIntParameter(CoreConnectionPNames.CONNECTION_TIMEOUT, timeout);
+		request.getParams().setLongParameter(ClientPNames.CONN_MANAGER_TIMEOUT,
+				Math.min(timeout, HttpClientPool.getConnectionRequestTimeout()));
+
+		ClientMetrics metrics = Metrics.getClientMetrics();
+		if (null != metrics) {
+			return executeWithMetrics(metrics, request, streaming);
+		}
+
+		HttpResponse response = HttpClientPool.getClient().execute(request);
+		try {
+			return convert(request, response, streaming);
+		} catch (IOException e) {
+			request.abort();
+			throw e;
+		} catch (RuntimeException e) {
+			request.abort();
+			throw e;
 		}
-		
-		return httpClient;
 	}
-	
-	private static void sslClient(HttpClient httpClient) {
-        try {
-            SSLContext ctx = SSLContext.getInstance("TLS");
-            X509TrustManager tm = new X509TrustManager() {
-                public X509Certificate[] getAcceptedIssuers() {
-                    return null;
-                }
-                public void checkClientTrusted(X509Certificate[] xcs, String str) {
-                	
-                }
-                public void checkServerTrusted(X509Certificate[] xcs, String str) {
-                	
-                }
-            };
-            ctx.init(null, new TrustManager[] { tm }, null);
-            SSLSocketFactory ssf = new SSLSocketFactory(ctx);
-            ssf.setHostnameVerifier(SSLSocketFactory.ALLOW_ALL_HOSTNAME_VERIFIER);
-            ClientConnectionManager ccm = httpClient.getConnectionManager();
-            SchemeRegistry registry = ccm.getSchemeRegistry();
-            registry.register(new Scheme("https", 443, ssf));
-        } catch (KeyManagementException ex) {
-            throw new RuntimeException(ex);
-        } catch (NoSuchAlgorithmException ex) {
-        	throw new RuntimeException(ex);
-        }
-    }
-}
\ No newline at end of file
+
+	/**
+	 * 发送请求并记录各阶段耗时
+	 * 获取连接及建连在发送线程内同步完成,由连接池累计到当前线程,剩余部分记为服务端耗时
+	 */
+	private static Response executeWithMetrics(ClientMetrics metrics, HttpRequestBase request, boolean streaming) throws IOException {
+		URI uri = request.getURI();
+		String host = Metrics.host(uri);
+		String path = Metrics.path(uri);
+		String method = request.getMethod();
+
+		Metrics.CallTimer timer = Metrics.beginCall();
+		long start = System.nanoTime();
+		HttpResponse response;
+		try {
+			response = HttpClientPool.getClient().execute(request);
+		} catch (IOException e) {
+			metrics.recordFailure(host, path, method, e);
+			throw e;
+		} catch (RuntimeException e) {
+			metrics.recordFailure(host, path, method, e);
+			throw e;
+		} finally {
+			Metrics.endCall();
+		}
+		long received = System.nanoTime();
+
+		Response res;
+		try {
+			res = convert(request, response, streaming);
+		} catch (IOException e) {
+			request.abort();
+			metrics.recordFailure(host, path, method, e);
+			throw e;
+		} catch (RuntimeException e) {
+			request.abort();
+			metrics.recordFailure(host, path, method, e);
+			throw e;
+		}
+		long end = System.nanoTime();
+
+		metrics.recordTime(Phase.CONNECTION_LEASE, host, path, method, timer.getLeaseNanos());
+		if (timer.getConnectNanos() > 0) {
+			metrics.recordTime(Phase.CONNECT, host, path, method, timer.getConnectNanos());
+		}
+		metrics.recordTime(Phase.SERVER, host, path, method,
+				received - start - timer.getLeaseNanos() - timer.getConnectNanos());
+		if (!streaming) {
+			metrics.recordTime(Phase.BODY_READ, host, path, method, end - received);
+		}
+		metrics.recordTime(Phase.TOTAL, host, path, method, end - start);
+
+		long bytesIn = -1;
+		if (null != res.getBodyBytes()) {
+			bytesIn = res.getBodyBytes().length;
+		} else if (null != response.getEntity()) {
+			bytesIn = response.getEntity().getContentLength();
+		}
+		long bytesOut = -1;
+		if (request instanceof HttpEntityEnclosingRequest) {
+			HttpEntity entity = ((HttpEntityEnclosingRequest) request).getEntity();
+			bytesOut = null == entity ? 0 : entity.getContentLength();
+		}
+		metrics.recordResponse(host, path, method, res.getStatusCode(), res.getErrorMessage(), bytesIn, bytesOut);
+		return res;
+	}
+
+	/**
+	 * 流式Body
+	 * HttpClient 4.2关闭未读完的Body时会读完剩余内容以复用连接,大响应提前结束时代价很高;
+	 * 此处读到结尾时正常关闭归还连接,否则调用abort中断请求,连接直接关闭不再复用
+	 */
+	private static class AbortableInputStream extends FilterInputStream {
+
+		private final HttpRequestBase request;
+
+		private boolean eof;
+
+		AbortableInputStream(InputStream in, HttpRequestBase request) {
+			super(in);
+			this.request = request;
+		}
+
+		@Override
+		public int read() throws IOException {
+			int b = super.read();
+			if (b < 0) {
+				eof = true;
+			}
+			return b;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			int read = super.read(b, off, len);
+			if (read < 0) {
+				eof = true;
+			}
+			return read;
+		}
+
+		@Override
+		public void close() throws IOException {
+			if (eof) {
+				super.close();
+				return;
+			}
+			request.abort();
+			try {
+				super.close();
+			} catch (IOException e) {
+				//连接已随abort关闭,不再读取剩余内容
+			}
+		}
+	}
+}
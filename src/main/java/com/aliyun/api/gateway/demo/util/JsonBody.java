@@ -0,0 +1,127 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.aliyun.api.gateway.demo.util;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.util.Arrays;
+
+import com.alibaba.fastjson.JSON;
+
+/**
+ * 由对象序列化得到的JSON Body
+ * 对象经fastjson线程内缓冲区直接编码为UTF-8字节,写出的同时计算Content-MD5;
+ * 得到的字节数组即请求发送的内容,不再经过String,重试时也不会重新序列化
+ */
+public final class JsonBody {
+
+    private final byte[] bytes;
+
+    private final String contentMD5;
+
+    private JsonBody(byte[] bytes, String contentMD5) {
+        this.bytes = bytes;
+        this.contentMD5 = contentMD5;
+    }
+
+    /**
+     * 序列化对象,序列化结果与JSON.toJSONString(value)按UTF-8编码后一致
+     *
+     * @param value
+     * @return
+     */
+    public static JsonBody of(Object value) {
+        if (null == value) {
+            throw new IllegalArgumentException("value can not be null");
+        }
+        DigestSink sink = new DigestSink();
+        try {
+            JSON.writeJSONString(sink, value);
+        } catch (IOException e) {
+            throw new RuntimeException(e.getMessage(), e);
+        }
+        return new JsonBody(sink.toByteArray(), MessageDigestUtil.base64(sink.md.digest()));
+    }
+
+    /**
+     * 序列化后的UTF-8字节,不可修改
+     *
+     * @return
+     */
+    public byte[] getBytes() {
+        return bytes;
+    }
+
+    public int getLength() {
+        return bytes.length;
+    }
+
+    /**
+     * 字节内容的MD5摘要再Base64编码,即Content-MD5的值
+     *
+     * @return
+     */
+    public String getContentMD5() {
+        return contentMD5;
+    }
+
+    /**
+     * 收集序列化输出并同时更新MD5
+     * fastjson一次写出全部编码结果,首次写入时按实际长度分配,通常无需再复制
+     */
+    private static class DigestSink extends OutputStream {
+
+        private final MessageDigest md = MessageDigestUtil.newMD5();
+
+        private byte[] buf;
+
+        private int count;
+
+        @Override
+        public void write(int b) {
+            ensureCapacity(count + 1);
+            buf[count++] = (byte) b;
+            md.update((byte) b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            ensureCapacity(count + len);
+            System.arraycopy(b, off, buf, count, len);
+            count += len;
+            md.update(b, off, len);
+        }
+
+        private void ensureCapacity(int capacity) {
+            if (null == buf) {
+                buf = new byte[capacity];
+            } else if (capacity > buf.length) {
+                buf = Arrays.copyOf(buf, Math.max(capacity, buf.length * 2));
+            }
+        }
+
+        byte[] toByteArray() {
+            if (null == buf) {
+                return new byte[0];
+            }
+            return count == buf.length ? buf : Arrays.copyOf(buf, count);
+        }
+    }
+}
@@ -19,16 +19,30 @@
 package com.aliyun.api.gateway.demo.util;
 
 import com.aliyun.api.gateway.demo.constant.Constants;
-import org.apache.commons.codec.binary.Base64;
 
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
 import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
 
 /**
  * 消息摘要工具
  */
 public class MessageDigestUtil {
+    //流式计算摘要时的读取块大小
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    //按内存映射计算文件摘要时每段映射的最大长度
+    private static final long MAX_MAP_SIZE = 256L * 1024 * 1024;
+
     /**
      * 先进行MD5摘要再进行Base64编码获取摘要字符串
      *
@@ -51,18 +65,116 @@ public class MessageDigestUtil {
         if (bytes == null) {
             throw new IllegalArgumentException("bytes can not be null");
         }
+        final MessageDigest md = newMD5();
+        md.update(bytes);
+        return base64(md.digest());
+    }
+
+    /**
+     * 先进行MD5摘要再进行Base64编码获取摘要字符串
+     * 按块读取流计算摘要,不会将内容整体读入内存;读取完毕后不关闭流
+     *
+     * @param in
+     * @return
+     * @throws IOException
+     */
+    public static String base64AndMD5(InputStream in) throws IOException {
+        if (in == null) {
+            throw new IllegalArgumentException("in can not be null");
+        }
+        final MessageDigest md = newMD5();
+        final byte[] buffer = new byte[BUFFER_SIZE];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            md.update(buffer, 0, read);
+        }
+        return base64(md.digest());
+    }
+
+    /**
+     * 先进行MD5摘要再进行Base64编码获取摘要字符串
+     * 通过内存映射读取文件,不复制到堆内存
+     *
+     * @param file
+     * @return
+     * @throws IOException
+     */
+    public static String base64AndMD5(File file) throws IOException {
+        if (file == null) {
+            throw new IllegalArgumentException("file can not be null");
+        }
+        return base64AndMD5(file.toPath());
+    }
+
+    /**
+     * 先进行MD5摘要再进行Base64编码获取摘要字符串
+     * 通过内存映射读取文件,不复制到堆内存
+     *
+     * @param path
+     * @return
+     * @throws IOException
+     */
+    public static String base64AndMD5(Path path) throws IOException {
+        if (path == null) {
+            throw new IllegalArgumentException("path can not be null");
+        }
+        final FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
         try {
-            final MessageDigest md = MessageDigest.getInstance("MD5");
-            md.reset();
-            md.update(bytes);
-            final Base64 base64 = new Base64();
-            final byte[] enbytes = base64.encode(md.digest());
-            return new String(enbytes);
+            return base64AndMD5(channel);
+        } finally {
+            channel.close();
+        }
+    }
+
+    /**
+     * 先进行MD5摘要再进行Base64编码获取摘要字符串
+     * 按段内存映射整个文件计算摘要,不改变channel的position;读取完毕后不关闭channel
+     *
+     * @param channel
+     * @return
+     * @throws IOException
+     */
+    public static String base64AndMD5(FileChannel channel) throws IOException {
+        if (channel == null) {
+            throw new IllegalArgumentException("channel can not be null");
+        }
+        final MessageDigest md = newMD5();
+        final long size = channel.size();
+        for (long position = 0; position < size; position += MAX_MAP_SIZE) {
+            md.update(channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(MAX_MAP_SIZE, size - position)));
+        }
+        return base64(md.digest());
+    }
+
+    /**
+     * 先进行MD5摘要再进行Base64编码获取摘要字符串
+     * 计算position到limit之间的内容,不改变buffer的position;直接内存及MappedByteBuffer不会复制到堆内存
+     *
+     * @param buffer
+     * @return
+     */
+    public static String base64AndMD5(ByteBuffer buffer) {
+        if (buffer == null) {
+            throw new IllegalArgumentException("buffer can not be null");
+        }
+        final MessageDigest md = newMD5();
+        md.update(buffer.duplicate());
+        return base64(md.digest());
+    }
+
+    static MessageDigest newMD5() {
+        try {
+            return MessageDigest.getInstance("MD5");
         } catch (final NoSuchAlgorithmException e) {
             throw new IllegalArgumentException("unknown algorithm MD5");
         }
     }
 
+    //commons-codec 1.6每次编码都会分配8KB缓冲区,改用JDK自带的编码器
+    static String base64(byte[] digest) {
+        return Base64.getEncoder().encodeToString(digest);
+    }
+
     /**
      * UTF-8编码转换为ISO-9959-1
      *
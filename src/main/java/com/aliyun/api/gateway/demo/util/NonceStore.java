@@ -0,0 +1,273 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.aliyun.api.gateway.demo.util;
+
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.aliyun.api.gateway.demo.constant.Constants;
+
+/**
+ * 防重放的Nonce存储
+ * 只保存Nonce的64位指纹,按Hash分段加锁,每段内按时间分桶,整桶过期而不是为每个Nonce设置定时器;
+ * 哈希表装载因子在0.375-0.75之间,每个Nonce约占11-21字节,一千万个Nonce约需130-200MB;
+ * 指纹使用随机种子,不同Nonce被误判为重放的概率约为n²/2^65
+ */
+public class NonceStore {
+    //每个时间桶哈希表的初始容量
+    private static final int INITIAL_CAPACITY = 64;
+
+    private final long bucketMillis;
+
+    private final int generations;
+
+    private final Stripe[] stripes;
+
+    private final int stripeMask;
+
+    private final long seed = new SecureRandom().nextLong();
+
+    private final LongAdder replays = new LongAdder();
+
+    /**
+     * 保存30分钟(默认时间偏差的2倍),每分钟一个时间桶
+     */
+    public NonceStore() {
+        this(2 * Constants.DEFAULT_TIMESTAMP_TOLERANCE, 60 * 1000, 4 * Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param windowMillis Nonce至少保存的时间,单位毫秒,应不小于校验时间戳允许偏差的2倍:
+     *                     时间戳向前向后均允许偏差,比当前时间晚tolerance的请求在首次出现后2*tolerance内仍可通过时间戳校验
+     * @param bucketMillis 时间桶长度,Nonce最多比windowMillis多保存一个桶的时间
+     * @param concurrency 预计的并发写入线程数,分段数为不小于该值的2的幂
+     */
+    public NonceStore(long windowMillis, long bucketMillis, int concurrency) {
+        if (windowMillis <= 0 || bucketMillis <= 0 || bucketMillis > windowMillis) {
+            throw new IllegalArgumentException("require 0 < bucketMillis <= windowMillis");
+        }
+        this.bucketMillis = bucketMillis;
+        this.generations = (int) ((windowMillis + bucketMillis - 1) / bucketMillis) + 1;
+        int size = 1;
+        while (size < concurrency && size < (1 << 16)) {
+            size <<= 1;
+        }
+        this.stripes = new Stripe[size];
+        for (int i = 0; i < size; i++) {
+            stripes[i] = new Stripe(generations);
+        }
+        this.stripeMask = size - 1;
+    }
+
+    /**
+     * 记录Nonce
+     *
+     * @param nonce
+     * @return 首次出现返回true,保存期内重复出现返回false
+     */
+    public boolean add(CharSequence nonce) {
+        return add(nonce, System.currentTimeMillis());
+    }
+
+    boolean add(CharSequence nonce, long nowMillis) {
+        long fingerprint = fingerprint(nonce);
+        Stripe stripe = stripes[(int) (fingerprint >>> 32) & stripeMask];
+        if (stripe.add(fingerprint, nowMillis / bucketMillis)) {
+            return true;
+        }
+        replays.increment();
+        return false;
+    }
+
+    /**
+     * 保存期内的Nonce数量
+     *
+     * @return
+     */
+    public long size() {
+        return size(System.currentTimeMillis());
+    }
+
+    long size(long nowMillis) {
+        long epoch = nowMillis / bucketMillis;
+        long size = 0;
+        for (Stripe stripe : stripes) {
+            size += stripe.size(epoch);
+        }
+        return size;
+    }
+
+    /**
+     * 哈希表占用的内存,单位字节,包括尚未复用的过期时间桶
+     *
+     * @return
+     */
+    public long getMemoryBytes() {
+        long bytes = 0;
+        for (Stripe stripe : stripes) {
+            bytes += stripe.memoryBytes();
+        }
+        return bytes;
+    }
+
+    /**
+     * 平均每个Nonce占用的内存,单位字节
+     *
+     * @return
+     */
+    public double getBytesPerNonce() {
+        long size = size();
+        return 0 == size ? 0 : (double) getMemoryBytes() / size;
+    }
+
+    /**
+     * 检测到的重放次数
+     *
+     * @return
+     */
+    public long getReplays() {
+        return replays.sum();
+    }
+
+    /**
+     * 带随机种子的64位FNV-1a,再经过一次混合使高低位均匀分布;0保留为空槽
+     */
+    private long fingerprint(CharSequence nonce) {
+        long h = seed ^ 0xcbf29ce484222325L;
+        for (int i = 0, length = nonce.length(); i < length; i++) {
+            h ^= nonce.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return 0 == h ? 1 : h;
+    }
+
+    /**
+     * 一个分段,每个时间桶一张开放寻址的long哈希表,按桶序号取模循环复用
+     */
+    private static final class Stripe {
+
+        private final long[][] tables;
+
+        private final int[] sizes;
+
+        private final long[] epochs;
+
+        //已见过的最大时间桶序号,时钟回拨时沿用,避免覆盖较新的时间桶
+        private long lastEpoch = Long.MIN_VALUE;
+
+        Stripe(int generations) {
+            tables = new long[generations][];
+            sizes = new int[generations];
+            epochs = new long[generations];
+            for (int i = 0; i < generations; i++) {
+                tables[i] = new long[INITIAL_CAPACITY];
+                epochs[i] = Long.MIN_VALUE;
+            }
+        }
+
+        synchronized boolean add(long fingerprint, long epoch) {
+            epoch = Math.max(epoch, lastEpoch);
+            lastEpoch = epoch;
+            int generations = tables.length;
+            for (int i = 0; i < generations; i++) {
+                if (0 != sizes[i] && isLive(i, epoch) && contains(tables[i], fingerprint)) {
+                    return false;
+                }
+            }
+            int current = (int) (epoch % generations);
+            if (epochs[current] != epoch) {
+                //整桶过期,丢弃后从初始容量重新开始
+                if (tables[current].length > INITIAL_CAPACITY) {
+                    tables[current] = new long[INITIAL_CAPACITY];
+                } else if (0 != sizes[current]) {
+                    Arrays.fill(tables[current], 0L);
+                }
+                sizes[current] = 0;
+                epochs[current] = epoch;
+            }
+            if ((sizes[current] + 1) * 4 > tables[current].length * 3) {
+                tables[current] = resize(tables[current]);
+            }
+            insert(tables[current], fingerprint);
+            sizes[current]++;
+            return true;
+        }
+
+        synchronized long size(long epoch) {
+            epoch = Math.max(epoch, lastEpoch);
+            long size = 0;
+            for (int i = 0; i < tables.length; i++) {
+                if (isLive(i, epoch)) {
+                    size += sizes[i];
+                }
+            }
+            return size;
+        }
+
+        synchronized long memoryBytes() {
+            long bytes = 0;
+            for (long[] table : tables) {
+                bytes += 8L * table.length;
+            }
+            return bytes;
+        }
+
+        private boolean isLive(int generation, long epoch) {
+            return Long.MIN_VALUE != epochs[generation] && epoch - epochs[generation] < tables.length;
+        }
+
+        private static boolean contains(long[] table, long fingerprint) {
+            int mask = table.length - 1;
+            for (int i = (int) fingerprint & mask; ; i = (i + 1) & mask) {
+                long value = table[i];
+                if (value == fingerprint) {
+                    return true;
+                }
+                if (0 == value) {
+                    return false;
+                }
+            }
+        }
+
+        private static void insert(long[] table, long fingerprint) {
+            int mask = table.length - 1;
+            int i = (int) fingerprint & mask;
+            while (0 != table[i]) {
+                i = (i + 1) & mask;
+            }
+            table[i] = fingerprint;
+        }
+
+        private static long[] resize(long[] table) {
+            long[] larger = new long[table.length * 2];
+            for (long value : table) {
+                if (0 != value) {
+                    insert(larger, value);
+                }
+            }
+            return larger;
+        }
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.aliyun.api.gateway.demo.util;
+
+import java.security.SecureRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * X-Ca-Nonce及X-Ca-Timestamp生成工具
+ * Nonce由进程启动时从SecureRandom取得的64位随机前缀及进程内唯一的64位序号组成,格式与UUID相同;
+ * 序号按块分配给各线程,线程内递增,生成时不访问共享的SecureRandom,也不需要加锁
+ */
+public class NonceUtil {
+    //每个线程一次领取的序号数
+    static final int SEQUENCE_BLOCK = 1 << 16;
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    //进程随机前缀的UUID格式文本,如"1f2e3d4c-5b6a-7988-"
+    private static final char[] PREFIX = prefix(new SecureRandom().nextLong());
+
+    private static final AtomicLong NEXT_BLOCK = new AtomicLong();
+
+    private static final ThreadLocal<NonceBuffer> BUFFERS = new ThreadLocal<NonceBuffer>() {
+        @Override
+        protected NonceBuffer initialValue() {
+            return new NonceBuffer();
+        }
+    };
+
+    //最近一次格式化的时间戳,同一毫秒内的请求共用同一个字符串
+    private static volatile Timestamp lastTimestamp = new Timestamp(0);
+
+    private NonceUtil() {
+    }
+
+    /**
+     * 生成Nonce,同一进程内不会重复,不同进程间重复的概率可忽略
+     *
+     * @return 36位的UUID格式字符串
+     */
+    public static String newNonce() {
+        return BUFFERS.get().next();
+    }
+
+    /**
+     * 当前时间的毫秒数字符串,用作X-Ca-Timestamp;同一毫秒内重复调用返回同一个字符串
+     *
+     * @return
+     */
+    public static String currentTimestamp() {
+        long now = System.currentTimeMillis();
+        Timestamp timestamp = lastTimestamp;
+        if (timestamp.millis != now) {
+            timestamp = new Timestamp(now);
+            lastTimestamp = timestamp;
+        }
+        return timestamp.text;
+    }
+
+    private static char[] prefix(long random) {
+        char[] chars = new char[36];
+        writeHex(chars, 0, random >>> 32, 8);
+        chars[8] = '-';
+        writeHex(chars, 9, random >>> 16, 4);
+        chars[13] = '-';
+        writeHex(chars, 14, random, 4);
+        chars[18] = '-';
+        return chars;
+    }
+
+    private static void writeHex(char[] chars, int offset, long value, int digits) {
+        for (int i = offset + digits - 1; i >= offset; i--) {
+            chars[i] = HEX[(int) value & 0xf];
+            value >>>= 4;
+        }
+    }
+
+    private static final class Timestamp {
+
+        private final long millis;
+
+        private final String text;
+
+        Timestamp(long millis) {
+            this.millis = millis;
+            this.text = String.valueOf(millis);
+        }
+    }
+
+    /**
+     * 线程内的序号块及格式化缓冲区
+     */
+    private static final class NonceBuffer {
+
+        private final char[] chars = PREFIX.clone();
+
+        private long sequence;
+
+        private long limit;
+
+        String next() {
+            if (sequence == limit) {
+                sequence = NEXT_BLOCK.getAndIncrement() * SEQUENCE_BLOCK;
+                limit = sequence + SEQUENCE_BLOCK;
+            }
+            long value = sequence++;
+            writeHex(chars, 19, value >>> 48, 4);
+            chars[23] = '-';
+            writeHex(chars, 24, value, 12);
+            return new String(chars);
+        }
+    }
+}
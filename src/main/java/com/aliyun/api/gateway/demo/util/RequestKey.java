@@ -0,0 +1,106 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.aliyun.api.gateway.demo.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+import com.aliyun.api.gateway.demo.Request;
+import com.aliyun.api.gateway.demo.constant.HttpHeader;
+import com.aliyun.api.gateway.demo.constant.SystemHeader;
+
+/**
+ * 由Request字段生成的Key,用于识别相同请求
+ * 每个字段按"长度:内容"写入,Query与Header分段并带有数量,不同请求不会因拼接产生相同的Key
+ */
+public class RequestKey {
+
+    //按名称排序,允许null名称
+    private static final Comparator<Map.Entry<String, String>> BY_NAME = new Comparator<Map.Entry<String, String>>() {
+        public int compare(Map.Entry<String, String> a, Map.Entry<String, String> b) {
+            if (null == a.getKey()) {
+                return null == b.getKey() ? 0 : -1;
+            }
+            return null == b.getKey() ? 1 : a.getKey().compareTo(b.getKey());
+        }
+    };
+
+    /**
+     * 生成Key: Method、APP KEY、Host、Path、排序后的Query及除签名相关Header外的请求Header
+     * 不包含Body,只适用于GET等没有Body的请求
+     *
+     * @param request
+     * @return
+     */
+    public static String of(Request request) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(request.getMethod()).append(' ');
+        append(sb, request.getAppKey());
+        append(sb, request.getHost());
+        append(sb, request.getPath());
+        sb.append('Q');
+        appendSorted(sb, request.getQuerys(), false);
+        sb.append('H');
+        appendSorted(sb, request.getHeaders(), true);
+        return sb.toString();
+    }
+
+    private static void appendSorted(StringBuilder sb, Map<String, String> params, boolean headers) {
+        List<Map.Entry<String, String>> entries = new ArrayList<Map.Entry<String, String>>();
+        if (null != params) {
+            for (Map.Entry<String, String> e : params.entrySet()) {
+                if (!headers || !isExcludedHeader(e.getKey())) {
+                    entries.add(e);
+                }
+            }
+        }
+        Collections.sort(entries, BY_NAME);
+        sb.append(entries.size()).append(' ');
+        for (Map.Entry<String, String> e : entries) {
+            append(sb, e.getKey());
+            append(sb, e.getValue());
+        }
+    }
+
+    /**
+     * 每次请求都会变化或不影响响应内容的Header
+     */
+    private static boolean isExcludedHeader(String name) {
+        return SystemHeader.X_CA_KEY.equals(name)
+                || SystemHeader.X_CA_TIMESTAMP.equals(name)
+                || SystemHeader.X_CA_NONCE.equals(name)
+                || SystemHeader.X_CA_SIGNATURE.equals(name)
+                || SystemHeader.X_CA_SIGNATURE_HEADERS.equals(name)
+                || HttpHeader.HTTP_HEADER_CACHE_CONTROL.equals(name);
+    }
+
+    /**
+     * 按"长度:内容"写入,null写为"-"
+     */
+    private static void append(StringBuilder sb, String value) {
+        if (null == value) {
+            sb.append('-');
+        } else {
+            sb.append(value.length()).append(':').append(value);
+        }
+    }
+}
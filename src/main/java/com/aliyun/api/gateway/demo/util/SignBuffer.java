@@ -0,0 +1,203 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.aliyun.api.gateway.demo.util;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.crypto.Mac;
+import javax.crypto.ShortBufferException;
+
+import com.aliyun.api.gateway.demo.constant.Constants;
+
+/**
+ * 签名用的线程内缓冲区
+ * 待签名字符串、排序用的Key数组及UTF-8编码结果均在同一线程内复用,签名路径上不再产生临时对象
+ */
+class SignBuffer {
+    //单个缓冲区允许保留的最大容量,超出后用完即丢弃,避免个别大请求长期占用内存
+    private static final int MAX_RETAINED_CAPACITY = 64 * 1024;
+
+    private static final char[] BASE64 = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/".toCharArray();
+
+    private static final ThreadLocal<SignBuffer> BUFFERS = new ThreadLocal<SignBuffer>() {
+        @Override
+        protected SignBuffer initialValue() {
+            return new SignBuffer();
+        }
+    };
+
+    //待签名字符串
+    final StringBuilder stringToSign = new StringBuilder(512);
+
+    //参与签名的Header名称列表
+    final StringBuilder signHeaders = new StringBuilder(128);
+
+    //去掉单独签名的Header并排序后的签名Header前缀,调用方的列表保持不变
+    final List<String> signHeaderPrefixes = new ArrayList<String>();
+
+    //HmacSHA256的结果及其Base64编码
+    final byte[] digest = new byte[32];
+
+    final char[] encodedDigest = new char[44];
+
+    //查找待签名固定部分缓存用的Key
+    final CanonicalCache.Key probe = new CanonicalCache.Key();
+
+    private final CharsetEncoder encoder = Charset.forName(Constants.ENCODING).newEncoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+
+    private String[] keys = new String[32];
+
+    private ByteBuffer bytes = ByteBuffer.allocate(1024);
+
+    private SignBuffer() {
+    }
+
+    /**
+     * 获取当前线程的缓冲区并清空
+     *
+     * @return
+     */
+    static SignBuffer get() {
+        SignBuffer buffer = BUFFERS.get();
+        buffer.reset();
+        return buffer;
+    }
+
+    private void reset() {
+        if (stringToSign.capacity() > MAX_RETAINED_CAPACITY) {
+            stringToSign.setLength(0);
+            stringToSign.trimToSize();
+        }
+        stringToSign.setLength(0);
+        signHeaders.setLength(0);
+        signHeaderPrefixes.clear();
+        if (bytes.capacity() > MAX_RETAINED_CAPACITY) {
+            bytes = ByteBuffer.allocate(1024);
+        }
+    }
+
+    /**
+     * 获取至少能容纳size个元素的Key数组
+     *
+     * @param size
+     * @return
+     */
+    String[] keys(int size) {
+        if (keys.length < size) {
+            keys = new String[Math.max(size, keys.length * 2)];
+        }
+        return keys;
+    }
+
+    /**
+     * 清理Key数组中的引用
+     *
+     * @param size
+     */
+    void releaseKeys(int size) {
+        Arrays.fill(keys, 0, Math.min(size, keys.length), null);
+    }
+
+    /**
+     * 将待签名字符串按UTF-8编码后写入Mac
+     *
+     * @param mac
+     */
+    void update(Mac mac) {
+        ByteBuffer out = encode();
+        mac.update(out.array(), 0, out.position());
+    }
+
+    /**
+     * 计算待签名字符串的HmacSHA256,Base64编码结果写入encodedDigest
+     *
+     * @param mac
+     * @return 编码长度
+     */
+    int sign(Mac mac) {
+        update(mac);
+        try {
+            mac.doFinal(digest, 0);
+        } catch (ShortBufferException e) {
+            throw new RuntimeException(e);
+        }
+        return encodeBase64(digest, encodedDigest);
+    }
+
+    /**
+     * 将待签名字符串按UTF-8编码到复用的字节缓冲区,返回的缓冲区position即编码长度
+     *
+     * @return
+     */
+    ByteBuffer encode() {
+        CharBuffer in = CharBuffer.wrap(stringToSign);
+        encoder.reset();
+        bytes.clear();
+        //非法字符按'?'替换,与String.getBytes行为一致,因此只会出现UNDERFLOW或OVERFLOW
+        while (encoder.encode(in, bytes, true).isOverflow()) {
+            grow();
+        }
+        while (encoder.flush(bytes).isOverflow()) {
+            grow();
+        }
+        return bytes;
+    }
+
+    private void grow() {
+        ByteBuffer larger = ByteBuffer.allocate(bytes.capacity() * 2);
+        bytes.flip();
+        larger.put(bytes);
+        bytes = larger;
+    }
+
+    /**
+     * 按标准Base64编码(带填充)写入out
+     *
+     * @return 编码长度
+     */
+    private static int encodeBase64(byte[] in, char[] out) {
+        int o = 0;
+        int i = 0;
+        for (; i + 3 <= in.length; i += 3) {
+            int bits = (in[i] & 0xff) << 16 | (in[i + 1] & 0xff) << 8 | (in[i + 2] & 0xff);
+            out[o++] = BASE64[bits >>> 18 & 0x3f];
+            out[o++] = BASE64[bits >>> 12 & 0x3f];
+            out[o++] = BASE64[bits >>> 6 & 0x3f];
+            out[o++] = BASE64[bits & 0x3f];
+        }
+        int remaining = in.length - i;
+        if (remaining > 0) {
+            int bits = (in[i] & 0xff) << 16 | (remaining == 2 ? (in[i + 1] & 0xff) << 8 : 0);
+            out[o++] = BASE64[bits >>> 18 & 0x3f];
+            out[o++] = BASE64[bits >>> 12 & 0x3f];
+            out[o++] = remaining == 2 ? BASE64[bits >>> 6 & 0x3f] : '=';
+            out[o++] = '=';
+        }
+        return o;
+    }
+}
@@ -18,25 +18,36 @@
  */
 package com.aliyun.api.gateway.demo.util;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
-import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
-import javax.crypto.Mac;
-import javax.crypto.spec.SecretKeySpec;
-
-import org.apache.commons.codec.binary.Base64;
 import org.apache.commons.lang.StringUtils;
 
 import com.aliyun.api.gateway.demo.constant.Constants;
 import com.aliyun.api.gateway.demo.constant.HttpHeader;
+import com.aliyun.api.gateway.demo.constant.HttpMethod;
 import com.aliyun.api.gateway.demo.constant.SystemHeader;
 
 /**
  * 签名工具
  */
 public class SignUtil {
+    //缓存的签名器数量上限
+    private static final int MAX_CACHED_SIGNERS = 1024;
+
+    //APP密钥 -> 签名器
+    private static final ConcurrentMap<String, Signer> SIGNERS = new ConcurrentHashMap<String, Signer>();
+
+    private static final String[] NO_HEADERS = new String[0];
+
+    //GET请求待签名字符串固定部分的缓存,默认关闭,通过configureCanonicalCache启用
+    private static volatile CanonicalCache canonicalCache = new CanonicalCache(0, 0);
 
     /**
      * 计算签名
@@ -44,10 +55,10 @@ public class SignUtil {
      * @param secret APP密钥
      * @param method HttpMethod
      * @param path
-     * @param headers
+     * @param headers 本次请求的Header,签名Header前缀不为null时会写入X-Ca-Signature-Headers
      * @param querys
      * @param bodys
-     * @param signHeaderPrefixList 自定义参与签名Header前缀
+     * @param signHeaderPrefixList 自定义参与签名Header前缀,不会被修改
      * @return 签名后的字符串
      */
     public static String sign(String secret, String method, String path, 
@@ -56,152 +67,349 @@ public class SignUtil {
     							Map<String, String> bodys, 
     							List<String> signHeaderPrefixList) {
         try {
-            Mac hmacSha256 = Mac.getInstance(Constants.HMAC_SHA256);
-            byte[] keyBytes = secret.getBytes(Constants.ENCODING);
-            hmacSha256.init(new SecretKeySpec(keyBytes, 0, keyBytes.length, Constants.HMAC_SHA256));
-
-            return new String(Base64.encodeBase64(
-                    hmacSha256.doFinal(buildStringToSign(method, path, headers, querys, bodys, signHeaderPrefixList)
-                            .getBytes(Constants.ENCODING))),
-                    Constants.ENCODING);
+            SignBuffer buffer = SignBuffer.get();
+            buildStringToSign(buffer, method, path, headers, querys, bodys, signHeaderPrefixList);
+
+            int length = buffer.sign(getSigner(secret).getMac());
+            return new String(buffer.encodedDigest, 0, length);
         } catch (Exception e) {
             throw new RuntimeException(e);
         }
     }
 
+    /**
+     * 按预先选出并排序的Header计算签名,不再筛选、排序Header,也不修改headers
+     *
+     * @param signer 签名器
+     * @param method HttpMethod
+     * @param path
+     * @param headers
+     * @param querys
+     * @param bodys
+     * @param signHeaderNames 参与签名的Header名称,需已由selectHeadersToSign选出并排序
+     * @return 签名后的字符串
+     */
+    public static String sign(Signer signer, String method, String path,
+                              Map<String, String> headers,
+                              Map<String, String> querys,
+                              Map<String, String> bodys,
+                              String[] signHeaderNames) {
+        try {
+            SignBuffer buffer = SignBuffer.get();
+            buildStringToSign(buffer, method, path, headers, querys, bodys, signHeaderNames);
+
+            int length = buffer.sign(signer.getMac());
+            return new String(buffer.encodedDigest, 0, length);
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * 选出参与签名的Header名称并排序,结果与sign(secret, ...)内部的选择一致
+     *
+     * @param headerNames 请求携带的Header名称
+     * @param signHeaderPrefixList 自定义参与签名Header前缀,为null时不签名任何Header;不会被修改
+     * @return 已排序的Header名称
+     */
+    public static String[] selectHeadersToSign(Collection<String> headerNames, List<String> signHeaderPrefixList) {
+        if (null == signHeaderPrefixList || null == headerNames) {
+            return NO_HEADERS;
+        }
+        List<String> prefixList = new ArrayList<String>(signHeaderPrefixList);
+        normalizeSignHeaderPrefixList(prefixList);
+        List<String> names = new ArrayList<String>();
+        for (String name : headerNames) {
+            if (isHeaderToSign(name, prefixList)) {
+                names.add(name);
+            }
+        }
+        String[] sorted = names.toArray(new String[names.size()]);
+        Arrays.sort(sorted);
+        return sorted;
+    }
+
+    /**
+     * 获取APP密钥对应的签名器,相同密钥复用同一个签名器
+     *
+     * @param secret APP密钥
+     * @return 签名器
+     */
+    public static Signer getSigner(String secret) {
+        Signer signer = SIGNERS.get(secret);
+        if (null == signer) {
+            signer = new Signer(secret);
+            if (SIGNERS.size() < MAX_CACHED_SIGNERS) {
+                Signer existing = SIGNERS.putIfAbsent(secret, signer);
+                if (null != existing) {
+                    signer = existing;
+                }
+            }
+        }
+        return signer;
+    }
+
+    /**
+     * 配置GET请求待签名字符串固定部分的缓存,会丢弃已有缓存
+     * 缓存Key包含Query的值,只在Query取值有限的GET请求上有收益;Query取值各不相同时每次都会未命中并额外分配
+     * 可使用Constants.DEFAULT_CANONICAL_CACHE_SIZE及DEFAULT_CANONICAL_CACHE_TTL启用
+     *
+     * @param maxEntries 最大缓存数,小于等于0表示关闭缓存
+     * @param ttlMillis 缓存时间,单位毫秒,小于等于0表示不过期
+     */
+    public static void configureCanonicalCache(int maxEntries, long ttlMillis) {
+        canonicalCache = new CanonicalCache(maxEntries, ttlMillis);
+    }
+
+    /**
+     * 获取待签名字符串固定部分的缓存,可用于查看命中率
+     *
+     * @return
+     */
+    public static CanonicalCache getCanonicalCache() {
+        return canonicalCache;
+    }
+
     /**
      * 构建待签名字符串
+     * @param buffer
      * @param method
      * @param path
      * @param headers
      * @param querys
      * @param bodys
      * @param signHeaderPrefixList
-     * @return
      */
-    private static String buildStringToSign(String method, String path, 
+    static void buildStringToSign(SignBuffer buffer, String method, String path,
     										Map<String, String> headers, 
     										Map<String, String> querys,
     										Map<String, String> bodys,
                                             List<String> signHeaderPrefixList) {
-        StringBuilder sb = new StringBuilder();
+        appendMethodAndBasicHeaders(buffer.stringToSign, method, headers);
+        if (null != signHeaderPrefixList) {
+            signHeaderPrefixList = normalizeSignHeaderPrefixList(buffer, signHeaderPrefixList);
+        }
+
+        CanonicalCache cache = canonicalCache;
+        if (cache.isEnabled() && HttpMethod.GET.equalsIgnoreCase(method) && (null == bodys || bodys.isEmpty())) {
+            buildCachedHeadersAndResource(cache, buffer, method, path, headers, querys, signHeaderPrefixList);
+        } else {
+            buildHeaders(buffer, headers, signHeaderPrefixList);
+            buildResource(buffer, path, querys, bodys);
+        }
+    }
+
+    /**
+     * 按已排序的Header名称构建待签名字符串,不修改headers
+     */
+    static void buildStringToSign(SignBuffer buffer, String method, String path,
+                                  Map<String, String> headers,
+                                  Map<String, String> querys,
+                                  Map<String, String> bodys,
+                                  String[] signHeaderNames) {
+        appendMethodAndBasicHeaders(buffer.stringToSign, method, headers);
+        appendHeaders(buffer.stringToSign, headers, signHeaderNames, signHeaderNames.length);
+        buildResource(buffer, path, querys, bodys);
+    }
 
+    /**
+     * 构建待签名字符串中的Method及Accept、Content-MD5、Content-Type、Date
+     */
+    private static void appendMethodAndBasicHeaders(StringBuilder sb, String method, Map<String, String> headers) {
         sb.append(method.toUpperCase()).append(Constants.LF);
         if (null != headers) {
-        	if (null != headers.get(HttpHeader.HTTP_HEADER_ACCEPT)) {
-                sb.append(headers.get(HttpHeader.HTTP_HEADER_ACCEPT));
-            }
+        	appendIfNotNull(sb, headers.get(HttpHeader.HTTP_HEADER_ACCEPT));
         	sb.append(Constants.LF);
-        	if (null != headers.get(HttpHeader.HTTP_HEADER_CONTENT_MD5)) {
-                sb.append(headers.get(HttpHeader.HTTP_HEADER_CONTENT_MD5));
-            }
+        	appendIfNotNull(sb, headers.get(HttpHeader.HTTP_HEADER_CONTENT_MD5));
             sb.append(Constants.LF);
-            if (null != headers.get(HttpHeader.HTTP_HEADER_CONTENT_TYPE)) {
-                sb.append(headers.get(HttpHeader.HTTP_HEADER_CONTENT_TYPE));
-            }
+            appendIfNotNull(sb, headers.get(HttpHeader.HTTP_HEADER_CONTENT_TYPE));
             sb.append(Constants.LF);
-            if (null != headers.get(HttpHeader.HTTP_HEADER_DATE)) {
-                sb.append(headers.get(HttpHeader.HTTP_HEADER_DATE));
-            }
+            appendIfNotNull(sb, headers.get(HttpHeader.HTTP_HEADER_DATE));
         }
         sb.append(Constants.LF);
-        sb.append(buildHeaders(headers, signHeaderPrefixList));
-        sb.append(buildResource(path, querys, bodys));
-        
-        return sb.toString();
+    }
+
+    /**
+     * 使用缓存构建待签名Http头及Path+Query
+     * 参与签名的Header名称及Path+Query只在未命中时计算,每次只追加Header值
+     */
+    private static void buildCachedHeadersAndResource(CanonicalCache cache, SignBuffer buffer, String method, String path,
+                                                      Map<String, String> headers,
+                                                      Map<String, String> querys,
+                                                      List<String> signHeaderPrefixList) {
+        StringBuilder sb = buffer.stringToSign;
+        CanonicalCache.Key probe = buffer.probe.set(method, path, querys,
+                null == headers ? null : headers.keySet(), signHeaderPrefixList);
+        try {
+            CanonicalCache.Entry entry = cache.get(probe);
+            if (null == entry) {
+                String[] names = NO_HEADERS;
+                String signatureHeaders = null;
+                if (null != signHeaderPrefixList && null != headers) {
+                    int count = selectHeadersToSign(buffer, headers, signHeaderPrefixList);
+                    names = Arrays.copyOf(buffer.keys(count), count);
+                    buffer.releaseKeys(count);
+                    signatureHeaders = StringUtils.join(names, Constants.SPE1);
+                }
+                int start = sb.length();
+                buildResource(buffer, path, querys, null);
+                String resource = sb.substring(start);
+                sb.setLength(start);
+
+                entry = new CanonicalCache.Entry(names, signatureHeaders, resource);
+                cache.put(probe, entry);
+            }
+
+            appendHeaders(sb, headers, entry.signHeaderNames, entry.signHeaderNames.length);
+            if (null != entry.signatureHeaders) {
+                headers.put(SystemHeader.X_CA_SIGNATURE_HEADERS, entry.signatureHeaders);
+            }
+            sb.append(entry.resource);
+        } finally {
+            probe.release();
+        }
+    }
+
+    private static void appendIfNotNull(StringBuilder sb, String value) {
+        if (null != value) {
+            sb.append(value);
+        }
     }
 
     /**
      * 构建待签名Path+Query+BODY
+     * Query与Body参数合并后按Key排序,同名参数以Body为准
      *
+     * @param buffer
      * @param path
      * @param querys
      * @param bodys
-     * @return 待签名
      */
-    private static String buildResource(String path, Map<String, String> querys, Map<String, String> bodys) {
-    	StringBuilder sb = new StringBuilder();
-    	
+    private static void buildResource(SignBuffer buffer, String path, Map<String, String> querys, Map<String, String> bodys) {
+    	StringBuilder sb = buffer.stringToSign;
+
     	if (!StringUtils.isBlank(path)) {
     		sb.append(path);
         }
-        Map<String, String> sortMap = new TreeMap<String, String>();
-        if (null != querys) {
-        	for (Map.Entry<String, String> query : querys.entrySet()) {
-        		if (!StringUtils.isBlank(query.getKey())) {
-        			sortMap.put(query.getKey(), query.getValue());
-                }
-        	}
+
+        int size = (null == querys ? 0 : querys.size()) + (null == bodys ? 0 : bodys.size());
+        if (0 == size) {
+            return;
+        }
+        String[] keys = buffer.keys(size);
+        int count = collectKeys(querys, keys, 0);
+        count = collectKeys(bodys, keys, count);
+        Arrays.sort(keys, 0, count);
+
+        boolean first = true;
+        String previous = null;
+        for (int i = 0; i < count; i++) {
+            String key = keys[i];
+            if (key.equals(previous)) {
+                continue;
+            }
+            previous = key;
+            String value = (null != bodys && bodys.containsKey(key)) ? bodys.get(key) : querys.get(key);
+
+            sb.append(first ? Constants.SPE5 : Constants.SPE3);
+            first = false;
+            sb.append(key);
+            if (!StringUtils.isBlank(value)) {
+                sb.append(Constants.SPE4).append(value);
+            }
         }
-        
-        if (null != bodys) {
-        	for (Map.Entry<String, String> body : bodys.entrySet()) {
-        		if (!StringUtils.isBlank(body.getKey())) {
-        			sortMap.put(body.getKey(), body.getValue());
+        buffer.releaseKeys(count);
+    }
+
+    private static int collectKeys(Map<String, String> params, String[] keys, int count) {
+        if (null != params) {
+            for (String key : params.keySet()) {
+                if (!StringUtils.isBlank(key)) {
+                    keys[count++] = key;
                 }
-        	}
-        }
-        
-        StringBuilder sbParam = new StringBuilder();
-        for (Map.Entry<String, String> item : sortMap.entrySet()) {
-    		if (!StringUtils.isBlank(item.getKey())) {
-    			if (0 < sbParam.length()) {
-    				sbParam.append(Constants.SPE3);
-    			}
-    			sbParam.append(item.getKey());
-    			if (!StringUtils.isBlank(item.getValue())) {
-    				sbParam.append(Constants.SPE4).append(item.getValue());
-    			}
             }
-    	}
-        if (0 < sbParam.length()) {
-        	sb.append(Constants.SPE5);
-        	sb.append(sbParam);
         }
-        
-        return sb.toString();
+        return count;
     }
 
     /**
      * 构建待签名Http头
      *
+     * @param buffer
      * @param headers 请求中所有的Http头
      * @param signHeaderPrefixList 自定义参与签名Header前缀
-     * @return 待签名Http头
      */
-    private static String buildHeaders(Map<String, String> headers, List<String> signHeaderPrefixList) {
-    	StringBuilder sb = new StringBuilder();
-    	
+    private static void buildHeaders(SignBuffer buffer, Map<String, String> headers, List<String> signHeaderPrefixList) {
     	if (null != signHeaderPrefixList) {
-    		signHeaderPrefixList.remove(SystemHeader.X_CA_SIGNATURE);
-    		signHeaderPrefixList.remove(HttpHeader.HTTP_HEADER_ACCEPT);
-    		signHeaderPrefixList.remove(HttpHeader.HTTP_HEADER_CONTENT_MD5);
-    		signHeaderPrefixList.remove(HttpHeader.HTTP_HEADER_CONTENT_TYPE);
-    		signHeaderPrefixList.remove(HttpHeader.HTTP_HEADER_DATE);
-    		Collections.sort(signHeaderPrefixList);
     		if (null != headers) {
-    			Map<String, String> sortMap = new TreeMap<String, String>();
-    			sortMap.putAll(headers);
-    			StringBuilder signHeadersStringBuilder = new StringBuilder();
-    			for (Map.Entry<String, String> header : sortMap.entrySet()) {
-                    if (isHeaderToSign(header.getKey(), signHeaderPrefixList)) {
-                    	sb.append(header.getKey());
-                    	sb.append(Constants.SPE2);
-                        if (!StringUtils.isBlank(header.getValue())) {
-                        	sb.append(header.getValue());
-                        }
-                        sb.append(Constants.LF);
-                        if (0 < signHeadersStringBuilder.length()) {
-                        	signHeadersStringBuilder.append(Constants.SPE1);
-                        }
-                        signHeadersStringBuilder.append(header.getKey());
-                    }
-                }
+    			int count = selectHeadersToSign(buffer, headers, signHeaderPrefixList);
+    			String[] keys = buffer.keys(count);
+    			appendHeaders(buffer.stringToSign, headers, keys, count);
+
+    			StringBuilder signHeadersStringBuilder = buffer.signHeaders;
+    			for (int i = 0; i < count; i++) {
+    				if (0 < signHeadersStringBuilder.length()) {
+    					signHeadersStringBuilder.append(Constants.SPE1);
+    				}
+    				signHeadersStringBuilder.append(keys[i]);
+    			}
+    			buffer.releaseKeys(count);
     			headers.put(SystemHeader.X_CA_SIGNATURE_HEADERS, signHeadersStringBuilder.toString());
     		}
     	}
-        
-        return sb.toString();
+    }
+
+    /**
+     * 去掉已单独参与签名的Header并排序,结果写入线程内的列表,不修改调用方的列表
+     */
+    private static List<String> normalizeSignHeaderPrefixList(SignBuffer buffer, List<String> signHeaderPrefixList) {
+        List<String> normalized = buffer.signHeaderPrefixes;
+        normalized.clear();
+        normalized.addAll(signHeaderPrefixList);
+        normalizeSignHeaderPrefixList(normalized);
+        return normalized;
+    }
+
+    /**
+     * 去掉已单独参与签名的Header并排序
+     */
+    private static void normalizeSignHeaderPrefixList(List<String> signHeaderPrefixList) {
+    	signHeaderPrefixList.remove(SystemHeader.X_CA_SIGNATURE);
+    	signHeaderPrefixList.remove(HttpHeader.HTTP_HEADER_ACCEPT);
+    	signHeaderPrefixList.remove(HttpHeader.HTTP_HEADER_CONTENT_MD5);
+    	signHeaderPrefixList.remove(HttpHeader.HTTP_HEADER_CONTENT_TYPE);
+    	signHeaderPrefixList.remove(HttpHeader.HTTP_HEADER_DATE);
+    	Collections.sort(signHeaderPrefixList);
+    }
+
+    /**
+     * 选出参与签名的Header名称,排序后放在buffer.keys的前count个位置
+     *
+     * @return count
+     */
+    private static int selectHeadersToSign(SignBuffer buffer, Map<String, String> headers, List<String> signHeaderPrefixList) {
+    	String[] keys = buffer.keys(headers.size());
+    	int count = 0;
+    	for (String key : headers.keySet()) {
+    		if (isHeaderToSign(key, signHeaderPrefixList)) {
+    			keys[count++] = key;
+    		}
+    	}
+    	Arrays.sort(keys, 0, count);
+    	return count;
+    }
+
+    private static void appendHeaders(StringBuilder sb, Map<String, String> headers, String[] keys, int count) {
+    	for (int i = 0; i < count; i++) {
+    		String key = keys[i];
+    		String value = headers.get(key);
+    		sb.append(key);
+    		sb.append(Constants.SPE2);
+    		if (!StringUtils.isBlank(value)) {
+    			sb.append(value);
+    		}
+    		sb.append(Constants.LF);
+    	}
     }
 
     /**
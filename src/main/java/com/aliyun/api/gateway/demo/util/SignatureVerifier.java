@@ -0,0 +1,230 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.aliyun.api.gateway.demo.util;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.commons.lang.StringUtils;
+
+import com.aliyun.api.gateway.demo.constant.Constants;
+import com.aliyun.api.gateway.demo.constant.SystemHeader;
+import com.aliyun.api.gateway.demo.enums.VerifyResult;
+
+/**
+ * 服务端签名校验
+ * 按SignUtil相同的规则由收到的请求重建待签名字符串,以固定时间比较X-Ca-Signature并校验X-Ca-Timestamp及X-Ca-Nonce;
+ * 每个APP KEY预先生成签名器,待签名字符串及摘要使用线程内缓冲区,校验通过时不产生临时对象
+ */
+public class SignatureVerifier {
+    //缓存的X-Ca-Signature-Headers解析结果数量上限
+    private static final int MAX_CACHED_SIGNATURE_HEADERS = 1024;
+
+    private static final String[] NO_HEADERS = new String[0];
+
+    //APP KEY -> 签名器,创建后不再修改
+    private final Map<String, Signer> signers;
+
+    private final long timestampToleranceMillis;
+
+    private final NonceStore nonceStore;
+
+    //X-Ca-Signature-Headers -> 排序后的Header名称
+    private final ConcurrentMap<String, String[]> signatureHeaders = new ConcurrentHashMap<String, String[]>();
+
+    /**
+     * 使用默认的15分钟时间偏差
+     *
+     * @param appSecrets APP KEY -> APP密钥
+     */
+    public SignatureVerifier(Map<String, String> appSecrets) {
+        this(appSecrets, Constants.DEFAULT_TIMESTAMP_TOLERANCE);
+    }
+
+    /**
+     * @param appSecrets APP KEY -> APP密钥
+     * @param timestampToleranceMillis X-Ca-Timestamp与当前时间允许的偏差,单位毫秒;小于等于0表示不校验时间戳
+     */
+    public SignatureVerifier(Map<String, String> appSecrets, long timestampToleranceMillis) {
+        this(appSecrets, timestampToleranceMillis, null);
+    }
+
+    /**
+     * @param appSecrets APP KEY -> APP密钥
+     * @param timestampToleranceMillis X-Ca-Timestamp与当前时间允许的偏差,单位毫秒;小于等于0表示不校验时间戳
+     * @param nonceStore 签名通过后记录X-Ca-Nonce,缺失或重复的Nonce均被拒绝;为null时不校验Nonce
+     */
+    public SignatureVerifier(Map<String, String> appSecrets, long timestampToleranceMillis, NonceStore nonceStore) {
+        if (null == appSecrets || appSecrets.isEmpty()) {
+            throw new IllegalArgumentException("appSecrets can not be empty");
+        }
+        Map<String, Signer> map = new HashMap<String, Signer>();
+        for (Map.Entry<String, String> entry : appSecrets.entrySet()) {
+            map.put(entry.getKey(), new Signer(entry.getValue()));
+        }
+        this.signers = Collections.unmodifiableMap(map);
+        this.timestampToleranceMillis = timestampToleranceMillis;
+        this.nonceStore = nonceStore;
+    }
+
+    /**
+     * 校验请求签名
+     * headers需能按签名时的名称取到值,Header名称被转为小写的框架可传入TreeMap(String.CASE_INSENSITIVE_ORDER);
+     * 校验时间戳或Nonce时要求X-Ca-Timestamp、X-Ca-Nonce列在X-Ca-Signature-Headers中,否则可被替换后重放;
+     * 与SignUtil一致,未设置signHeaderPrefixList的请求不签名任何Header,此类请求只能由不校验时间戳及Nonce的校验器接受
+     *
+     * @param method HttpMethod
+     * @param path 未解码的请求Path
+     * @param headers 请求Header,不会被修改
+     * @param querys 解码后的Query参数
+     * @param bodys 解码后的表单参数,非表单请求传null
+     * @return 校验结果
+     */
+    public VerifyResult verify(String method, String path, Map<String, String> headers, Map<String, String> querys,
+            Map<String, String> bodys) {
+        if (null == headers) {
+            return VerifyResult.INVALID_APP_KEY;
+        }
+        String appKey = headers.get(SystemHeader.X_CA_KEY);
+        Signer signer = null == appKey ? null : signers.get(appKey);
+        if (null == signer) {
+            return VerifyResult.INVALID_APP_KEY;
+        }
+        String signature = headers.get(SystemHeader.X_CA_SIGNATURE);
+        if (StringUtils.isEmpty(signature)) {
+            return VerifyResult.MISSING_SIGNATURE;
+        }
+        String[] signHeaderNames = parseSignatureHeaders(headers.get(SystemHeader.X_CA_SIGNATURE_HEADERS));
+        if (timestampToleranceMillis > 0) {
+            if (!isSigned(signHeaderNames, SystemHeader.X_CA_TIMESTAMP)) {
+                return VerifyResult.UNSIGNED_TIMESTAMP;
+            }
+            VerifyResult result = checkTimestamp(headers.get(SystemHeader.X_CA_TIMESTAMP));
+            if (VerifyResult.OK != result) {
+                return result;
+            }
+        }
+        String nonce = headers.get(SystemHeader.X_CA_NONCE);
+        if (null != nonceStore) {
+            if (StringUtils.isEmpty(nonce)) {
+                return VerifyResult.MISSING_NONCE;
+            }
+            if (!isSigned(signHeaderNames, SystemHeader.X_CA_NONCE)) {
+                return VerifyResult.UNSIGNED_NONCE;
+            }
+        }
+
+        SignBuffer buffer = SignBuffer.get();
+        SignUtil.buildStringToSign(buffer, method, path, headers, querys, bodys, signHeaderNames);
+        int length = buffer.sign(signer.getMac());
+        if (!constantTimeEquals(buffer.encodedDigest, length, signature)) {
+            return VerifyResult.INVALID_SIGNATURE;
+        }
+        //只记录签名正确的请求,伪造的请求不会占用Nonce
+        if (null != nonceStore && !nonceStore.add(nonce)) {
+            return VerifyResult.NONCE_USED;
+        }
+        return VerifyResult.OK;
+    }
+
+    /**
+     * 是否配置了该APP KEY
+     *
+     * @param appKey
+     * @return
+     */
+    public boolean hasAppKey(String appKey) {
+        return signers.containsKey(appKey);
+    }
+
+    public long getTimestampToleranceMillis() {
+        return timestampToleranceMillis;
+    }
+
+    public NonceStore getNonceStore() {
+        return nonceStore;
+    }
+
+    private VerifyResult checkTimestamp(String timestamp) {
+        if (StringUtils.isEmpty(timestamp)) {
+            return VerifyResult.INVALID_TIMESTAMP;
+        }
+        long millis;
+        try {
+            millis = Long.parseLong(timestamp);
+        } catch (NumberFormatException e) {
+            return VerifyResult.INVALID_TIMESTAMP;
+        }
+        if (Math.abs(System.currentTimeMillis() - millis) > timestampToleranceMillis) {
+            return VerifyResult.EXPIRED_TIMESTAMP;
+        }
+        return VerifyResult.OK;
+    }
+
+    /**
+     * Header是否参与了签名
+     */
+    private static boolean isSigned(String[] signHeaderNames, String name) {
+        for (String signed : signHeaderNames) {
+            if (name.equalsIgnoreCase(signed)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 解析X-Ca-Signature-Headers并排序,相同的取值只解析一次
+     */
+    private String[] parseSignatureHeaders(String value) {
+        if (StringUtils.isBlank(value)) {
+            return NO_HEADERS;
+        }
+        String[] names = signatureHeaders.get(value);
+        if (null == names) {
+            names = StringUtils.split(value, Constants.SPE1);
+            for (int i = 0; i < names.length; i++) {
+                names[i] = names[i].trim();
+            }
+            Arrays.sort(names);
+            if (signatureHeaders.size() < MAX_CACHED_SIGNATURE_HEADERS) {
+                signatureHeaders.putIfAbsent(value, names);
+            }
+        }
+        return names;
+    }
+
+    /**
+     * 比较耗时只与长度有关,不因第一个不同字符的位置泄露签名内容
+     */
+    private static boolean constantTimeEquals(char[] expected, int length, String actual) {
+        if (actual.length() != length) {
+            return false;
+        }
+        int diff = 0;
+        for (int i = 0; i < length; i++) {
+            diff |= expected[i] ^ actual.charAt(i);
+        }
+        return 0 == diff;
+    }
+}
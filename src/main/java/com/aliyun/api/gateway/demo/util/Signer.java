@@ -0,0 +1,93 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.aliyun.api.gateway.demo.util;
+
+import java.io.UnsupportedEncodingException;
+import java.security.InvalidKeyException;
+import java.security.NoSuchAlgorithmException;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import com.aliyun.api.gateway.demo.constant.Constants;
+
+/**
+ * HmacSHA256签名器
+ * 按APP密钥预先生成密钥,每个线程持有一个已初始化的Mac实例,签名时只需doFinal
+ */
+public class Signer {
+
+    private final SecretKeySpec keySpec;
+
+    private final ThreadLocal<Mac> macHolder = new ThreadLocal<Mac>() {
+        @Override
+        protected Mac initialValue() {
+            return newMac();
+        }
+    };
+
+    /**
+     * @param secret APP密钥
+     */
+    public Signer(String secret) {
+        if (null == secret) {
+            throw new IllegalArgumentException("secret can not be null");
+        }
+        try {
+            byte[] keyBytes = secret.getBytes(Constants.ENCODING);
+            this.keySpec = new SecretKeySpec(keyBytes, 0, keyBytes.length, Constants.HMAC_SHA256);
+        } catch (UnsupportedEncodingException e) {
+            throw new RuntimeException(e.getMessage(), e);
+        }
+        //提前校验算法及密钥
+        macHolder.get();
+    }
+
+    /**
+     * 获取当前线程已初始化的Mac实例
+     * Mac在doFinal后自动重置,可直接复用
+     *
+     * @return
+     */
+    public Mac getMac() {
+        return macHolder.get();
+    }
+
+    /**
+     * 计算签名
+     *
+     * @param data 待签名字节
+     * @return 签名结果
+     */
+    public byte[] sign(byte[] data) {
+        return getMac().doFinal(data);
+    }
+
+    private Mac newMac() {
+        try {
+            Mac mac = Mac.getInstance(Constants.HMAC_SHA256);
+            mac.init(keySpec);
+            return mac;
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        } catch (InvalidKeyException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.aliyun.api.gateway.demo.util;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 合并并发的相同调用
+ * 同一Key同时只有一个调用在执行,其余调用方等待并共享其结果或异常;调用结束后下一次调用重新执行
+ *
+ * @param <K> 调用Key
+ * @param <V> 结果
+ */
+public class SingleFlight<K, V> {
+
+    private final ConcurrentMap<K, CompletableFuture<V>> calls = new ConcurrentHashMap<K, CompletableFuture<V>>();
+
+    private final AtomicLong shared = new AtomicLong();
+
+    /**
+     * 执行调用,已有相同Key的调用在执行时等待其结果
+     *
+     * @param key
+     * @param call
+     * @return
+     * @throws Exception call抛出的异常
+     */
+    public V execute(K key, Callable<V> call) throws Exception {
+        CompletableFuture<V> flight = new CompletableFuture<V>();
+        CompletableFuture<V> existing = calls.putIfAbsent(key, flight);
+        if (null != existing) {
+            shared.incrementAndGet();
+            return share(await(existing));
+        }
+        try {
+            V value = call.call();
+            flight.complete(value);
+            return value;
+        } catch (Exception e) {
+            flight.completeExceptionally(e);
+            throw e;
+        } catch (Error e) {
+            flight.completeExceptionally(e);
+            throw e;
+        } finally {
+            calls.remove(key, flight);
+        }
+    }
+
+    /**
+     * 交给等待方的结果,默认直接共享同一对象;结果可变时可覆盖为返回副本
+     *
+     * @param value
+     * @return
+     */
+    protected V share(V value) {
+        return value;
+    }
+
+    /**
+     * 等待其他调用结果的次数
+     *
+     * @return
+     */
+    public long getShared() {
+        return shared.get();
+    }
+
+    /**
+     * 正在执行的调用数
+     *
+     * @return
+     */
+    public int getInFlight() {
+        return calls.size();
+    }
+
+    private static <V> V await(CompletableFuture<V> flight) throws Exception {
+        try {
+            return flight.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof Exception) {
+                throw (Exception) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,339 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.aliyun.api.gateway.demo.util;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.Socket;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+import java.security.cert.X509Certificate;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.net.ssl.HandshakeCompletedEvent;
+import javax.net.ssl.HandshakeCompletedListener;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLParameters;
+import javax.net.ssl.SSLSessionContext;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.TrustManager;
+import javax.net.ssl.TrustManagerFactory;
+import javax.net.ssl.X509ExtendedTrustManager;
+
+import org.apache.http.conn.ssl.SSLSocketFactory;
+import org.apache.http.conn.ssl.X509HostnameVerifier;
+import org.apache.http.params.HttpParams;
+
+import com.aliyun.api.gateway.demo.constant.Constants;
+
+/**
+ * 共享的TLS配置
+ * 所有https连接共用同一个SSLContext,客户端会话缓存得以生效,新连接可通过会话ID或TLS 1.3会话票据恢复会话而不必完整握手;
+ * 同时统计握手次数、恢复次数及握手耗时
+ */
+public class TlsContext {
+
+    private static volatile TlsContext defaultContext;
+
+    private final SSLContext sslContext;
+
+    private final boolean trustAll;
+
+    private final String[] applicationProtocols;
+
+    private final SSLSocketFactory socketFactory;
+
+    private final AtomicLong handshakes = new AtomicLong();
+
+    private final AtomicLong resumed = new AtomicLong();
+
+    private final AtomicLong handshakeNanos = new AtomicLong();
+
+    private TlsContext(SSLContext sslContext, boolean trustAll, String[] applicationProtocols) {
+        this.sslContext = sslContext;
+        this.trustAll = trustAll;
+        this.applicationProtocols = applicationProtocols;
+        SSLSessionContext sessions = sslContext.getClientSessionContext();
+        if (null != sessions) {
+            sessions.setSessionCacheSize(Constants.DEFAULT_TLS_SESSION_CACHE_SIZE);
+            sessions.setSessionTimeout(Constants.DEFAULT_TLS_SESSION_TIMEOUT);
+        }
+        X509HostnameVerifier verifier = trustAll ? SSLSocketFactory.ALLOW_ALL_HOSTNAME_VERIFIER
+                : SSLSocketFactory.BROWSER_COMPATIBLE_HOSTNAME_VERIFIER;
+        this.socketFactory = new TimedSSLSocketFactory(sslContext, verifier);
+    }
+
+    /**
+     * 使用JDK默认信任库(cacerts或javax.net.ssl.trustStore)校验服务端证书
+     *
+     * @return
+     */
+    public static TlsContext systemTrust() {
+        return trustStore(null);
+    }
+
+    /**
+     * 使用指定信任库校验服务端证书
+     *
+     * @param trustStore 为null时使用JDK默认信任库
+     * @return
+     */
+    public static TlsContext trustStore(KeyStore trustStore) {
+        try {
+            TrustManagerFactory factory = TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
+            factory.init(trustStore);
+            SSLContext ctx = SSLContext.getInstance("TLS");
+            ctx.init(null, factory.getTrustManagers(), null);
+            return new TlsContext(ctx, false, null);
+        } catch (GeneralSecurityException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * 从文件加载信任库
+     *
+     * @param file 信任库文件
+     * @param password 信任库密码,可为null
+     * @param type 信任库类型,如JKS、PKCS12
+     * @return
+     */
+    public static TlsContext trustStore(File file, String password, String type) {
+        InputStream in = null;
+        try {
+            KeyStore keyStore = KeyStore.getInstance(type);
+            in = new FileInputStream(file);
+            keyStore.load(in, null == password ? null : password.toCharArray());
+            return trustStore(keyStore);
+        } catch (GeneralSecurityException e) {
+            throw new RuntimeException(e);
+        } catch (IOException e) {
+            throw new RuntimeException(e.getMessage(), e);
+        } finally {
+            if (null != in) {
+                try {
+                    in.close();
+                } catch (IOException e) {
+                    //ignore
+                }
+            }
+        }
+    }
+
+    /**
+     * 不校验服务端证书及主机名,仅用于测试环境
+     *
+     * @return
+     */
+    public static TlsContext trustAll() {
+        try {
+            SSLContext ctx = SSLContext.getInstance("TLS");
+            ctx.init(null, new TrustManager[] {new TrustAllManager()}, null);
+            return new TlsContext(ctx, true, null);
+        } catch (GeneralSecurityException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * 返回通过ALPN声明应用层协议的副本,如"http/1.1";需要JDK 8u252及以上
+     *
+     * @param protocols
+     * @return
+     */
+    public TlsContext withApplicationProtocols(String... protocols) {
+        if (null != protocols && !isAlpnSupported()) {
+            throw new UnsupportedOperationException("ALPN requires JDK 8u252 or later, current: "
+                    + System.getProperty("java.version"));
+        }
+        return new TlsContext(sslContext, trustAll, null == protocols ? null : protocols.clone());
+    }
+
+    /**
+     * 当前JDK是否支持ALPN
+     *
+     * @return
+     */
+    public static boolean isAlpnSupported() {
+        try {
+            SSLParameters.class.getMethod("setApplicationProtocols", String[].class);
+            return true;
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+    /**
+     * 默认TLS配置,未设置时使用JDK默认信任库
+     *
+     * @return
+     */
+    public static TlsContext getDefault() {
+        TlsContext context = defaultContext;
+        if (null == context) {
+            synchronized (TlsContext.class) {
+                if (null == defaultContext) {
+                    defaultContext = systemTrust();
+                }
+                context = defaultContext;
+            }
+        }
+        return context;
+    }
+
+    /**
+     * 设置默认TLS配置,对之后创建的连接池(HttpClientPool.configure)及HttpUtils请求生效
+     *
+     * @param context
+     */
+    public static void setDefault(TlsContext context) {
+        if (null == context) {
+            throw new IllegalArgumentException("context can not be null");
+        }
+        defaultContext = context;
+    }
+
+    public SSLContext getSslContext() {
+        return sslContext;
+    }
+
+    /**
+     * 供HttpClient注册https协议使用的SocketFactory,同一TlsContext返回同一实例
+     *
+     * @return
+     */
+    public SSLSocketFactory getSocketFactory() {
+        return socketFactory;
+    }
+
+    public boolean isTrustAll() {
+        return trustAll;
+    }
+
+    /**
+     * 完成的握手次数
+     *
+     * @return
+     */
+    public long getHandshakes() {
+        return handshakes.get();
+    }
+
+    /**
+     * 其中恢复已有会话的次数
+     *
+     * @return
+     */
+    public long getResumedHandshakes() {
+        return resumed.get();
+    }
+
+    /**
+     * 握手总耗时,单位毫秒
+     *
+     * @return
+     */
+    public long getHandshakeMillis() {
+        return handshakeNanos.get() / 1000000;
+    }
+
+    /**
+     * 会话恢复率
+     *
+     * @return
+     */
+    public double getResumptionRate() {
+        long total = handshakes.get();
+        return 0 == total ? 0 : (double) resumed.get() / total;
+    }
+
+    /**
+     * 统计握手并按配置设置ALPN的SocketFactory
+     */
+    private class TimedSSLSocketFactory extends SSLSocketFactory {
+
+        TimedSSLSocketFactory(SSLContext sslContext, X509HostnameVerifier verifier) {
+            super(sslContext, verifier);
+        }
+
+        /**
+         * 先建立普通TCP连接再以主机名升级为TLS,保证SNI及按主机名查找可恢复的会话
+         */
+        @Override
+        public Socket createSocket(HttpParams params) throws IOException {
+            return new Socket();
+        }
+
+        @Override
+        protected void prepareSocket(SSLSocket socket) throws IOException {
+            if (null != applicationProtocols) {
+                SSLParameters parameters = socket.getSSLParameters();
+                parameters.setApplicationProtocols(applicationProtocols);
+                socket.setSSLParameters(parameters);
+            }
+            final long start = System.nanoTime();
+            final long startMillis = System.currentTimeMillis();
+            socket.addHandshakeCompletedListener(new HandshakeCompletedListener() {
+                public void handshakeCompleted(HandshakeCompletedEvent event) {
+                    handshakes.incrementAndGet();
+                    handshakeNanos.addAndGet(System.nanoTime() - start);
+                    //恢复的会话沿用原会话的创建时间
+                    if (event.getSession().getCreationTime() < startMillis) {
+                        resumed.incrementAndGet();
+                    }
+                    event.getSocket().removeHandshakeCompletedListener(this);
+                }
+            });
+        }
+    }
+
+    /**
+     * 信任所有证书,同时跳过JDK的主机名校验
+     */
+    private static class TrustAllManager extends X509ExtendedTrustManager {
+        public X509Certificate[] getAcceptedIssuers() {
+            return new X509Certificate[0];
+        }
+
+        public void checkClientTrusted(X509Certificate[] chain, String authType) {
+        }
+
+        public void checkServerTrusted(X509Certificate[] chain, String authType) {
+        }
+
+        @Override
+        public void checkClientTrusted(X509Certificate[] chain, String authType, Socket socket) {
+        }
+
+        @Override
+        public void checkServerTrusted(X509Certificate[] chain, String authType, Socket socket) {
+        }
+
+        @Override
+        public void checkClientTrusted(X509Certificate[] chain, String authType, SSLEngine engine) {
+        }
+
+        @Override
+        public void checkServerTrusted(X509Certificate[] chain, String authType, SSLEngine engine) {
+        }
+    }
+}
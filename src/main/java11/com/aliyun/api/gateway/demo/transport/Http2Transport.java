@@ -0,0 +1,322 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.aliyun.api.gateway.demo.transport;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.SocketTimeoutException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpEntityEnclosingRequest;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.CircularRedirectException;
+import org.apache.http.client.ClientProtocolException;
+import org.apache.http.client.RedirectException;
+import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.conn.ConnectionReleaseTrigger;
+
+import com.aliyun.api.gateway.demo.Response;
+import com.aliyun.api.gateway.demo.constant.Constants;
+import com.aliyun.api.gateway.demo.enums.Phase;
+import com.aliyun.api.gateway.demo.metrics.ClientMetrics;
+import com.aliyun.api.gateway.demo.metrics.Metrics;
+import com.aliyun.api.gateway.demo.util.MessageDigestUtil;
+import com.aliyun.api.gateway.demo.util.TlsContext;
+
+/**
+ * HTTP/2 Transport,基于JDK 12及以上的java.net.http.HttpClient
+ * 同一网关的并发请求复用少量连接;签名后的Header原样发送,签名结果与HTTP/1.1一致。
+ * 重定向规则与HttpClient 4一致:GET/HEAD跟随301、302、307,任意方法跟随303并改为GET。
+ * HTTP/2的Header名称在传输中为小写,Response.getHeaders()按名称忽略大小写查找
+ */
+public class Http2Transport implements Transport {
+
+    //由HttpClient自行维护的Header,不能手动设置;JDK 11还禁止Date、From、Via等,因此要求JDK 12及以上
+    private static final Set<String> RESTRICTED_HEADERS = new TreeSet<String>(String.CASE_INSENSITIVE_ORDER);
+
+    static {
+        RESTRICTED_HEADERS.add("Connection");
+        RESTRICTED_HEADERS.add("Content-Length");
+        RESTRICTED_HEADERS.add("Expect");
+        RESTRICTED_HEADERS.add("Host");
+        RESTRICTED_HEADERS.add("Upgrade");
+    }
+
+    //与HttpClient 4的默认最大重定向次数一致
+    private static final int MAX_REDIRECTS = 100;
+
+    private final HttpClient client;
+
+    public Http2Transport() {
+        this(HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .connectTimeout(Duration.ofMillis(Constants.DEFAULT_TIMEOUT))
+                .followRedirects(HttpClient.Redirect.NEVER)
+                .sslContext(TlsContext.getDefault().getSslContext())
+                .build());
+    }
+
+    /**
+     * @param client 自定义的HttpClient,如需指定SSLContext、线程池等;重定向由本类处理,应使用Redirect.NEVER
+     */
+    public Http2Transport(HttpClient client) {
+        if (null == client) {
+            throw new IllegalArgumentException("client can not be null");
+        }
+        this.client = client;
+    }
+
+    public Response execute(HttpRequestBase request, int connectTimeout, boolean streaming) throws IOException {
+        ClientMetrics metrics = Metrics.getClientMetrics();
+        long start = null == metrics ? 0 : System.nanoTime();
+
+        int timeout = connectTimeout <= 0 ? Constants.DEFAULT_TIMEOUT : connectTimeout;
+        HttpRequest httpRequest = convert(request, timeout);
+        Response res;
+        HttpResponse<?> response;
+        if (streaming) {
+            HttpResponse<InputStream> streamed = sendFollowingRedirects(request, httpRequest,
+                    HttpResponse.BodyHandlers.ofInputStream(), timeout);
+            res = convert(streamed);
+            res.setBodyStream(streamed.body());
+            response = streamed;
+        } else {
+            HttpResponse<byte[]> buffered = sendFollowingRedirects(request, httpRequest,
+                    HttpResponse.BodyHandlers.ofByteArray(), timeout);
+            res = convert(buffered);
+            res.setBodyBytes(buffered.body());
+            response = buffered;
+        }
+
+        if (null != metrics) {
+            URI uri = request.getURI();
+            String host = Metrics.host(uri);
+            String path = Metrics.path(uri);
+            metrics.recordTime(Phase.TOTAL, host, path, request.getMethod(), System.nanoTime() - start);
+            long bytesIn = streaming ? response.headers().firstValueAsLong("content-length").orElse(-1)
+                    : res.getBodyBytes().length;
+            long bytesOut = httpRequest.bodyPublisher().isPresent() ? httpRequest.bodyPublisher().get().contentLength() : 0;
+            metrics.recordResponse(host, path, request.getMethod(), res.getStatusCode(),
+                    res.getErrorMessage(), bytesIn, bytesOut);
+        }
+        return res;
+    }
+
+    /**
+     * 发送请求并按HttpClient 4的规则跟随重定向,重定向请求沿用原请求的Header
+     */
+    private <T> HttpResponse<T> sendFollowingRedirects(HttpRequestBase request, HttpRequest httpRequest,
+            HttpResponse.BodyHandler<T> handler, int timeout) throws IOException {
+        Set<URI> visited = new HashSet<URI>();
+        visited.add(httpRequest.uri());
+        while (true) {
+            HttpResponse<T> response = send(request, httpRequest, handler, timeout);
+            URI location = redirectLocation(httpRequest.method(), response);
+            if (null == location) {
+                return response;
+            }
+            discard(response);
+            if (visited.size() > MAX_REDIRECTS) {
+                throw new ClientProtocolException(
+                        new RedirectException("Maximum redirects (" + MAX_REDIRECTS + ") exceeded"));
+            }
+            if (!visited.add(location)) {
+                throw new ClientProtocolException(
+                        new CircularRedirectException("Circular redirect to '" + location + "'"));
+            }
+            HttpRequest.Builder builder = HttpRequest.newBuilder(location).timeout(Duration.ofMillis(timeout));
+            for (Map.Entry<String, List<String>> header : httpRequest.headers().map().entrySet()) {
+                for (String value : header.getValue()) {
+                    builder.header(header.getKey(), value);
+                }
+            }
+            //与HttpClient 4一致,重定向后HEAD仍为HEAD,其余改为不带Body的GET
+            String method = "HEAD".equals(httpRequest.method()) ? "HEAD" : "GET";
+            httpRequest = builder.method(method, HttpRequest.BodyPublishers.noBody()).build();
+        }
+    }
+
+    /**
+     * 需要跟随的重定向地址,不需要时返回null
+     */
+    private static URI redirectLocation(String method, HttpResponse<?> response) throws IOException {
+        boolean redirectable = "GET".equals(method) || "HEAD".equals(method);
+        switch (response.statusCode()) {
+            case HttpStatus.SC_MOVED_PERMANENTLY:
+            case HttpStatus.SC_MOVED_TEMPORARILY:
+            case HttpStatus.SC_TEMPORARY_REDIRECT:
+                if (!redirectable) {
+                    return null;
+                }
+                break;
+            case HttpStatus.SC_SEE_OTHER:
+                break;
+            default:
+                return null;
+        }
+        String location = response.headers().firstValue("Location").orElse(null);
+        if (null == location) {
+            return null;
+        }
+        try {
+            return response.uri().resolve(location);
+        } catch (IllegalArgumentException e) {
+            throw new ClientProtocolException("Invalid redirect URI: " + location, e);
+        }
+    }
+
+    /**
+     * 丢弃重定向响应的Body
+     */
+    private static void discard(HttpResponse<?> response) throws IOException {
+        if (response.body() instanceof InputStream) {
+            ((InputStream) response.body()).close();
+        }
+    }
+
+    /**
+     * 发送请求并最多等待timeout毫秒,流式Body只等待到收到响应头
+     */
+    private <T> HttpResponse<T> send(HttpRequestBase request, HttpRequest httpRequest,
+            HttpResponse.BodyHandler<T> handler, int timeout) throws IOException {
+        final AtomicReference<CompletableFuture<?>> inFlight = new AtomicReference<CompletableFuture<?>>();
+        //先注册再发送:HttpRequestBase.abort()时取消请求,已abort时直接抛出IOException,不会发出请求
+        request.setReleaseTrigger(new ConnectionReleaseTrigger() {
+            public void releaseConnection() {
+            }
+
+            public void abortConnection() {
+                CompletableFuture<?> future = inFlight.get();
+                if (null != future) {
+                    future.cancel(true);
+                }
+            }
+        });
+        CompletableFuture<HttpResponse<T>> future = client.sendAsync(httpRequest, handler);
+        inFlight.set(future);
+        //注册后、保存future前被abort时abortConnection取消不到请求
+        if (request.isAborted()) {
+            future.cancel(true);
+            throw new IOException("request aborted");
+        }
+        try {
+            return future.get(timeout, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            throw new SocketTimeoutException("no response within " + timeout + "ms");
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("request interrupted");
+        } catch (CancellationException e) {
+            throw new IOException("request aborted", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    /**
+     * 将HttpUtil构建的请求转换为java.net.http请求,Header及Body保持不变
+     */
+    private static HttpRequest convert(HttpRequestBase request, int timeout) {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(request.getURI()).timeout(Duration.ofMillis(timeout));
+        for (Header header : request.getAllHeaders()) {
+            if (!RESTRICTED_HEADERS.contains(header.getName())) {
+                builder.header(header.getName(), header.getValue());
+            }
+        }
+
+        HttpRequest.BodyPublisher body = HttpRequest.BodyPublishers.noBody();
+        if (request instanceof HttpEntityEnclosingRequest) {
+            final HttpEntity entity = ((HttpEntityEnclosingRequest) request).getEntity();
+            if (null != entity) {
+                //与HttpClient 4一致,未设置Content-Type时使用Entity的类型
+                if (null == request.getFirstHeader("Content-Type") && null != entity.getContentType()) {
+                    builder.header("Content-Type", entity.getContentType().getValue());
+                }
+                body = publisher(entity);
+            }
+        }
+        return builder.method(request.getMethod(), body).build();
+    }
+
+    private static HttpRequest.BodyPublisher publisher(final HttpEntity entity) {
+        Supplier<InputStream> content = new Supplier<InputStream>() {
+            public InputStream get() {
+                try {
+                    return entity.getContent();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        };
+        HttpRequest.BodyPublisher stream = HttpRequest.BodyPublishers.ofInputStream(content);
+        long length = entity.getContentLength();
+        //已知长度时发送Content-Length,与HTTP/1.1行为一致
+        return length < 0 ? stream : HttpRequest.BodyPublishers.fromPublisher(stream, length);
+    }
+
+    private static Response convert(HttpResponse<?> response) {
+        Response res = new Response();
+        res.setStatusCode(response.statusCode());
+        HttpHeaders headers = response.headers();
+        //HTTP/2的Header名称为小写,按忽略大小写存放,getHeader("Content-Type")与HTTP/1.1一样可用
+        Map<String, String> map = new TreeMap<String, String>(String.CASE_INSENSITIVE_ORDER);
+        for (Map.Entry<String, List<String>> entry : headers.map().entrySet()) {
+            if (entry.getKey().startsWith(":") || entry.getValue().isEmpty()) {
+                continue;
+            }
+            map.put(entry.getKey(), MessageDigestUtil.iso88591ToUtf8(entry.getValue().get(0)));
+        }
+        res.setHeaders(map);
+        res.setContentType(map.get("Content-Type"));
+        res.setRequestId(map.get("X-Ca-Request-Id"));
+        res.setErrorMessage(map.get("X-Ca-Error-Message"));
+        return res;
+    }
+}
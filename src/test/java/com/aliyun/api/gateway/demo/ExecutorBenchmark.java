@@ -0,0 +1,83 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.aliyun.api.gateway.demo;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import com.aliyun.api.gateway.demo.enums.Method;
+import com.aliyun.api.gateway.demo.util.BoundedExecutor;
+import com.aliyun.api.gateway.demo.util.HttpClientPool;
+
+/**
+ * 平台线程与虚拟线程执行Client.executeAll的吞吐对比
+ * 用法: ExecutorBenchmark [并发数] [请求数] [网关延迟毫秒]
+ * 虚拟线程部分需要JDK 21及以上运行
+ */
+public class ExecutorBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int concurrency = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+        int total = args.length > 1 ? Integer.parseInt(args[1]) : 20000;
+        long latency = args.length > 2 ? Long.parseLong(args[2]) : 10;
+
+        StubGateway gateway = new StubGateway(latency);
+        HttpClientPool.configure(concurrency, concurrency, 30000);
+        try {
+            ExecutorService platform = Executors.newFixedThreadPool(concurrency);
+            Client.setAsyncExecutor(platform, concurrency);
+            run("platform", gateway, total / 10);
+            run("platform", gateway, total);
+            platform.shutdown();
+
+            if (BoundedExecutor.isVirtualThreadSupported()) {
+                Client.useVirtualThreads(concurrency);
+                run("virtual", gateway, total / 10);
+                run("virtual", gateway, total);
+            } else {
+                System.out.println("virtual threads not supported on JDK " + System.getProperty("java.version"));
+            }
+        } finally {
+            gateway.stop();
+            HttpClientPool.shutdown();
+        }
+    }
+
+    private static void run(String mode, StubGateway gateway, int total) throws Exception {
+        List<Request> requests = new ArrayList<Request>(total);
+        for (int i = 0; i < total; i++) {
+            requests.add(new Request(Method.GET, gateway.getHost(), "/bench", "app_key", "APP_SECRET", 5000));
+        }
+
+        long start = System.nanoTime();
+        List<Response> responses = Client.executeAll(requests);
+        long elapsed = System.nanoTime() - start;
+
+        int failed = 0;
+        for (Response response : responses) {
+            if (200 != response.getStatusCode()) {
+                failed++;
+            }
+        }
+        System.out.println(String.format("%-8s requests=%d failed=%d elapsed=%dms throughput=%.0f req/s",
+                mode, total, failed, elapsed / 1000000, total * 1e9 / elapsed));
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.aliyun.api.gateway.demo;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.aliyun.api.gateway.demo.enums.BatchOrder;
+import com.aliyun.api.gateway.demo.enums.Method;
+import com.aliyun.api.gateway.demo.transport.HttpClientTransport;
+import com.aliyun.api.gateway.demo.util.HttpClientPool;
+
+/**
+ * HTTP/1.1连接池与HTTP/2多路复用的吞吐及连接数对比
+ * 本地启动支持h2c并校验签名的模拟网关,两种Transport发送相同的GET及POST表单请求
+ * 用法: Http2Benchmark [并发数] [请求数] [网关延迟毫秒],需要JDK 12及以上运行
+ */
+public class Http2Benchmark {
+    //APP KEY
+    private final static String APP_KEY = "app_key";
+    // APP密钥
+    private final static String APP_SECRET = "APP_SECRET";
+
+    public static void main(String[] args) throws Exception {
+        int concurrency = args.length > 0 ? Integer.parseInt(args[0]) : 64;
+        int total = args.length > 1 ? Integer.parseInt(args[1]) : 20000;
+        long latency = args.length > 2 ? Long.parseLong(args[2]) : 5;
+
+        Http2StubGateway gateway = new Http2StubGateway(latency, concurrency * 2 + 16, APP_KEY, APP_SECRET);
+        HttpClientPool.configure(concurrency, concurrency, 30000);
+        try {
+            System.out.println(String.format("concurrency=%d requests=%d latency=%dms", concurrency, total, latency));
+            Client.setTransport(new HttpClientTransport());
+            run("HTTP/1.1", gateway, concurrency, total / 10);
+            run("HTTP/1.1", gateway, concurrency, total);
+
+            Client.useHttp2();
+            //首个请求完成h2c升级后,后续请求复用同一连接
+            Client.execute(newRequest(gateway.getHost(), Method.GET, 0));
+            run("HTTP/2", gateway, concurrency, total / 10);
+            run("HTTP/2", gateway, concurrency, total);
+            System.out.println(String.format("gateway accepted=%d rejected=%d", gateway.getAccepted(), gateway.getRejected()));
+        } finally {
+            Client.setTransport(new HttpClientTransport());
+            gateway.stop();
+            HttpClientPool.shutdown();
+        }
+    }
+
+    private static void run(String mode, Http2StubGateway gateway, int concurrency, int total) throws Exception {
+        List<Request> requests = new ArrayList<Request>(total);
+        for (int i = 0; i < total; i++) {
+            requests.add(newRequest(gateway.getHost(), i % 4 == 0 ? Method.POST_FORM : Method.GET, i));
+        }
+        gateway.resetConnections();
+        BatchStats stats = Client.executeBatch(requests, concurrency, BatchOrder.COMPLETION, new BatchCallback() {
+            public void onResponse(int index, Request request, Response response) {
+            }
+
+            public void onFailure(int index, Request request, Throwable cause) {
+            }
+        });
+        System.out.println(String.format("%-8s requests=%d failed=%d elapsed=%dms throughput=%.0f req/s connections=%d protocols=%s",
+                mode, stats.getTotal(), stats.getHttpErrors() + stats.getFailed(), stats.getElapsedMillis(),
+                stats.getThroughput(), gateway.getConnections(), gateway.getProtocols()));
+    }
+
+    private static Request newRequest(String host, Method method, int index) {
+        Request request = new Request(method, host, "/h2/" + method.name().toLowerCase(), APP_KEY, APP_SECRET, 5000);
+        Map<String, String> headers = new HashMap<String, String>();
+        headers.put("Accept", "application/json");
+        headers.put("a-header1", "header1Value");
+        request.setHeaders(headers);
+        request.setSignHeaderPrefixList(new ArrayList<String>(Arrays.asList("a-header1")));
+        Map<String, String> querys = new HashMap<String, String>();
+        querys.put("index", String.valueOf(index));
+        request.setQuerys(querys);
+        if (Method.POST_FORM == method) {
+            Map<String, String> bodys = new HashMap<String, String>();
+            bodys.put("a-body1", "body1Value");
+            request.setBodys(bodys);
+        }
+        return request;
+    }
+}
@@ -0,0 +1,183 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.aliyun.api.gateway.demo;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.eclipse.jetty.http2.server.HTTP2CServerConnectionFactory;
+import org.eclipse.jetty.server.HttpConfiguration;
+import org.eclipse.jetty.server.HttpConnectionFactory;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.server.handler.AbstractHandler;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
+
+import com.aliyun.api.gateway.demo.constant.Constants;
+import com.aliyun.api.gateway.demo.constant.HttpSchema;
+import com.aliyun.api.gateway.demo.util.HttpUtil;
+import com.aliyun.api.gateway.demo.util.NonceStore;
+import com.aliyun.api.gateway.demo.util.SignatureVerifier;
+import com.sun.net.httpserver.Headers;
+
+/**
+ * 同时支持HTTP/1.1及h2c(HTTP/2明文,含Upgrade)的本地模拟网关
+ * 签名校验规则与StubGateway相同,另外统计处理请求的TCP连接数及协议
+ */
+public class Http2StubGateway {
+
+    private final Server server;
+
+    private final ServerConnector connector;
+
+    private final AtomicLong accepted = new AtomicLong();
+
+    private final AtomicLong rejected = new AtomicLong();
+
+    //处理过请求的客户端端口,本地连接的端口各不相同,用于统计连接数
+    private final Set<Integer> clientPorts = new HashSet<Integer>();
+
+    //请求使用的协议
+    private final Set<String> protocols = new TreeSet<String>();
+
+    /**
+     * @param latencyMillis 每个请求的模拟处理时间,单位毫秒
+     * @param maxThreads 服务端最大线程数,需大于并发请求数
+     * @param appKey 允许的APP KEY,为null时不校验签名
+     * @param appSecret APP密钥
+     * @throws Exception
+     */
+    public Http2StubGateway(final long latencyMillis, int maxThreads, final String appKey, final String appSecret) throws Exception {
+        final SignatureVerifier verifier = StubGateway.newVerifier(appKey, appSecret, null);
+        final SignatureVerifier nonceVerifier = StubGateway.newVerifier(appKey, appSecret, new NonceStore());
+        server = new Server(new QueuedThreadPool(maxThreads));
+        HttpConfiguration config = new HttpConfiguration();
+        HTTP2CServerConnectionFactory h2c = new HTTP2CServerConnectionFactory(config);
+        h2c.setMaxConcurrentStreams(maxThreads);
+        connector = new ServerConnector(server, new HttpConnectionFactory(config), h2c);
+        connector.setHost("127.0.0.1");
+        connector.setPort(0);
+        server.addConnector(connector);
+        server.setHandler(new AbstractHandler() {
+            public void handle(String target, org.eclipse.jetty.server.Request baseRequest, HttpServletRequest request,
+                    HttpServletResponse response) throws IOException {
+                baseRequest.setHandled(true);
+                synchronized (clientPorts) {
+                    clientPorts.add(request.getRemotePort());
+                    protocols.add(request.getProtocol());
+                }
+                byte[] body = HttpUtil.readStreamAsBytes(request.getInputStream(), -1);
+                String uri = request.getRequestURI() + (null == request.getQueryString() ? "" : "?" + request.getQueryString());
+                String error = StubGateway.verify(verifier, nonceVerifier, request.getMethod(), URI.create(uri), headers(request), body);
+                if (null != error) {
+                    rejected.incrementAndGet();
+                    response.setHeader("X-Ca-Error-Message", error);
+                    response.setStatus(400);
+                    return;
+                }
+                accepted.incrementAndGet();
+                if (latencyMillis > 0) {
+                    try {
+                        Thread.sleep(latencyMillis);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                byte[] content = "{\"success\":true}".getBytes(Constants.ENCODING);
+                response.setStatus(200);
+                response.setContentType("application/json");
+                response.setHeader("X-Ca-Request-Id", "stub");
+                response.setContentLength(content.length);
+                response.getOutputStream().write(content);
+            }
+        });
+        server.start();
+    }
+
+    private static Headers headers(HttpServletRequest request) {
+        Headers headers = new Headers();
+        Enumeration<String> names = request.getHeaderNames();
+        while (names.hasMoreElements()) {
+            String name = names.nextElement();
+            headers.add(name, request.getHeader(name));
+        }
+        return headers;
+    }
+
+    /**
+     * 网关地址,如http://127.0.0.1:12345
+     *
+     * @return
+     */
+    public String getHost() {
+        return HttpSchema.HTTP + "127.0.0.1:" + connector.getLocalPort();
+    }
+
+    public long getAccepted() {
+        return accepted.get();
+    }
+
+    public long getRejected() {
+        return rejected.get();
+    }
+
+    /**
+     * 处理过请求的TCP连接数
+     *
+     * @return
+     */
+    public int getConnections() {
+        synchronized (clientPorts) {
+            return clientPorts.size();
+        }
+    }
+
+    /**
+     * 请求使用过的协议,如HTTP/1.1、HTTP/2.0
+     *
+     * @return
+     */
+    public String getProtocols() {
+        synchronized (clientPorts) {
+            return protocols.toString();
+        }
+    }
+
+    /**
+     * 清空连接及协议统计
+     */
+    public void resetConnections() {
+        synchronized (clientPorts) {
+            clientPorts.clear();
+            protocols.clear();
+        }
+    }
+
+    public void stop() throws Exception {
+        server.stop();
+    }
+}
@@ -0,0 +1,220 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.aliyun.api.gateway.demo;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import com.alibaba.fastjson.JSONException;
+import com.alibaba.fastjson.TypeReference;
+import com.aliyun.api.gateway.demo.constant.Constants;
+
+public class JsonArrayIteratorTest {
+
+    private static InputStream stream(String json) {
+        return new ByteArrayInputStream(json.getBytes(Charset.forName(Constants.ENCODING)));
+    }
+
+    //每次只返回一个字节,使每个元素都跨越内部缓冲区
+    private static InputStream trickle(String json) {
+        return new FilterInputStream(stream(json)) {
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                return super.read(b, off, Math.min(len, 1));
+            }
+        };
+    }
+
+    private static <T> List<T> drain(JsonArrayIterator<T> it) {
+        List<T> result = new ArrayList<T>();
+        while (it.hasNext()) {
+            result.add(it.next());
+        }
+        return result;
+    }
+
+    private static List<Object> parse(String json) {
+        List<Object> result = drain(new JsonArrayIterator<Object>(stream(json), Object.class));
+        assertEquals(result, drain(new JsonArrayIterator<Object>(trickle(json), Object.class)));
+        return result;
+    }
+
+    private static void assertRejected(String json) {
+        for (InputStream in : Arrays.asList(stream(json), trickle(json))) {
+            try {
+                drain(new JsonArrayIterator<Object>(in, Object.class));
+                fail("accepted " + json);
+            } catch (JSONException e) {
+                //期望
+            }
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void parsesNestedArraysAndObjects() {
+        List<Map<String, Object>> items = drain(new JsonArrayIterator<Map<String, Object>>(
+                stream("[{\"a\":[1,[2,{\"b\":{}}]],\"c\":{\"d\":[]}},{}]"),
+                new TypeReference<Map<String, Object>>() {}.getType()));
+        assertEquals(2, items.size());
+        assertEquals("[1,[2,{\"b\":{}}]]", items.get(0).get("a").toString());
+        assertTrue(items.get(1).isEmpty());
+
+        List<Object> values = parse("[[1,[2]],{\"x\":[3]},[]]");
+        assertEquals(3, values.size());
+        assertEquals("[1,[2]]", values.get(0).toString());
+        assertEquals("[]", values.get(2).toString());
+    }
+
+    @Test(timeout = 10000)
+    public void handlesEscapesAndBracketsInStrings() {
+        List<Object> values = parse("[\"a\\\"b\", \"c\\\\\", \"]\", \"[{,}\", {\"k\":\"}]\\\\\\\"[\"}, \"\\\\\\\"\"]");
+        assertEquals("a\"b", values.get(0));
+        assertEquals("c\\", values.get(1));
+        assertEquals("]", values.get(2));
+        assertEquals("[{,}", values.get(3));
+        assertEquals("}]\\\"[", ((Map<?, ?>) values.get(4)).get("k"));
+        assertEquals("\\\"", values.get(5));
+        assertEquals(6, values.size());
+    }
+
+    @Test(timeout = 10000)
+    public void parsesScalarNullAndNumberElements() {
+        List<Object> values = parse("[1,-2.5e3,true,false,null,\"s\",0]");
+        assertEquals(7, values.size());
+        assertEquals(1, values.get(0));
+        assertEquals(0, new BigDecimal("-2500").compareTo(new BigDecimal(values.get(1).toString())));
+        assertEquals(Boolean.TRUE, values.get(2));
+        assertEquals(Boolean.FALSE, values.get(3));
+        assertNull(values.get(4));
+        assertEquals("s", values.get(5));
+        assertEquals(0, values.get(6));
+
+        List<Long> longs = drain(new JsonArrayIterator<Long>(stream("[1,2,3]"), Long.class));
+        assertEquals(Arrays.asList(1L, 2L, 3L), longs);
+    }
+
+    @Test(timeout = 10000)
+    public void toleratesWhitespace() {
+        List<Object> values = parse(" \r\n[ \t1 ,\n\"a\"\t,  {\"k\" : 2} , [ 3 ] \n, null\r\n ] ");
+        assertEquals(5, values.size());
+        assertEquals(1, values.get(0));
+        assertEquals("a", values.get(1));
+        assertNull(values.get(4));
+    }
+
+    @Test(timeout = 10000)
+    public void emptyArray() {
+        assertTrue(parse("[]").isEmpty());
+        assertTrue(parse("  [ \n ]  ").isEmpty());
+        JsonArrayIterator<Object> it = new JsonArrayIterator<Object>(stream("[]"), Object.class);
+        assertFalse(it.hasNext());
+        assertFalse(it.hasNext());
+    }
+
+    @Test(timeout = 10000)
+    public void rejectsNonArrayInput() {
+        assertRejected("");
+        assertRejected("   ");
+        assertRejected("{\"a\":1}");
+        assertRejected("1");
+        assertRejected("\"[1]\"");
+        assertRejected("[,1]");
+        assertRejected("[1,]");
+        assertRejected("[1 2]");
+        assertRejected("[1,,2]");
+    }
+
+    @Test(timeout = 10000)
+    public void rejectsTruncatedInput() {
+        assertRejected("[");
+        assertRejected("[1");
+        assertRejected("[1,");
+        assertRejected("[{\"a\":1}");
+        assertRejected("[{\"a\":1");
+        assertRejected("[\"abc");
+        assertRejected("[\"abc\\\"]");
+        assertRejected("[[1,2]");
+    }
+
+    @Test(timeout = 10000)
+    public void truncatedInputDoesNotReturnPartialElement() {
+        JsonArrayIterator<Object> it = new JsonArrayIterator<Object>(stream("[1,{\"a\":[2,3"), Object.class);
+        assertEquals(1, it.next());
+        try {
+            it.hasNext();
+            fail();
+        } catch (JSONException e) {
+            //期望
+        }
+        assertFalse(it.hasNext());
+    }
+
+    @Test(timeout = 10000)
+    public void elementSpansBufferBoundary() {
+        StringBuilder big = new StringBuilder();
+        for (int i = 0; i < 20000; i++) {
+            big.append((char) ('a' + i % 26));
+        }
+        //填充使第二个元素从缓冲区末尾附近开始
+        StringBuilder pad = new StringBuilder();
+        for (int i = 0; i < 8180; i++) {
+            pad.append('p');
+        }
+        String json = "[\"" + pad + "\",{\"big\":\"" + big + "\",\"n\":[1,2]},\"" + big + "\",7]";
+        List<Object> values = parse(json);
+        assertEquals(4, values.size());
+        assertEquals(pad.toString(), values.get(0));
+        assertEquals(big.toString(), ((Map<?, ?>) values.get(1)).get("big"));
+        assertEquals(big.toString(), values.get(2));
+        assertEquals(7, values.get(3));
+    }
+
+    @Test(timeout = 10000)
+    public void closesStreamAtEnd() {
+        final boolean[] closed = new boolean[1];
+        InputStream in = new FilterInputStream(stream("[1]")) {
+            @Override
+            public void close() throws IOException {
+                closed[0] = true;
+                super.close();
+            }
+        };
+        JsonArrayIterator<Object> it = new JsonArrayIterator<Object>(in, Object.class);
+        assertEquals(1, it.next());
+        assertFalse(closed[0]);
+        assertFalse(it.hasNext());
+        assertTrue(closed[0]);
+    }
+}
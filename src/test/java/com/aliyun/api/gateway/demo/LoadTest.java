@@ -0,0 +1,246 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.aliyun.api.gateway.demo;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.HdrHistogram.Histogram;
+
+import com.aliyun.api.gateway.demo.constant.Constants;
+import com.aliyun.api.gateway.demo.constant.ContentType;
+import com.aliyun.api.gateway.demo.constant.HttpHeader;
+import com.aliyun.api.gateway.demo.enums.Method;
+import com.aliyun.api.gateway.demo.metrics.HdrHistogramMetrics;
+import com.aliyun.api.gateway.demo.metrics.Metrics;
+import com.aliyun.api.gateway.demo.util.HttpClientPool;
+import com.aliyun.api.gateway.demo.util.MessageDigestUtil;
+
+/**
+ * Client.execute端到端压测
+ * 本地启动校验签名的StubGateway,按配置的并发数及请求比例压测,输出吞吐量及延迟分布
+ *
+ * 用法: LoadTest [concurrency=64] [duration=10] [warmup=3] [latency=0] [bodySize=256] [mix=GET:4,POST_FORM:1,...] [metrics=false]
+ */
+public class LoadTest {
+    //APP KEY
+    private final static String APP_KEY = "app_key";
+    // APP密钥
+    private final static String APP_SECRET = "APP_SECRET";
+    //延迟统计上限,单位微秒
+    private final static long MAX_LATENCY_MICROS = TimeUnit.SECONDS.toMicros(60);
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<String, String>();
+        for (String arg : args) {
+            int index = arg.indexOf('=');
+            options.put(arg.substring(0, index), arg.substring(index + 1));
+        }
+        int concurrency = Integer.parseInt(option(options, "concurrency", "64"));
+        int duration = Integer.parseInt(option(options, "duration", "10"));
+        int warmup = Integer.parseInt(option(options, "warmup", "3"));
+        long latency = Long.parseLong(option(options, "latency", "0"));
+        int bodySize = Integer.parseInt(option(options, "bodySize", "256"));
+        Method[] mix = parseMix(option(options, "mix", null));
+        boolean metricsEnabled = Boolean.parseBoolean(option(options, "metrics", "false"));
+
+        StubGateway gateway = new StubGateway(latency, APP_KEY, APP_SECRET);
+        HttpClientPool.configure(concurrency, concurrency, 30000);
+        try {
+            System.out.println(String.format("concurrency=%d duration=%ds warmup=%ds latency=%dms bodySize=%d mix=%s",
+                    concurrency, duration, warmup, latency, bodySize, Arrays.toString(mix)));
+            run(gateway, concurrency, warmup, bodySize, mix);
+            HdrHistogramMetrics metrics = null;
+            if (metricsEnabled) {
+                metrics = new HdrHistogramMetrics();
+                Metrics.setClientMetrics(metrics);
+            }
+            Result result = run(gateway, concurrency, duration, bodySize, mix);
+            result.print(duration);
+            System.out.println(String.format("gateway accepted=%d rejected=%d", gateway.getAccepted(), gateway.getRejected()));
+            if (null != metrics) {
+                metrics.report(System.out);
+            }
+        } finally {
+            Metrics.setClientMetrics(null);
+            gateway.stop();
+            HttpClientPool.shutdown();
+        }
+    }
+
+    private static Result run(final StubGateway gateway, int concurrency, int seconds, final int bodySize, final Method[] mix)
+            throws Exception {
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        ExecutorService workers = Executors.newFixedThreadPool(concurrency);
+        List<Future<Result>> futures = new ArrayList<Future<Result>>();
+        for (int i = 0; i < concurrency; i++) {
+            final long seed = i;
+            futures.add(workers.submit(new Callable<Result>() {
+                public Result call() throws Exception {
+                    Result result = new Result();
+                    Random random = new Random(seed);
+                    byte[] body = new byte[bodySize];
+                    random.nextBytes(body);
+                    while (System.nanoTime() < deadline) {
+                        Method method = mix[random.nextInt(mix.length)];
+                        Request request = newRequest(gateway.getHost(), method, body);
+                        long start = System.nanoTime();
+                        int status;
+                        try {
+                            status = Client.execute(request).getStatusCode();
+                        } catch (Exception e) {
+                            status = -1;
+                        }
+                        result.record(method, status, (System.nanoTime() - start) / 1000);
+                    }
+                    return result;
+                }
+            }));
+        }
+        Result total = new Result();
+        for (Future<Result> future : futures) {
+            total.add(future.get());
+        }
+        workers.shutdown();
+        return total;
+    }
+
+    private static Request newRequest(String host, Method method, byte[] body) throws Exception {
+        Request request = new Request(method, host, "/load/" + method.name().toLowerCase(), APP_KEY, APP_SECRET, Constants.DEFAULT_TIMEOUT);
+        Map<String, String> headers = new HashMap<String, String>();
+        headers.put(HttpHeader.HTTP_HEADER_ACCEPT, "application/json");
+        headers.put("a-header1", "header1Value");
+        request.setHeaders(headers);
+        request.setSignHeaderPrefixList(new ArrayList<String>(Arrays.asList("a-header1")));
+
+        Map<String, String> querys = new HashMap<String, String>();
+        querys.put("a-query1", "query1Value");
+        querys.put("b-query2", "query 2 value");
+        request.setQuerys(querys);
+
+        switch (method) {
+            case POST_FORM:
+            case PUT_FORM:
+                Map<String, String> bodys = new HashMap<String, String>();
+                bodys.put("a-body1", "body1Value");
+                bodys.put("b-body2", "body 2 value");
+                request.setBodys(bodys);
+                break;
+            case POST_STRING:
+            case PUT_STRING:
+                String stringBody = new String(body, "ISO-8859-1");
+                headers.put(HttpHeader.HTTP_HEADER_CONTENT_MD5, MessageDigestUtil.base64AndMD5(stringBody));
+                headers.put(HttpHeader.HTTP_HEADER_CONTENT_TYPE, ContentType.CONTENT_TYPE_TEXT);
+                request.setStringBody(stringBody);
+                break;
+            case POST_BYTES:
+            case PUT_BYTES:
+                headers.put(HttpHeader.HTTP_HEADER_CONTENT_MD5, MessageDigestUtil.base64AndMD5(body));
+                headers.put(HttpHeader.HTTP_HEADER_CONTENT_TYPE, ContentType.CONTENT_TYPE_STREAM);
+                request.setBytesBody(body);
+                break;
+            default:
+                break;
+        }
+        return request;
+    }
+
+    private static Method[] parseMix(String mix) {
+        if (null == mix) {
+            return Method.values();
+        }
+        List<Method> methods = new ArrayList<Method>();
+        for (String item : mix.split(",")) {
+            String[] parts = item.split(":");
+            int weight = parts.length > 1 ? Integer.parseInt(parts[1]) : 1;
+            for (int i = 0; i < weight; i++) {
+                methods.add(Method.valueOf(parts[0]));
+            }
+        }
+        return methods.toArray(new Method[methods.size()]);
+    }
+
+    private static String option(Map<String, String> options, String name, String defaultValue) {
+        String value = options.get(name);
+        return null == value ? defaultValue : value;
+    }
+
+    /**
+     * 压测结果,按请求方法统计延迟及状态码
+     */
+    private static class Result {
+        private final Map<Method, Histogram> latencies = new EnumMap<Method, Histogram>(Method.class);
+
+        private final Map<Integer, Long> statusCounts = new TreeMap<Integer, Long>();
+
+        void record(Method method, int status, long latencyMicros) {
+            histogram(method).recordValue(Math.min(latencyMicros, MAX_LATENCY_MICROS));
+            Long count = statusCounts.get(status);
+            statusCounts.put(status, null == count ? 1 : count + 1);
+        }
+
+        void add(Result other) {
+            for (Map.Entry<Method, Histogram> entry : other.latencies.entrySet()) {
+                histogram(entry.getKey()).add(entry.getValue());
+            }
+            for (Map.Entry<Integer, Long> entry : other.statusCounts.entrySet()) {
+                Long count = statusCounts.get(entry.getKey());
+                statusCounts.put(entry.getKey(), (null == count ? 0 : count) + entry.getValue());
+            }
+        }
+
+        void print(int seconds) {
+            Histogram total = new Histogram(MAX_LATENCY_MICROS, 3);
+            System.out.println(String.format("%-12s %10s %10s %10s %10s %10s %10s", "method", "count", "p50(us)", "p99(us)", "p999(us)", "max(us)", "req/s"));
+            for (Map.Entry<Method, Histogram> entry : latencies.entrySet()) {
+                print(entry.getKey().name(), entry.getValue(), seconds);
+                total.add(entry.getValue());
+            }
+            print("TOTAL", total, seconds);
+            System.out.println("status codes (-1 = client exception): " + statusCounts);
+        }
+
+        private static void print(String name, Histogram histogram, int seconds) {
+            System.out.println(String.format("%-12s %10d %10d %10d %10d %10d %10.0f", name, histogram.getTotalCount(),
+                    histogram.getValueAtPercentile(50), histogram.getValueAtPercentile(99),
+                    histogram.getValueAtPercentile(99.9), histogram.getMaxValue(),
+                    histogram.getTotalCount() / (double) seconds));
+        }
+
+        private Histogram histogram(Method method) {
+            Histogram histogram = latencies.get(method);
+            if (null == histogram) {
+                histogram = new Histogram(MAX_LATENCY_MICROS, 3);
+                latencies.put(method, histogram);
+            }
+            return histogram;
+        }
+    }
+}
@@ -0,0 +1,135 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.aliyun.api.gateway.demo;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.http.Header;
+import org.apache.http.NameValuePair;
+import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.client.utils.URLEncodedUtils;
+import org.junit.Test;
+
+import com.aliyun.api.gateway.demo.constant.SystemHeader;
+import com.aliyun.api.gateway.demo.enums.Method;
+import com.aliyun.api.gateway.demo.util.HttpUtil;
+import com.aliyun.api.gateway.demo.util.SignatureVerifier;
+import com.aliyun.api.gateway.demo.enums.VerifyResult;
+
+public class RequestTemplateTest {
+
+    private static final String APP_KEY = "app-key";
+
+    private static final String APP_SECRET = "app-secret";
+
+    private static RequestTemplate template(List<String> prefixes) {
+        return RequestTemplate.of(Request.builder(Method.GET, "http://localhost", "/items", APP_KEY, APP_SECRET)
+                .header("a-header1", "v1").header("b-header2", "v2")
+                .signHeaderPrefixList(prefixes).build());
+    }
+
+    private static Map<String, String> headers(HttpRequestBase request) {
+        Map<String, String> headers = new HashMap<String, String>();
+        for (Header header : request.getAllHeaders()) {
+            headers.put(header.getName(), header.getValue());
+        }
+        return headers;
+    }
+
+    private static VerifyResult verify(HttpRequestBase request) {
+        URI uri = request.getURI();
+        Map<String, String> querys = new HashMap<String, String>();
+        for (NameValuePair pair : URLEncodedUtils.parse(uri, "UTF-8")) {
+            querys.put(pair.getName(), pair.getValue());
+        }
+        SignatureVerifier verifier = new SignatureVerifier(Collections.singletonMap(APP_KEY, APP_SECRET), 0);
+        return verifier.verify(request.getMethod(), uri.getPath(), headers(request), querys, null);
+    }
+
+    @Test
+    public void newRequestMatches() throws Exception {
+        RequestTemplate template = template(Arrays.asList("a-header1"));
+        Request request = template.newRequest(Collections.singletonMap("q", "1"));
+        assertTrue(template.matches(request));
+
+        HttpRequestBase built = HttpUtil.buildRequest(request);
+        assertEquals(template.getSignatureHeaders(), built.getFirstHeader(SystemHeader.X_CA_SIGNATURE_HEADERS).getValue());
+        assertEquals(VerifyResult.OK, verify(built));
+    }
+
+    @Test
+    public void equalPrefixListStillMatches() {
+        RequestTemplate template = template(Arrays.asList("a-header1"));
+        Request request = template.newRequest();
+        request.setSignHeaderPrefixList(new ArrayList<String>(Arrays.asList("a-header1")));
+        assertTrue(template.matches(request));
+    }
+
+    @Test
+    public void changedPrefixListFallsBackToUncachedPath() throws Exception {
+        RequestTemplate template = template(Arrays.asList("a-header1"));
+        Request request = template.newRequest();
+        request.setSignHeaderPrefixList(Arrays.asList("a-header1", "b-header2"));
+        assertFalse(template.matches(request));
+
+        HttpRequestBase built = HttpUtil.buildRequest(request);
+        assertEquals("X-Ca-Key,X-Ca-Timestamp,a-header1,b-header2",
+                built.getFirstHeader(SystemHeader.X_CA_SIGNATURE_HEADERS).getValue());
+        assertEquals(VerifyResult.OK, verify(built));
+    }
+
+    @Test
+    public void nullPrefixListDoesNotMatch() throws Exception {
+        RequestTemplate template = template(Arrays.asList("a-header1"));
+        Request request = template.newRequest();
+        request.setSignHeaderPrefixList(null);
+        assertFalse(template.matches(request));
+
+        HttpRequestBase built = HttpUtil.buildRequest(request);
+        assertNull(built.getFirstHeader(SystemHeader.X_CA_SIGNATURE_HEADERS));
+        assertEquals(VerifyResult.OK, verify(built));
+
+        RequestTemplate unsigned = template(null);
+        Request withPrefixes = unsigned.newRequest();
+        assertTrue(unsigned.matches(withPrefixes));
+        withPrefixes.setSignHeaderPrefixList(Arrays.asList("a-header1"));
+        assertFalse(unsigned.matches(withPrefixes));
+        assertEquals("X-Ca-Key,X-Ca-Timestamp,a-header1",
+                HttpUtil.buildRequest(withPrefixes).getFirstHeader(SystemHeader.X_CA_SIGNATURE_HEADERS).getValue());
+    }
+
+    @Test
+    public void changedHostDoesNotMatch() {
+        RequestTemplate template = template(Arrays.asList("a-header1"));
+        Request request = template.newRequest();
+        request.setHost("http://127.0.0.1");
+        assertFalse(template.matches(request));
+    }
+}
@@ -0,0 +1,193 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.aliyun.api.gateway.demo;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import com.aliyun.api.gateway.demo.enums.Method;
+
+public class RequestTest {
+
+    private static Request.Builder builder() {
+        return Request.builder(Method.POST_FORM, "http://localhost", "/items", "app-key", "app-secret")
+                .timeout(1000)
+                .header("a-header1", "v1")
+                .query("q", "1")
+                .body("name", "value")
+                .signHeaderPrefix("a-header1");
+    }
+
+    private static void assertUnsupported(Runnable action) {
+        try {
+            action.run();
+            fail("expected UnsupportedOperationException");
+        } catch (UnsupportedOperationException e) {
+            //期望
+        }
+    }
+
+    @Test
+    public void builtRequestRejectsSetters() {
+        final Request request = builder().build();
+        assertTrue(request.isImmutable());
+        assertUnsupported(new Runnable() {
+            public void run() {
+                request.setHost("http://127.0.0.1");
+            }
+        });
+        assertUnsupported(new Runnable() {
+            public void run() {
+                request.setTimeout(0);
+            }
+        });
+        assertUnsupported(new Runnable() {
+            public void run() {
+                request.setHeaders(new HashMap<String, String>());
+            }
+        });
+        assertUnsupported(new Runnable() {
+            public void run() {
+                request.setQuerys(new HashMap<String, String>());
+            }
+        });
+        assertUnsupported(new Runnable() {
+            public void run() {
+                request.setStringBody("body");
+            }
+        });
+        assertUnsupported(new Runnable() {
+            public void run() {
+                request.setSignHeaderPrefixList(null);
+            }
+        });
+    }
+
+    @Test
+    public void builtRequestMapsAreUnmodifiable() {
+        final Request request = builder().build();
+        assertUnsupported(new Runnable() {
+            public void run() {
+                request.getHeaders().put("b-header2", "v2");
+            }
+        });
+        assertUnsupported(new Runnable() {
+            public void run() {
+                request.getQuerys().remove("q");
+            }
+        });
+        assertUnsupported(new Runnable() {
+            public void run() {
+                request.getBodys().clear();
+            }
+        });
+        assertUnsupported(new Runnable() {
+            public void run() {
+                request.getSignHeaderPrefixList().add("b-header2");
+            }
+        });
+    }
+
+    @Test
+    public void builderChangesDoNotAffectBuiltRequest() {
+        Map<String, String> headers = new HashMap<String, String>();
+        headers.put("a-header1", "v1");
+        List<String> prefixes = new ArrayList<String>(Arrays.asList("a-header1"));
+        Request.Builder builder = builder().headers(headers).signHeaderPrefixList(prefixes);
+        Request request = builder.build();
+        headers.put("a-header1", "changed");
+        prefixes.add("b-header2");
+        builder.header("b-header2", "v2").query("q", "2");
+        assertEquals("v1", request.getHeaders().get("a-header1"));
+        assertFalse(request.getHeaders().containsKey("b-header2"));
+        assertEquals("1", request.getQuerys().get("q"));
+        assertEquals(Arrays.asList("a-header1"), request.getSignHeaderPrefixList());
+    }
+
+    @Test
+    public void toBuilderCopiesMaps() {
+        Request original = builder().build();
+        Request derived = original.toBuilder()
+                .header("b-header2", "v2")
+                .query("q", "2")
+                .body("other", "x")
+                .signHeaderPrefix("b-header2")
+                .build();
+
+        assertNotSame(original.getHeaders(), derived.getHeaders());
+        assertNotSame(original.getQuerys(), derived.getQuerys());
+        assertNotSame(original.getBodys(), derived.getBodys());
+        assertNotSame(original.getSignHeaderPrefixList(), derived.getSignHeaderPrefixList());
+
+        assertFalse(original.getHeaders().containsKey("b-header2"));
+        assertEquals("1", original.getQuerys().get("q"));
+        assertFalse(original.getBodys().containsKey("other"));
+        assertEquals(Arrays.asList("a-header1"), original.getSignHeaderPrefixList());
+
+        assertEquals("v2", derived.getHeaders().get("b-header2"));
+        assertEquals("2", derived.getQuerys().get("q"));
+        assertEquals("value", derived.getBodys().get("name"));
+        assertEquals(Arrays.asList("a-header1", "b-header2"), derived.getSignHeaderPrefixList());
+        assertEquals(original.getTimeout(), derived.getTimeout());
+        assertTrue(derived.isImmutable());
+    }
+
+    @Test
+    public void withHeaderLeavesOriginalUnchanged() {
+        Request original = builder().header("X-Ca-Nonce", "first").build();
+        Request copy = original.withHeader("X-Ca-Nonce", "second");
+
+        assertEquals("first", original.getHeaders().get("X-Ca-Nonce"));
+        assertEquals("second", copy.getHeaders().get("X-Ca-Nonce"));
+        assertEquals("v1", copy.getHeaders().get("a-header1"));
+        assertEquals(2, original.getHeaders().size());
+        assertSame(original.getQuerys(), copy.getQuerys());
+        assertSame(original.getSignHeaderPrefixList(), copy.getSignHeaderPrefixList());
+
+        Request mutable = new Request(Method.GET, "http://localhost", "/items", "app-key", "app-secret", 0);
+        Map<String, String> headers = new HashMap<String, String>();
+        headers.put("X-Ca-Nonce", "first");
+        mutable.setHeaders(headers);
+        Request mutableCopy = mutable.withHeader("X-Ca-Nonce", "second");
+        assertSame(headers, mutable.getHeaders());
+        assertEquals("first", headers.get("X-Ca-Nonce"));
+        assertEquals("second", mutableCopy.getHeaders().get("X-Ca-Nonce"));
+    }
+
+    @Test
+    public void withHeaderKeepsTemplate() {
+        RequestTemplate template = RequestTemplate.of(builder().build());
+        Request request = template.newRequest();
+        Request copy = request.withHeader("X-Ca-Nonce", "n");
+        assertSame(template, copy.getTemplate());
+        assertFalse(request.getHeaders().containsKey("X-Ca-Nonce"));
+    }
+}
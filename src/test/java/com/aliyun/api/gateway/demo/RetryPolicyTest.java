@@ -0,0 +1,247 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.aliyun.api.gateway.demo;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.ConnectException;
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.conn.ConnectionPoolTimeoutException;
+import org.junit.Test;
+
+import com.aliyun.api.gateway.demo.constant.SystemHeader;
+import com.aliyun.api.gateway.demo.enums.Method;
+import com.aliyun.api.gateway.demo.transport.Transport;
+
+public class RetryPolicyTest {
+
+    /**
+     * 依次返回预设结果的Transport,记录收到的请求
+     */
+    private static class StubTransport implements Transport {
+
+        private final LinkedList<Object> outcomes;
+
+        private final List<HttpRequestBase> requests = new ArrayList<HttpRequestBase>();
+
+        StubTransport(Object... outcomes) {
+            this.outcomes = new LinkedList<Object>(Arrays.asList(outcomes));
+        }
+
+        public Response execute(HttpRequestBase request, int connectTimeout, boolean streaming) throws IOException {
+            requests.add(request);
+            Object outcome = outcomes.isEmpty() ? response(200) : outcomes.removeFirst();
+            if (outcome instanceof IOException) {
+                throw (IOException) outcome;
+            }
+            return (Response) outcome;
+        }
+    }
+
+    private static Response response(int statusCode, String... headers) {
+        Response response = new Response();
+        response.setStatusCode(statusCode);
+        Map<String, String> map = new HashMap<String, String>();
+        for (int i = 0; i < headers.length; i += 2) {
+            map.put(headers[i], headers[i + 1]);
+        }
+        response.setHeaders(map);
+        return response;
+    }
+
+    private static Request request(Method method) {
+        Request.Builder builder = Request.builder(method, "http://localhost", "/p", "key", "secret").timeout(1000);
+        if (Method.POST_STRING == method) {
+            builder.stringBody("x");
+        }
+        return builder.build();
+    }
+
+    private static RetryPolicy.Builder policy() {
+        return RetryPolicy.builder().backoff(0, 100).budget(null);
+    }
+
+    @Test
+    public void onlyPostIsNonIdempotent() {
+        assertTrue(RetryPolicy.isIdempotent(Method.GET));
+        assertTrue(RetryPolicy.isIdempotent(Method.PUT_STRING));
+        assertTrue(RetryPolicy.isIdempotent(Method.DELETE));
+        assertFalse(RetryPolicy.isIdempotent(Method.POST_FORM));
+        assertFalse(RetryPolicy.isIdempotent(Method.POST_STRING));
+        assertFalse(RetryPolicy.isIdempotent(Method.POST_BYTES));
+    }
+
+    @Test
+    public void retriesPostOnlyWhenNotSent() {
+        RetryPolicy policy = policy().build();
+        assertTrue(policy.isRetryable(new ConnectException(), false));
+        assertTrue(policy.isRetryable(new ConnectionPoolTimeoutException(), false));
+        assertFalse(policy.isRetryable(new SocketTimeoutException(), false));
+        assertFalse(policy.isRetryable(503, false));
+
+        assertTrue(policy.isRetryable(new SocketTimeoutException(), true));
+        assertTrue(policy.isRetryable(503, true));
+        assertFalse(policy.isRetryable(500, true));
+        assertFalse(policy.isRetryable(new InterruptedIOException(), true));
+        assertFalse(policy.isRetryable(new IllegalStateException(), true));
+
+        RetryPolicy nonIdempotent = policy().retryNonIdempotent(true).build();
+        assertTrue(nonIdempotent.isRetryable(new SocketTimeoutException(), false));
+        assertTrue(nonIdempotent.isRetryable(503, false));
+    }
+
+    @Test
+    public void retriesGetUntilSuccess() throws Exception {
+        StubTransport transport = new StubTransport(response(503), new SocketTimeoutException(), response(200));
+        Response response = policy().build().execute(request(Method.GET), null, transport, false, null);
+        assertEquals(200, response.getStatusCode());
+        assertEquals(3, transport.requests.size());
+    }
+
+    @Test
+    public void resignsEachAttemptWithNewNonce() throws Exception {
+        Request request = Request.builder(Method.GET, "http://localhost", "/p", "key", "secret")
+                .header(SystemHeader.X_CA_NONCE, "n0").signHeaderPrefix(SystemHeader.X_CA_NONCE).build();
+        StubTransport transport = new StubTransport(response(503), response(503), response(200));
+        policy().build().execute(request, null, transport, false, null);
+
+        Set<String> nonces = new HashSet<String>();
+        Set<String> signatures = new HashSet<String>();
+        for (HttpRequestBase sent : transport.requests) {
+            nonces.add(sent.getFirstHeader(SystemHeader.X_CA_NONCE).getValue());
+            signatures.add(sent.getFirstHeader(SystemHeader.X_CA_SIGNATURE).getValue());
+        }
+        assertEquals(3, nonces.size());
+        assertEquals(3, signatures.size());
+        assertEquals("n0", request.getHeaders().get(SystemHeader.X_CA_NONCE));
+    }
+
+    @Test
+    public void doesNotRetryPostAfterSend() throws Exception {
+        StubTransport transport = new StubTransport(response(503));
+        Response response = policy().build().execute(request(Method.POST_STRING), null, transport, false, null);
+        assertEquals(503, response.getStatusCode());
+        assertEquals(1, transport.requests.size());
+
+        SocketTimeoutException timeout = new SocketTimeoutException();
+        transport = new StubTransport(timeout);
+        try {
+            policy().build().execute(request(Method.POST_STRING), null, transport, false, null);
+            fail();
+        } catch (SocketTimeoutException e) {
+            assertSame(timeout, e);
+        }
+        assertEquals(1, transport.requests.size());
+    }
+
+    @Test
+    public void retriesPostWhenConnectFails() throws Exception {
+        StubTransport transport = new StubTransport(new ConnectException(), response(200));
+        Response response = policy().build().execute(request(Method.POST_STRING), null, transport, false, null);
+        assertEquals(200, response.getStatusCode());
+        assertEquals(2, transport.requests.size());
+    }
+
+    @Test
+    public void stopsAtMaxAttempts() throws Exception {
+        StubTransport transport = new StubTransport(response(503), response(503), response(503), response(200));
+        Response response = policy().maxAttempts(3).build().execute(request(Method.GET), null, transport, false, null);
+        assertEquals(503, response.getStatusCode());
+        assertEquals(3, transport.requests.size());
+
+        ConnectException last = new ConnectException("last");
+        transport = new StubTransport(new ConnectException(), last);
+        try {
+            policy().maxAttempts(2).build().execute(request(Method.GET), null, transport, false, null);
+            fail();
+        } catch (ConnectException e) {
+            assertSame(last, e);
+        }
+    }
+
+    @Test
+    public void stopsWhenBudgetExhausted() throws Exception {
+        RetryBudget budget = new RetryBudget(0.001, 1);
+        RetryPolicy policy = policy().maxAttempts(5).budget(budget).build();
+        StubTransport transport = new StubTransport(response(503), response(503), response(503));
+        Response response = policy.execute(request(Method.GET), null, transport, false, null);
+        assertEquals(503, response.getStatusCode());
+        assertEquals(2, transport.requests.size());
+        assertEquals(1, budget.getAcquired());
+        assertEquals(1, budget.getExhausted());
+
+        ConnectException failure = new ConnectException();
+        transport = new StubTransport(failure);
+        try {
+            policy.execute(request(Method.GET), null, transport, false, null);
+            fail();
+        } catch (ConnectException e) {
+            assertSame(failure, e);
+        }
+        assertEquals(1, transport.requests.size());
+        assertEquals(2, budget.getExhausted());
+    }
+
+    @Test
+    public void waitsForRetryAfter() throws Exception {
+        StubTransport transport = new StubTransport(response(503, "Retry-After", "1"), response(200));
+        long start = System.nanoTime();
+        Response response = RetryPolicy.builder().backoff(0, 2000).budget(null).build()
+                .execute(request(Method.GET), null, transport, false, null);
+        long elapsedMillis = (System.nanoTime() - start) / 1000000;
+        assertEquals(200, response.getStatusCode());
+        assertEquals(2, transport.requests.size());
+        assertTrue("waited " + elapsedMillis + "ms", elapsedMillis >= 1000);
+    }
+
+    @Test
+    public void doesNotRetryWhenRetryAfterExceedsMaxDelay() throws Exception {
+        StubTransport transport = new StubTransport(response(503, "retry-after", "5"), response(200));
+        Response response = policy().build().execute(request(Method.GET), null, transport, false, null);
+        assertEquals(503, response.getStatusCode());
+        assertEquals(1, transport.requests.size());
+    }
+
+    @Test
+    public void backoffStaysWithinCeiling() {
+        RetryPolicy policy = RetryPolicy.builder().backoff(10, 50).build();
+        for (int i = 0; i < 100; i++) {
+            assertTrue(policy.backoffMillis(1) <= 10);
+            assertTrue(policy.backoffMillis(2) <= 20);
+            assertTrue(policy.backoffMillis(10) <= 50);
+            assertTrue(policy.backoffMillis(100) <= 50);
+        }
+    }
+}
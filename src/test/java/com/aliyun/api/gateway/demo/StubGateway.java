@@ -0,0 +1,233 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.aliyun.api.gateway.demo;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.lang.StringUtils;
+
+import com.aliyun.api.gateway.demo.constant.Constants;
+import com.aliyun.api.gateway.demo.constant.ContentType;
+import com.aliyun.api.gateway.demo.constant.HttpHeader;
+import com.aliyun.api.gateway.demo.constant.HttpSchema;
+import com.aliyun.api.gateway.demo.constant.SystemHeader;
+import com.aliyun.api.gateway.demo.util.HttpUtil;
+import com.aliyun.api.gateway.demo.util.MessageDigestUtil;
+import com.aliyun.api.gateway.demo.util.NonceStore;
+import com.aliyun.api.gateway.demo.util.SignatureVerifier;
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * 本地模拟网关,用于离线压测
+ * 监听127.0.0.1随机端口,按配置的延迟模拟后端处理时间;配置APP密钥后按网关规则校验X-Ca-Signature及Content-MD5
+ */
+public class StubGateway {
+
+    static {
+        //JDK内置HttpServer默认未开启TCP_NODELAY,小响应会被Nagle算法延迟约40ms
+        if (null == System.getProperty("sun.net.httpserver.nodelay")) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+    }
+
+    private final HttpServer server;
+
+    private final ExecutorService executor;
+
+    private final SignatureVerifier verifier;
+
+    private final SignatureVerifier nonceVerifier;
+
+    private final AtomicLong accepted = new AtomicLong();
+
+    private final AtomicLong rejected = new AtomicLong();
+
+    /**
+     * 不校验签名
+     *
+     * @param latencyMillis 每个请求的模拟处理时间,单位毫秒
+     * @throws IOException
+     */
+    public StubGateway(long latencyMillis) throws IOException {
+        this(latencyMillis, null, null);
+    }
+
+    /**
+     * @param latencyMillis 每个请求的模拟处理时间,单位毫秒
+     * @param appKey 允许的APP KEY,为null时不校验签名
+     * @param appSecret APP密钥
+     * @throws IOException
+     */
+    public StubGateway(final long latencyMillis, String appKey, String appSecret) throws IOException {
+        this.verifier = newVerifier(appKey, appSecret, null);
+        this.nonceVerifier = newVerifier(appKey, appSecret, new NonceStore());
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 1024);
+        executor = Executors.newCachedThreadPool();
+        server.setExecutor(executor);
+        server.createContext("/", new HttpHandler() {
+            public void handle(HttpExchange exchange) throws IOException {
+                try {
+                    byte[] requestBody = HttpUtil.readStreamAsBytes(exchange.getRequestBody(), -1);
+                    String error = verify(verifier, nonceVerifier, exchange.getRequestMethod(), exchange.getRequestURI(),
+                            exchange.getRequestHeaders(), requestBody);
+                    if (null != error) {
+                        rejected.incrementAndGet();
+                        exchange.getResponseHeaders().add("X-Ca-Error-Message", error);
+                        exchange.sendResponseHeaders(400, -1);
+                        return;
+                    }
+                    accepted.incrementAndGet();
+                    if (latencyMillis > 0) {
+                        Thread.sleep(latencyMillis);
+                    }
+                    byte[] body = "{\"success\":true}".getBytes(Constants.ENCODING);
+                    exchange.getResponseHeaders().add("Content-Type", "application/json");
+                    exchange.getResponseHeaders().add("X-Ca-Request-Id", "stub");
+                    exchange.sendResponseHeaders(200, body.length);
+                    OutputStream out = exchange.getResponseBody();
+                    out.write(body);
+                    out.close();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    exchange.close();
+                }
+            }
+        });
+        server.start();
+    }
+
+    /**
+     * 网关地址,如http://127.0.0.1:12345
+     *
+     * @return
+     */
+    public String getHost() {
+        return HttpSchema.HTTP + "127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    /**
+     * 校验通过的请求数
+     *
+     * @return
+     */
+    public long getAccepted() {
+        return accepted.get();
+    }
+
+    /**
+     * 校验失败的请求数
+     *
+     * @return
+     */
+    public long getRejected() {
+        return rejected.get();
+    }
+
+    public void stop() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    /**
+     * 创建只允许一个APP KEY的校验器
+     *
+     * @param appKey 为null时不校验签名,返回null
+     * @param appSecret
+     * @param nonceStore 不为null时同时拒绝缺失或重复的X-Ca-Nonce
+     * @return
+     */
+    static SignatureVerifier newVerifier(String appKey, String appSecret, NonceStore nonceStore) {
+        return null == appKey ? null : new SignatureVerifier(Collections.singletonMap(appKey, appSecret),
+                Constants.DEFAULT_TIMESTAMP_TOLERANCE, nonceStore);
+    }
+
+    /**
+     * 按网关规则校验Content-MD5及签名
+     * 与网关一致X-Ca-Nonce可选,带有Nonce的请求由nonceVerifier校验重放
+     *
+     * @param verifier 不校验Nonce的校验器,为null时不校验
+     * @param nonceVerifier 校验Nonce的校验器
+     * @param method
+     * @param uri
+     * @param requestHeaders
+     * @param body
+     * @return 校验失败原因,通过时返回null
+     * @throws IOException
+     */
+    static String verify(SignatureVerifier verifier, SignatureVerifier nonceVerifier, String method, URI uri,
+            Headers requestHeaders, byte[] body)
+            throws IOException {
+        if (null == verifier) {
+            return null;
+        }
+        String contentMD5 = requestHeaders.getFirst(HttpHeader.HTTP_HEADER_CONTENT_MD5);
+        if (null != contentMD5 && !contentMD5.equals(MessageDigestUtil.base64AndMD5(body))) {
+            return "Invalid Content-MD5";
+        }
+
+        Map<String, String> headers = new TreeMap<String, String>(String.CASE_INSENSITIVE_ORDER);
+        for (String name : requestHeaders.keySet()) {
+            headers.put(name, MessageDigestUtil.iso88591ToUtf8(requestHeaders.getFirst(name)));
+        }
+
+        Map<String, String> querys = parseParams(uri.getRawQuery());
+        Map<String, String> bodys = null;
+        String contentType = requestHeaders.getFirst(HttpHeader.HTTP_HEADER_CONTENT_TYPE);
+        if (null != contentType && contentType.startsWith(ContentType.CONTENT_TYPE_FORM.substring(0, ContentType.CONTENT_TYPE_FORM.indexOf(';')))) {
+            bodys = parseParams(new String(body, Constants.ENCODING));
+        }
+
+        if (headers.containsKey(SystemHeader.X_CA_NONCE)) {
+            verifier = nonceVerifier;
+        }
+        return verifier.verify(method, uri.getPath(), headers, querys, bodys).getErrorMessage();
+    }
+
+    private static Map<String, String> parseParams(String raw) throws IOException {
+        Map<String, String> params = new HashMap<String, String>();
+        if (StringUtils.isEmpty(raw)) {
+            return params;
+        }
+        for (String pair : raw.split(Constants.SPE3)) {
+            int index = pair.indexOf(Constants.SPE4);
+            if (index < 0) {
+                params.put(URLDecoder.decode(pair, Constants.ENCODING), null);
+            } else {
+                params.put(URLDecoder.decode(pair.substring(0, index), Constants.ENCODING),
+                        URLDecoder.decode(pair.substring(index + 1), Constants.ENCODING));
+            }
+        }
+        return params;
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.aliyun.api.gateway.demo.cache;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+import com.aliyun.api.gateway.demo.Response;
+
+public class CacheStorageTest {
+
+    private static final long NOW = 1700000000000L;
+
+    private static CachedResponse cached(byte[] body) {
+        Response response = new Response();
+        response.setStatusCode(200);
+        Map<String, String> headers = new HashMap<String, String>();
+        headers.put("Cache-Control", "max-age=60");
+        headers.put("ETag", "\"v1\"");
+        response.setHeaders(headers);
+        response.setBodyBytes(body);
+        return CachedResponse.of(response, NOW);
+    }
+
+    @Test
+    public void evictsEntriesWithEmptyBodies() {
+        long maxBytes = 64 * 1024;
+        HeapCacheStorage storage = new HeapCacheStorage(maxBytes);
+        for (int i = 0; i < 10000; i++) {
+            storage.put("key-" + i, cached(new byte[0]));
+        }
+        assertTrue(storage.getCount() < maxBytes / CacheStorage.ENTRY_OVERHEAD);
+        assertTrue(storage.getBytes() <= maxBytes);
+        assertNull(storage.get("key-0"));
+        assertNotNull(storage.get("key-9999"));
+    }
+
+    @Test
+    public void chargesKeyAndHeaders() {
+        HeapCacheStorage storage = new HeapCacheStorage(1024 * 1024);
+        CachedResponse response = cached(new byte[100]);
+        storage.put("key", response);
+        assertEquals(100 + CacheStorage.ENTRY_OVERHEAD + 2 * "key".length() + response.headerBytes(),
+                storage.getBytes());
+        storage.put("key", response);
+        assertEquals(1, storage.getCount());
+        storage.remove("key");
+        assertEquals(0, storage.getBytes());
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsed() {
+        long entry = 1000 + CacheStorage.ENTRY_OVERHEAD + 2 + cached(new byte[0]).headerBytes();
+        HeapCacheStorage storage = new HeapCacheStorage(entry * 2);
+        storage.put("a", cached(new byte[1000]));
+        storage.put("b", cached(new byte[1000]));
+        assertNotNull(storage.get("a"));
+        storage.put("c", cached(new byte[1000]));
+        assertNotNull(storage.get("a"));
+        assertNull(storage.get("b"));
+        assertNotNull(storage.get("c"));
+    }
+
+    @Test
+    public void skipsEntryLargerThanCapacity() {
+        HeapCacheStorage storage = new HeapCacheStorage(1024);
+        storage.put("key", cached(new byte[1024]));
+        assertEquals(0, storage.getCount());
+        assertEquals(0, storage.getBytes());
+    }
+
+    @Test
+    public void offHeapHitsReturnIndependentCopies() {
+        byte[] body = "hello".getBytes();
+        OffHeapCacheStorage storage = new OffHeapCacheStorage(1024 * 1024);
+        storage.put("key", cached(body));
+        Response first = storage.get("key").toResponse();
+        first.getBodyBytes()[0] = 'j';
+        assertArrayEquals(body, storage.get("key").toResponse().getBodyBytes());
+        assertArrayEquals("hello".getBytes(), body);
+    }
+}
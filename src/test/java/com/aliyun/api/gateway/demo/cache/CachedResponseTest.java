@@ -0,0 +1,142 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.aliyun.api.gateway.demo.cache;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.http.impl.cookie.DateUtils;
+import org.junit.Test;
+
+import com.aliyun.api.gateway.demo.Response;
+
+public class CachedResponseTest {
+
+    private static final long NOW = 1700000000000L;
+
+    private static Response response(int statusCode, String... headers) {
+        Response response = new Response();
+        response.setStatusCode(statusCode);
+        Map<String, String> map = new HashMap<String, String>();
+        for (int i = 0; i < headers.length; i += 2) {
+            map.put(headers[i], headers[i + 1]);
+        }
+        response.setHeaders(map);
+        response.setBodyBytes("body".getBytes());
+        return response;
+    }
+
+    private static String httpDate(long millis) {
+        return DateUtils.formatDate(new Date(millis));
+    }
+
+    @Test
+    public void maxAgeFreshThenExpired() {
+        CachedResponse cached = CachedResponse.of(response(200, "Cache-Control", "public, max-age=60"), NOW);
+        assertNotNull(cached);
+        assertEquals(NOW + 60000, cached.getExpiresAt());
+        assertTrue(cached.isFresh(NOW + 59999));
+        assertFalse(cached.isFresh(NOW + 60000));
+    }
+
+    @Test
+    public void ageIsSubtractedFromMaxAge() {
+        CachedResponse cached = CachedResponse.of(response(200, "Cache-Control", "max-age=60", "Age", "20"), NOW);
+        assertEquals(NOW + 40000, cached.getExpiresAt());
+    }
+
+    @Test
+    public void maxAgeTakesPrecedenceOverExpires() {
+        CachedResponse cached = CachedResponse.of(response(200, "Cache-Control", "max-age=10",
+                "Date", httpDate(NOW), "Expires", httpDate(NOW + 3600000)), NOW);
+        assertEquals(NOW + 10000, cached.getExpiresAt());
+    }
+
+    @Test
+    public void expiresIsRelativeToDate() {
+        //Date与本地时钟相差一小时,新鲜期仍按Expires-Date计算
+        CachedResponse cached = CachedResponse.of(response(200,
+                "Date", httpDate(NOW - 3600000), "Expires", httpDate(NOW - 3600000 + 30000)), NOW);
+        assertEquals(NOW + 30000, cached.getExpiresAt());
+    }
+
+    @Test
+    public void pastExpiresWithoutValidatorIsNotCached() {
+        assertNull(CachedResponse.of(response(200, "Date", httpDate(NOW), "Expires", httpDate(NOW - 1000)), NOW));
+        assertNull(CachedResponse.of(response(200, "Expires", "0"), NOW));
+    }
+
+    @Test
+    public void noCacheRequiresValidator() {
+        assertNull(CachedResponse.of(response(200, "Cache-Control", "no-cache"), NOW));
+        CachedResponse cached = CachedResponse.of(response(200, "Cache-Control", "no-cache, max-age=60",
+                "ETag", "\"v1\""), NOW);
+        assertNotNull(cached);
+        assertFalse(cached.isFresh(NOW));
+        assertTrue(cached.isRevalidatable());
+        assertEquals("\"v1\"", cached.getEtag());
+    }
+
+    @Test
+    public void noStoreIsNotCached() {
+        assertNull(CachedResponse.of(response(200, "Cache-Control", "max-age=60, no-store", "ETag", "\"v1\""), NOW));
+    }
+
+    @Test
+    public void onlyOkIsCached() {
+        assertNull(CachedResponse.of(response(404, "Cache-Control", "max-age=60"), NOW));
+        assertNull(CachedResponse.of(response(206, "Cache-Control", "max-age=60"), NOW));
+    }
+
+    @Test
+    public void revalidationMergesHeadersAndKeepsBody() {
+        CachedResponse cached = CachedResponse.of(response(200, "Cache-Control", "no-cache",
+                "ETag", "\"v1\"", "Content-Length", "4", "X-Ca-Request-Id", "first"), NOW);
+        CachedResponse revalidated = cached.revalidated(response(304, "cache-control", "max-age=30",
+                "X-Ca-Request-Id", "second", "Content-Length", "0"), NOW + 1000);
+        assertNotNull(revalidated);
+        assertTrue(revalidated.isFresh(NOW + 1000));
+        assertEquals(NOW + 31000, revalidated.getExpiresAt());
+        assertEquals("\"v1\"", revalidated.getEtag());
+
+        Response response = revalidated.toResponse();
+        assertEquals(200, response.getStatusCode());
+        assertEquals("second", response.getRequestId());
+        assertEquals("4", response.getHeader("Content-Length"));
+        assertEquals("max-age=30", CachedResponse.header(response.getHeaders(), "Cache-Control"));
+        assertArrayEquals("body".getBytes(), response.getBodyBytes());
+        assertFalse(cached.isFresh(NOW + 1000));
+    }
+
+    @Test
+    public void revalidationWithNoStoreDropsEntry() {
+        CachedResponse cached = CachedResponse.of(response(200, "Cache-Control", "max-age=1",
+                "Last-Modified", httpDate(NOW - 60000)), NOW);
+        assertTrue(cached.isRevalidatable());
+        assertNull(cached.revalidated(response(304, "Cache-Control", "no-store"), NOW + 2000));
+    }
+}
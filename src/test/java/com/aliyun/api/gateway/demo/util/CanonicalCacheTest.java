@@ -0,0 +1,203 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.aliyun.api.gateway.demo.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Test;
+
+import com.aliyun.api.gateway.demo.constant.SystemHeader;
+
+public class CanonicalCacheTest {
+
+    private static final String SECRET = "app-secret";
+
+    @After
+    public void disableCache() {
+        SignUtil.configureCanonicalCache(0, 0);
+    }
+
+    private static Map<String, String> map(String... pairs) {
+        Map<String, String> map = new HashMap<String, String>();
+        for (int i = 0; i < pairs.length; i += 2) {
+            map.put(pairs[i], pairs[i + 1]);
+        }
+        return map;
+    }
+
+    private static Map<String, String> headers() {
+        return map("Accept", "application/json", "X-Ca-Key", "app-key", "X-Ca-Timestamp", "1700000000000",
+                "a-header1", "v1", "b-header2", "v2");
+    }
+
+    private static List<String> prefixes(String... prefixes) {
+        return new ArrayList<String>(Arrays.asList(prefixes));
+    }
+
+    /**
+     * 待签名字符串、签名及X-Ca-Signature-Headers
+     */
+    private static List<String> sign(Map<String, String> headers, Map<String, String> querys, List<String> prefixes) {
+        Map<String, String> signHeaders = new HashMap<String, String>(headers);
+        SignBuffer buffer = SignBuffer.get();
+        SignUtil.buildStringToSign(buffer, "GET", "/api/items", signHeaders, querys, null, prefixes);
+        String stringToSign = buffer.stringToSign.toString();
+
+        Map<String, String> headersToSign = new HashMap<String, String>(headers);
+        String signature = SignUtil.sign(SECRET, "GET", "/api/items", headersToSign, querys, null, prefixes);
+        assertEquals(signHeaders, headersToSign);
+        return Arrays.asList(stringToSign, signature, headersToSign.get(SystemHeader.X_CA_SIGNATURE_HEADERS));
+    }
+
+    @Test
+    public void hitMatchesUncachedPath() {
+        Map<String, String> querys = map("b", "2", "a", "1", "c", "");
+        List<List<String>> prefixLists = Arrays.asList(prefixes("a-header1"), prefixes(), null);
+        Map<String, String> changed = headers();
+        changed.put("X-Ca-Timestamp", "1700000009999");
+        changed.put("a-header1", "changed");
+        List<List<String>> expected = new ArrayList<List<String>>();
+        for (List<String> prefixes : prefixLists) {
+            expected.add(sign(headers(), querys, prefixes));
+        }
+        List<String> expectedChanged = sign(changed, querys, prefixes("a-header1"));
+
+        SignUtil.configureCanonicalCache(100, 0);
+        CanonicalCache cache = SignUtil.getCanonicalCache();
+        for (int i = 0; i < prefixLists.size(); i++) {
+            long hits = cache.getHits();
+            assertEquals(expected.get(i), sign(headers(), querys, prefixLists.get(i)));
+            assertEquals(expected.get(i), sign(headers(), querys, prefixLists.get(i)));
+            //首次未命中,之后均命中
+            assertEquals(hits + 3, cache.getHits());
+        }
+        assertEquals(3, cache.size());
+        assertEquals(3, cache.getMisses());
+
+        //命中时仍使用本次请求的Header值
+        assertEquals(expectedChanged, sign(changed, querys, prefixes("a-header1")));
+        assertEquals(3, cache.getMisses());
+    }
+
+    @Test
+    public void differentInputsUseDifferentKeys() {
+        Map<String, String> querys = map("a", "1");
+        Map<String, String> otherQuery = map("a", "2");
+        Map<String, String> moreHeaders = headers();
+        moreHeaders.put("X-Ca-Stage", "RELEASE");
+        List<String> expectedQuery = sign(headers(), otherQuery, prefixes("a-header1"));
+        List<String> expectedHeaders = sign(moreHeaders, querys, prefixes("a-header1"));
+        List<String> expectedPrefixes = sign(headers(), querys, prefixes("a-header1", "b-header2"));
+        List<String> expectedNone = sign(headers(), querys, null);
+
+        SignUtil.configureCanonicalCache(100, 0);
+        CanonicalCache cache = SignUtil.getCanonicalCache();
+        sign(headers(), querys, prefixes("a-header1"));
+        assertEquals(1, cache.size());
+
+        //Query值不同
+        assertEquals(expectedQuery, sign(headers(), otherQuery, prefixes("a-header1")));
+        assertEquals(2, cache.size());
+
+        //Header名称集合不同
+        List<String> result = sign(moreHeaders, querys, prefixes("a-header1"));
+        assertEquals(expectedHeaders, result);
+        assertEquals("X-Ca-Key,X-Ca-Stage,X-Ca-Timestamp,a-header1", result.get(2));
+        assertEquals(3, cache.size());
+
+        //签名Header前缀不同
+        List<String> both = sign(headers(), querys, prefixes("a-header1", "b-header2"));
+        assertEquals(expectedPrefixes, both);
+        assertEquals("X-Ca-Key,X-Ca-Timestamp,a-header1,b-header2", both.get(2));
+        assertEquals(4, cache.size());
+        List<String> none = sign(headers(), querys, null);
+        assertEquals(expectedNone, none);
+        assertNull(none.get(2));
+        assertEquals(5, cache.size());
+        assertEquals(5, cache.getMisses());
+    }
+
+    private static CanonicalCache.Key key(String path) {
+        return new CanonicalCache.Key().set("GET", path, null, null, null);
+    }
+
+    private static CanonicalCache.Entry entry() {
+        return new CanonicalCache.Entry(new String[0], null, "/path");
+    }
+
+    @Test
+    public void expiresAfterTtl() throws InterruptedException {
+        CanonicalCache cache = new CanonicalCache(100, 50);
+        CanonicalCache.Entry entry = entry();
+        cache.put(key("/a"), entry);
+        assertSame(entry, cache.get(key("/a")));
+        Thread.sleep(100);
+        assertNull(cache.get(key("/a")));
+        assertEquals(0, cache.size());
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsedPerStripe() {
+        //不足两段的最小容量时只有一段
+        CanonicalCache cache = new CanonicalCache(16, 0);
+        for (int i = 0; i < 16; i++) {
+            cache.put(key("/" + i), entry());
+        }
+        assertNotNull(cache.get(key("/0")));
+        cache.put(key("/16"), entry());
+        assertEquals(16, cache.size());
+        assertNotNull(cache.get(key("/0")));
+        assertNull(cache.get(key("/1")));
+        assertNotNull(cache.get(key("/16")));
+    }
+
+    @Test
+    public void stripesBoundTotalSize() {
+        CanonicalCache cache = new CanonicalCache(64, 0);
+        for (int i = 0; i < 1000; i++) {
+            cache.put(key("/" + i), entry());
+            assertTrue(cache.size() <= 64);
+        }
+        //最近放入的一定还在所在的段中
+        assertNotNull(cache.get(key("/999")));
+        assertTrue(cache.size() >= 16);
+    }
+
+    @Test
+    public void disabledCacheStoresNothing() {
+        assertFalse(SignUtil.getCanonicalCache().isEnabled());
+        sign(headers(), map("a", "1"), prefixes("a-header1"));
+        assertEquals(0, SignUtil.getCanonicalCache().size());
+        assertEquals(0, SignUtil.getCanonicalCache().getMisses());
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.aliyun.api.gateway.demo.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.http.client.methods.HttpGet;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.aliyun.api.gateway.demo.JsonArrayIterator;
+import com.aliyun.api.gateway.demo.Response;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+public class HttpUtilStreamingTest {
+
+    //远大于Socket缓冲区,未读完的Body无法一次写完
+    private static final int COUNT = 2000000;
+
+    private HttpServer server;
+
+    //服务端写完整个Body
+    private final AtomicBoolean completed = new AtomicBoolean();
+
+    @Before
+    public void start() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", new HttpHandler() {
+            public void handle(HttpExchange exchange) throws IOException {
+                boolean small = exchange.getRequestURI().getPath().equals("/small");
+                int count = small ? 3 : COUNT;
+                byte[] element = "{\"i\":1},".getBytes("UTF-8");
+                exchange.getResponseHeaders().set("Content-Type", "application/json");
+                //"[" + count个元素 - 最后一个逗号 + "]\n"
+                exchange.sendResponseHeaders(200, (long) count * element.length + 2);
+                OutputStream out = exchange.getResponseBody();
+                try {
+                    out.write('[');
+                    for (int i = 0; i < count; i++) {
+                        out.write(element, 0, i == count - 1 ? element.length - 1 : element.length);
+                    }
+                    out.write("]\n".getBytes("UTF-8"));
+                    out.close();
+                    completed.set(true);
+                } catch (IOException e) {
+                    //客户端中断
+                }
+                exchange.close();
+            }
+        });
+        server.start();
+    }
+
+    @After
+    public void stop() {
+        server.stop(0);
+    }
+
+    private HttpGet get(String path) {
+        return new HttpGet("http://127.0.0.1:" + server.getAddress().getPort() + path);
+    }
+
+    @Test(timeout = 30000)
+    public void earlyIteratorCloseAbortsRequest() throws Exception {
+        HttpGet request = get("/large");
+        Response response = HttpUtil.executeStreaming(request, 5000);
+        JsonArrayIterator<Map> it = response.iterateArray(Map.class);
+        assertEquals(1, it.next().get("i"));
+        assertFalse(request.isAborted());
+        it.close();
+        assertTrue(request.isAborted());
+        assertFalse(completed.get());
+    }
+
+    @Test(timeout = 30000)
+    public void earlyResponseCloseAbortsRequest() throws Exception {
+        HttpGet request = get("/large");
+        Response response = HttpUtil.executeStreaming(request, 5000);
+        assertEquals('[', response.getBodyStream().read());
+        response.close();
+        assertTrue(request.isAborted());
+        assertFalse(completed.get());
+    }
+
+    @Test(timeout = 30000)
+    public void fullyReadBodyReleasesConnection() throws Exception {
+        for (int i = 0; i < 3; i++) {
+            HttpGet request = get("/small");
+            JsonArrayIterator<Map> it = HttpUtil.executeStreaming(request, 5000).iterateArray(Map.class);
+            int count = 0;
+            while (it.hasNext()) {
+                it.next();
+                count++;
+            }
+            assertEquals(3, count);
+            assertFalse(request.isAborted());
+        }
+    }
+}
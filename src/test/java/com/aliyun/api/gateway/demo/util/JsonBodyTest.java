@@ -0,0 +1,131 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.aliyun.api.gateway.demo.util;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import com.alibaba.fastjson.JSON;
+import com.aliyun.api.gateway.demo.constant.Constants;
+
+public class JsonBodyTest {
+
+    private static final Charset UTF8 = Charset.forName(Constants.ENCODING);
+
+    public static class Item {
+        private String name;
+
+        private int count;
+
+        private List<String> tags;
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+
+        public int getCount() {
+            return count;
+        }
+
+        public void setCount(int count) {
+            this.count = count;
+        }
+
+        public List<String> getTags() {
+            return tags;
+        }
+
+        public void setTags(List<String> tags) {
+            this.tags = tags;
+        }
+    }
+
+    private static void assertMatchesTwoPass(Object value) {
+        JsonBody body = JsonBody.of(value);
+        byte[] expected = JSON.toJSONString(value).getBytes(UTF8);
+        assertArrayEquals(expected, body.getBytes());
+        assertEquals(expected.length, body.getLength());
+        assertEquals(MessageDigestUtil.base64AndMD5(body.getBytes()), body.getContentMD5());
+        assertEquals(MessageDigestUtil.base64AndMD5(JSON.toJSONString(value)), body.getContentMD5());
+    }
+
+    @Test
+    public void matchesToJsonStringAndMd5() {
+        Map<String, Object> map = new LinkedHashMap<String, Object>();
+        map.put("name", "中文 value");
+        map.put("emoji", "😀");
+        map.put("escaped", "quote\" backslash\\ newline\n tab\t \u0001");
+        map.put("number", 12345678901L);
+        map.put("decimal", 1.5);
+        map.put("flag", Boolean.TRUE);
+        map.put("list", Arrays.asList(1, "two", null));
+        assertMatchesTwoPass(map);
+
+        Item item = new Item();
+        item.setName("商品");
+        item.setCount(3);
+        item.setTags(Arrays.asList("a", "b"));
+        assertMatchesTwoPass(item);
+        assertMatchesTwoPass(Arrays.asList(item, item));
+
+        assertMatchesTwoPass("plain string");
+        assertMatchesTwoPass(42);
+        assertMatchesTwoPass(new ArrayList<Object>());
+        assertMatchesTwoPass(new LinkedHashMap<String, Object>());
+    }
+
+    @Test
+    public void largeBodyMatches() {
+        //超过fastjson单次缓冲的内容
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 200000; i++) {
+            text.append((char) ('a' + i % 26));
+            if (i % 1000 == 0) {
+                text.append("中");
+            }
+        }
+        List<Map<String, Object>> items = new ArrayList<Map<String, Object>>();
+        for (int i = 0; i < 2000; i++) {
+            Map<String, Object> entry = new LinkedHashMap<String, Object>();
+            entry.put("id", i);
+            entry.put("value", "值" + i);
+            items.add(entry);
+        }
+        assertMatchesTwoPass(text.toString());
+        assertMatchesTwoPass(items);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsNull() {
+        JsonBody.of(null);
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.aliyun.api.gateway.demo.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import com.aliyun.api.gateway.demo.constant.Constants;
+
+public class NonceStoreTest {
+
+    private static final long WINDOW = 1000;
+
+    private static final long BUCKET = 100;
+
+    private static final long NOW = 1000000;
+
+    private final NonceStore store = new NonceStore(WINDOW, BUCKET, 4);
+
+    @Test
+    public void detectsReplay() {
+        assertTrue(store.add("a", NOW));
+        assertTrue(store.add("b", NOW));
+        assertFalse(store.add("a", NOW));
+        assertFalse(store.add("a", NOW + BUCKET));
+        assertEquals(2, store.getReplays());
+        assertEquals(2, store.size(NOW));
+    }
+
+    @Test
+    public void keepsNonceForWholeWindow() {
+        assertTrue(store.add("a", NOW));
+        assertFalse(store.add("a", NOW + WINDOW - 1));
+        assertFalse(store.add("a", NOW + WINDOW + BUCKET - 1));
+    }
+
+    @Test
+    public void expiresNonceAfterWindow() {
+        assertTrue(store.add("a", NOW));
+        assertEquals(1, store.size(NOW + WINDOW));
+        assertEquals(0, store.size(NOW + WINDOW + BUCKET));
+        assertTrue(store.add("a", NOW + WINDOW + BUCKET));
+        assertEquals(0, store.getReplays());
+    }
+
+    @Test
+    public void clockGoingBackDoesNotExpireNewerNonces() {
+        assertTrue(store.add("a", NOW));
+        assertTrue(store.add("b", NOW - WINDOW * 10));
+        assertFalse(store.add("a", NOW));
+    }
+
+    @Test
+    public void growsBeyondInitialCapacity() {
+        int count = 10000;
+        for (int i = 0; i < count; i++) {
+            assertTrue(store.add("nonce-" + i, NOW));
+        }
+        for (int i = 0; i < count; i++) {
+            assertFalse(store.add("nonce-" + i, NOW + WINDOW - 1));
+        }
+        assertEquals(count, store.size(NOW));
+        assertEquals(count, store.getReplays());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsBucketLongerThanWindow() {
+        new NonceStore(WINDOW, WINDOW + 1, 4);
+    }
+
+    @Test
+    public void defaultWindowCoversFutureDatedReplay() {
+        //时间戳比当前时间晚tolerance的请求,直到首次出现后2*tolerance都能通过时间戳校验
+        long tolerance = Constants.DEFAULT_TIMESTAMP_TOLERANCE;
+        long timestamp = NOW + tolerance;
+        long lastAccepted = timestamp + tolerance;
+        NonceStore defaults = new NonceStore();
+        assertTrue(defaults.add("future", NOW));
+        assertTrue(Math.abs(lastAccepted - timestamp) <= tolerance);
+        assertFalse(defaults.add("future", lastAccepted));
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.aliyun.api.gateway.demo.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.regex.Pattern;
+
+import org.junit.Test;
+
+public class NonceUtilTest {
+
+    private static final Pattern UUID_FORMAT =
+            Pattern.compile("[0-9a-f]{8}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{12}");
+
+    private static void assertUuidShaped(String nonce) {
+        assertTrue(nonce, UUID_FORMAT.matcher(nonce).matches());
+        assertEquals(nonce, UUID.fromString(nonce).toString());
+    }
+
+    @Test
+    public void nonceIsUuidShaped() {
+        String first = NonceUtil.newNonce();
+        String second = NonceUtil.newNonce();
+        assertUuidShaped(first);
+        assertUuidShaped(second);
+        //同一进程共用随机前缀
+        assertEquals(first.substring(0, 19), second.substring(0, 19));
+        assertFalse(first.equals(second));
+    }
+
+    @Test
+    public void uniqueAcrossSequenceBlocks() {
+        int count = 3 * NonceUtil.SEQUENCE_BLOCK + 10;
+        Set<String> nonces = new HashSet<String>(count * 2);
+        for (int i = 0; i < count; i++) {
+            String nonce = NonceUtil.newNonce();
+            assertTrue(nonce, nonces.add(nonce));
+        }
+        for (String nonce : nonces) {
+            assertEquals(36, nonce.length());
+        }
+        assertUuidShaped(NonceUtil.newNonce());
+    }
+
+    @Test(timeout = 30000)
+    public void uniqueAcrossThreads() throws Exception {
+        int threads = 8;
+        final int perThread = NonceUtil.SEQUENCE_BLOCK + 1000;
+        final CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<List<String>>> futures = new ArrayList<Future<List<String>>>();
+            for (int t = 0; t < threads; t++) {
+                futures.add(executor.submit(new Callable<List<String>>() {
+                    public List<String> call() throws Exception {
+                        start.await();
+                        List<String> nonces = new ArrayList<String>(perThread);
+                        for (int i = 0; i < perThread; i++) {
+                            nonces.add(NonceUtil.newNonce());
+                        }
+                        return nonces;
+                    }
+                }));
+            }
+            start.countDown();
+            Set<String> all = new HashSet<String>(threads * perThread * 2);
+            for (Future<List<String>> future : futures) {
+                for (String nonce : future.get()) {
+                    assertTrue(nonce, all.add(nonce));
+                }
+            }
+            assertEquals(threads * perThread, all.size());
+            for (String nonce : all) {
+                assertTrue(nonce, UUID_FORMAT.matcher(nonce).matches());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void timestampIsCurrentMillis() {
+        long before = System.currentTimeMillis();
+        long timestamp = Long.parseLong(NonceUtil.currentTimestamp());
+        long after = System.currentTimeMillis();
+        assertTrue(timestamp >= before && timestamp <= after);
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.aliyun.api.gateway.demo.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+import com.aliyun.api.gateway.demo.Request;
+import com.aliyun.api.gateway.demo.constant.SystemHeader;
+import com.aliyun.api.gateway.demo.enums.Method;
+
+public class RequestKeyTest {
+
+    private static Request get(Map<String, String> querys, Map<String, String> headers) {
+        Request request = new Request(Method.GET, "http://host", "/p", "key", "secret", 1000);
+        request.setQuerys(querys);
+        request.setHeaders(headers);
+        return request;
+    }
+
+    private static Map<String, String> map(String... pairs) {
+        Map<String, String> map = new LinkedHashMap<String, String>();
+        for (int i = 0; i < pairs.length; i += 2) {
+            map.put(pairs[i], pairs[i + 1]);
+        }
+        return map;
+    }
+
+    @Test
+    public void queryAndHeaderDoNotCollide() {
+        String query = RequestKey.of(get(map("id", "1"), null));
+        String header = RequestKey.of(get(null, map("id", "1")));
+        assertFalse(query.equals(header));
+    }
+
+    @Test
+    public void separatorsInValuesDoNotCollide() {
+        String one = RequestKey.of(get(map("a", "1, b=2"), null));
+        String two = RequestKey.of(get(map("a", "1", "b", "2"), null));
+        assertFalse(one.equals(two));
+    }
+
+    @Test
+    public void hostAndPathBoundaryDoesNotCollide() {
+        Request a = new Request(Method.GET, "http://host/a", "/b", "key", "secret", 1000);
+        Request b = new Request(Method.GET, "http://host", "/a/b", "key", "secret", 1000);
+        assertFalse(RequestKey.of(a).equals(RequestKey.of(b)));
+    }
+
+    @Test
+    public void orderAndSignatureHeadersIgnored() {
+        Map<String, String> headers = map("b", "2", "a", "1");
+        Map<String, String> signed = map("a", "1", "b", "2", SystemHeader.X_CA_TIMESTAMP, "1",
+                SystemHeader.X_CA_NONCE, "n", SystemHeader.X_CA_SIGNATURE, "s");
+        assertEquals(RequestKey.of(get(map("y", "2", "x", "1"), headers)),
+                RequestKey.of(get(map("x", "1", "y", "2"), signed)));
+    }
+
+    @Test
+    public void nullNamesAndValuesAllowed() {
+        Map<String, String> querys = new HashMap<String, String>();
+        querys.put(null, "v");
+        querys.put("flag", null);
+        String key = RequestKey.of(get(querys, null));
+        assertFalse(key.equals(RequestKey.of(get(map("flag", "v"), null))));
+    }
+}
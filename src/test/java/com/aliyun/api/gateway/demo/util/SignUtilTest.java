@@ -0,0 +1,116 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.aliyun.api.gateway.demo.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import com.aliyun.api.gateway.demo.constant.SystemHeader;
+
+/**
+ * 期望值由优化前的SignUtil(每次新建Mac、commons-codec Base64)对相同输入计算得到
+ */
+public class SignUtilTest {
+
+    private static final String SECRET = "app-secret";
+
+    private static Map<String, String> map(String... pairs) {
+        Map<String, String> map = new HashMap<String, String>();
+        for (int i = 0; i < pairs.length; i += 2) {
+            map.put(pairs[i], pairs[i + 1]);
+        }
+        return map;
+    }
+
+    private static Map<String, String> headers() {
+        return map("Accept", "application/json", "Date", "Mon, 01 Jan 2024 00:00:00 GMT", "X-Ca-Key", "app-key",
+                "X-Ca-Timestamp", "1700000000000", "X-Ca-Nonce", "2b1f4c1e-0000-4000-8000-000000000001",
+                "a-header1", "v1", "b-header2", "v2", "c-header3", "");
+    }
+
+    private static List<String> prefixes(String... prefixes) {
+        return new ArrayList<String>(Arrays.asList(prefixes));
+    }
+
+    @Test
+    public void get() {
+        Map<String, String> headers = headers();
+        String signature = SignUtil.sign(SECRET, "GET", "/api/v1/items", headers,
+                map("b", "2", "a", "1", "c", "", "", "blank"), null, prefixes("a-header1", "c-header3"));
+        assertEquals("Oa/N1vrWEM8BeOrtSPT20RZePE/7lGIBDQGc5gP0c9Y=", signature);
+        assertEquals("X-Ca-Key,X-Ca-Nonce,X-Ca-Timestamp,a-header1,c-header3",
+                headers.get(SystemHeader.X_CA_SIGNATURE_HEADERS));
+    }
+
+    @Test
+    public void formPost() {
+        Map<String, String> headers = headers();
+        headers.put("Content-Type", "application/x-www-form-urlencoded; charset=UTF-8");
+        String signature = SignUtil.sign(SECRET, "post", "/api/v1/form", headers, map("q", "1"),
+                map("name", "中文 value", "x", "a&b=c"), prefixes("a-header1"));
+        assertEquals("83DrRL8vcpOh1C5WDYwqqZLu1M9nDNBHHiUYWOxnlLM=", signature);
+        assertEquals("X-Ca-Key,X-Ca-Nonce,X-Ca-Timestamp,a-header1", headers.get(SystemHeader.X_CA_SIGNATURE_HEADERS));
+    }
+
+    @Test
+    public void queryAndBodyMerge() {
+        Map<String, String> headers = headers();
+        headers.put("Content-Type", "application/x-www-form-urlencoded; charset=UTF-8");
+        headers.put("Content-MD5", "XrY7u+Ae7tCTyyK7j1rNww==");
+        String signature = SignUtil.sign(SECRET, "PUT", "/api/v1/merge", headers, map("k", "query", "z", "1", "e", ""),
+                map("k", "body", "a", null, "", "blank"), prefixes());
+        assertEquals("uCbU18251/rcV6v7dbUu/5kRtYW0eRIoqUcb0XoiNt8=", signature);
+        assertEquals("X-Ca-Key,X-Ca-Nonce,X-Ca-Timestamp", headers.get(SystemHeader.X_CA_SIGNATURE_HEADERS));
+    }
+
+    @Test
+    public void withoutSignHeaderPrefixList() {
+        Map<String, String> headers = headers();
+        assertEquals("ri8ItHq16E40zhHz0zxYP0RV7oU8OGn9su1rOnvGVHk=",
+                SignUtil.sign(SECRET, "DELETE", "/api/v1/x", headers, null, null, null));
+        assertNull(headers.get(SystemHeader.X_CA_SIGNATURE_HEADERS));
+        assertEquals("oEA49qVNIBZbxJoqlOK59X+OVz3ZBfAHMMeP3QuOq4k=",
+                SignUtil.sign(SECRET, "GET", "/", null, map("q", "v"), null, null));
+    }
+
+    @Test
+    public void presortedHeadersMatchGenericPath() {
+        Map<String, String> headers = headers();
+        List<String> prefixes = prefixes("a-header1", "c-header3");
+        String[] names = SignUtil.selectHeadersToSign(headers.keySet(), prefixes);
+        Map<String, String> querys = map("b", "2", "a", "1", "c", "", "", "blank");
+        assertEquals("Oa/N1vrWEM8BeOrtSPT20RZePE/7lGIBDQGc5gP0c9Y=",
+                SignUtil.sign(SignUtil.getSigner(SECRET), "GET", "/api/v1/items", headers, querys, null, names));
+    }
+
+    @Test
+    public void doesNotModifyPrefixList() {
+        List<String> prefixes = prefixes("b", "a", "Accept");
+        SignUtil.sign(SECRET, "GET", "/", headers(), null, null, prefixes);
+        assertEquals(Arrays.asList("b", "a", "Accept"), prefixes);
+    }
+}
@@ -0,0 +1,222 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.aliyun.api.gateway.demo.util;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.junit.Test;
+
+import com.aliyun.api.gateway.demo.constant.SystemHeader;
+import com.aliyun.api.gateway.demo.enums.VerifyResult;
+
+public class SignatureVerifierTest {
+
+    private static final String APP_KEY = "key";
+
+    private static final String APP_SECRET = "secret";
+
+    private final SignatureVerifier verifier = new SignatureVerifier(Collections.singletonMap(APP_KEY, APP_SECRET));
+
+    private static Map<String, String> querys() {
+        Map<String, String> querys = new HashMap<String, String>();
+        querys.put("b", "2");
+        querys.put("a", "1");
+        return querys;
+    }
+
+    /**
+     * 按客户端发送时的方式生成Header并签名
+     */
+    private static Map<String, String> signedHeaders(long timestamp, String nonce, Map<String, String> querys,
+            Map<String, String> bodys) {
+        Map<String, String> headers = new HashMap<String, String>();
+        headers.put("Accept", "application/json");
+        headers.put("a-header", "v");
+        headers.put(SystemHeader.X_CA_KEY, APP_KEY);
+        headers.put(SystemHeader.X_CA_TIMESTAMP, String.valueOf(timestamp));
+        if (null != nonce) {
+            headers.put(SystemHeader.X_CA_NONCE, nonce);
+        }
+        List<String> prefixes = new ArrayList<String>(Arrays.asList("a-header", SystemHeader.X_CA_NONCE));
+        headers.put(SystemHeader.X_CA_SIGNATURE,
+                SignUtil.sign(APP_SECRET, "POST", "/p", headers, querys, bodys, prefixes));
+        return headers;
+    }
+
+    /**
+     * 未设置signHeaderPrefixList,X-Ca-Timestamp及X-Ca-Nonce均不参与签名
+     */
+    private static Map<String, String> unsignedSystemHeaders(String nonce, Map<String, String> querys) {
+        Map<String, String> headers = new HashMap<String, String>();
+        headers.put(SystemHeader.X_CA_KEY, APP_KEY);
+        headers.put(SystemHeader.X_CA_TIMESTAMP, String.valueOf(System.currentTimeMillis()));
+        headers.put(SystemHeader.X_CA_NONCE, nonce);
+        headers.put(SystemHeader.X_CA_SIGNATURE, SignUtil.sign(APP_SECRET, "POST", "/p", headers, querys, null, null));
+        return headers;
+    }
+
+    private static Map<String, String> signedHeaders(Map<String, String> querys) {
+        return signedHeaders(System.currentTimeMillis(), null, querys, null);
+    }
+
+    @Test
+    public void acceptsSignedRequest() {
+        Map<String, String> querys = querys();
+        assertEquals(VerifyResult.OK, verifier.verify("POST", "/p", signedHeaders(querys), querys, null));
+    }
+
+    @Test
+    public void acceptsSignedFormRequest() {
+        Map<String, String> querys = querys();
+        Map<String, String> bodys = Collections.singletonMap("f", "x");
+        Map<String, String> headers = signedHeaders(System.currentTimeMillis(), null, querys, bodys);
+        assertEquals(VerifyResult.OK, verifier.verify("POST", "/p", headers, querys, bodys));
+    }
+
+    @Test
+    public void acceptsLowerCaseHeaderNames() {
+        Map<String, String> querys = querys();
+        Map<String, String> lower = new TreeMap<String, String>(String.CASE_INSENSITIVE_ORDER);
+        for (Map.Entry<String, String> entry : signedHeaders(querys).entrySet()) {
+            lower.put(entry.getKey().toLowerCase(), entry.getValue());
+        }
+        assertEquals(VerifyResult.OK, verifier.verify("POST", "/p", lower, querys, null));
+    }
+
+    @Test
+    public void rejectsTamperedRequest() {
+        Map<String, String> querys = querys();
+        Map<String, String> headers = signedHeaders(querys);
+
+        assertEquals(VerifyResult.INVALID_SIGNATURE, verifier.verify("GET", "/p", headers, querys, null));
+        assertEquals(VerifyResult.INVALID_SIGNATURE, verifier.verify("POST", "/q", headers, querys, null));
+
+        Map<String, String> tamperedQuerys = querys();
+        tamperedQuerys.put("a", "x");
+        assertEquals(VerifyResult.INVALID_SIGNATURE, verifier.verify("POST", "/p", headers, tamperedQuerys, null));
+
+        Map<String, String> tamperedHeaders = new HashMap<String, String>(headers);
+        tamperedHeaders.put("a-header", "x");
+        assertEquals(VerifyResult.INVALID_SIGNATURE, verifier.verify("POST", "/p", tamperedHeaders, querys, null));
+
+        Map<String, String> tamperedBodys = Collections.singletonMap("f", "x");
+        assertEquals(VerifyResult.INVALID_SIGNATURE, verifier.verify("POST", "/p", headers, querys, tamperedBodys));
+    }
+
+    @Test
+    public void rejectsUnknownAppKey() {
+        Map<String, String> querys = querys();
+        Map<String, String> headers = signedHeaders(querys);
+        headers.put(SystemHeader.X_CA_KEY, "other");
+        assertEquals(VerifyResult.INVALID_APP_KEY, verifier.verify("POST", "/p", headers, querys, null));
+
+        headers.remove(SystemHeader.X_CA_KEY);
+        assertEquals(VerifyResult.INVALID_APP_KEY, verifier.verify("POST", "/p", headers, querys, null));
+        assertEquals(VerifyResult.INVALID_APP_KEY, verifier.verify("POST", "/p", null, querys, null));
+    }
+
+    @Test
+    public void rejectsMissingSignature() {
+        Map<String, String> querys = querys();
+        Map<String, String> headers = signedHeaders(querys);
+        headers.remove(SystemHeader.X_CA_SIGNATURE);
+        assertEquals(VerifyResult.MISSING_SIGNATURE, verifier.verify("POST", "/p", headers, querys, null));
+    }
+
+    @Test
+    public void rejectsBadTimestamp() {
+        Map<String, String> querys = querys();
+        long expired = System.currentTimeMillis() - 20 * 60 * 1000;
+        assertEquals(VerifyResult.EXPIRED_TIMESTAMP,
+                verifier.verify("POST", "/p", signedHeaders(expired, null, querys, null), querys, null));
+
+        Map<String, String> headers = signedHeaders(querys);
+        headers.put(SystemHeader.X_CA_TIMESTAMP, "now");
+        assertEquals(VerifyResult.INVALID_TIMESTAMP, verifier.verify("POST", "/p", headers, querys, null));
+        headers.remove(SystemHeader.X_CA_TIMESTAMP);
+        assertEquals(VerifyResult.INVALID_TIMESTAMP, verifier.verify("POST", "/p", headers, querys, null));
+    }
+
+    @Test
+    public void skipsTimestampCheckWithoutTolerance() {
+        SignatureVerifier lenient = new SignatureVerifier(Collections.singletonMap(APP_KEY, APP_SECRET), 0);
+        Map<String, String> querys = querys();
+        Map<String, String> headers = signedHeaders(0, null, querys, null);
+        assertEquals(VerifyResult.OK, lenient.verify("POST", "/p", headers, querys, null));
+    }
+
+    @Test
+    public void rejectsReplayedAndMissingNonce() {
+        NonceStore store = new NonceStore();
+        SignatureVerifier withNonces = new SignatureVerifier(Collections.singletonMap(APP_KEY, APP_SECRET),
+                15 * 60 * 1000, store);
+        Map<String, String> querys = querys();
+        Map<String, String> headers = signedHeaders(System.currentTimeMillis(), NonceUtil.newNonce(), querys, null);
+
+        assertEquals(VerifyResult.OK, withNonces.verify("POST", "/p", headers, querys, null));
+        assertEquals(VerifyResult.NONCE_USED, withNonces.verify("POST", "/p", headers, querys, null));
+        assertEquals(VerifyResult.MISSING_NONCE, withNonces.verify("POST", "/p", signedHeaders(querys), querys, null));
+        assertEquals(1, store.getReplays());
+    }
+
+    @Test
+    public void forgedRequestDoesNotConsumeNonce() {
+        SignatureVerifier withNonces = new SignatureVerifier(Collections.singletonMap(APP_KEY, APP_SECRET),
+                15 * 60 * 1000, new NonceStore());
+        Map<String, String> querys = querys();
+        Map<String, String> headers = signedHeaders(System.currentTimeMillis(), NonceUtil.newNonce(), querys, null);
+        Map<String, String> forged = new HashMap<String, String>(headers);
+        forged.put(SystemHeader.X_CA_SIGNATURE, "forged");
+
+        assertEquals(VerifyResult.INVALID_SIGNATURE, withNonces.verify("POST", "/p", forged, querys, null));
+        assertEquals(VerifyResult.OK, withNonces.verify("POST", "/p", headers, querys, null));
+    }
+
+    @Test
+    public void rejectsUnsignedTimestamp() {
+        Map<String, String> querys = querys();
+        Map<String, String> headers = unsignedSystemHeaders(NonceUtil.newNonce(), querys);
+        assertEquals(VerifyResult.UNSIGNED_TIMESTAMP, verifier.verify("POST", "/p", headers, querys, null));
+
+        SignatureVerifier lenient = new SignatureVerifier(Collections.singletonMap(APP_KEY, APP_SECRET), 0);
+        headers.put(SystemHeader.X_CA_TIMESTAMP, "0");
+        assertEquals(VerifyResult.OK, lenient.verify("POST", "/p", headers, querys, null));
+    }
+
+    @Test
+    public void rejectsUnsignedNonce() {
+        SignatureVerifier withNonces = new SignatureVerifier(Collections.singletonMap(APP_KEY, APP_SECRET), 0,
+                new NonceStore());
+        Map<String, String> querys = querys();
+        Map<String, String> headers = unsignedSystemHeaders(NonceUtil.newNonce(), querys);
+        assertEquals(VerifyResult.UNSIGNED_NONCE, withNonces.verify("POST", "/p", headers, querys, null));
+
+        //换用新的Nonce重放同样被拒绝
+        headers.put(SystemHeader.X_CA_NONCE, NonceUtil.newNonce());
+        assertEquals(VerifyResult.UNSIGNED_NONCE, withNonces.verify("POST", "/p", headers, querys, null));
+    }
+}
@@ -0,0 +1,177 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.aliyun.api.gateway.demo.util;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Test;
+
+import com.aliyun.api.gateway.demo.Response;
+
+public class SingleFlightTest {
+
+    private static final int CALLERS = 8;
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(CALLERS);
+
+    //与Client相同,等待方得到Response的副本
+    private final SingleFlight<String, Response> flights = new SingleFlight<String, Response>() {
+        @Override
+        protected Response share(Response value) {
+            return value.copy();
+        }
+    };
+
+    private final AtomicInteger sends = new AtomicInteger();
+
+    @After
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * 模拟发送,等所有其他调用方都在等待结果后才返回或失败
+     */
+    private Callable<Response> sender(final Exception failure) {
+        return new Callable<Response>() {
+            public Response call() throws Exception {
+                sends.incrementAndGet();
+                long deadline = System.currentTimeMillis() + 5000;
+                while (flights.getShared() < CALLERS - 1 && System.currentTimeMillis() < deadline) {
+                    Thread.sleep(1);
+                }
+                if (null != failure) {
+                    throw failure;
+                }
+                Response response = new Response();
+                response.setStatusCode(200);
+                Map<String, String> headers = new HashMap<String, String>();
+                headers.put("X-Ca-Request-Id", "1");
+                response.setHeaders(headers);
+                response.setBodyBytes("body".getBytes());
+                return response;
+            }
+        };
+    }
+
+    private List<Future<Response>> submit(final String key, final Exception failure) {
+        List<Future<Response>> futures = new ArrayList<Future<Response>>();
+        for (int i = 0; i < CALLERS; i++) {
+            futures.add(executor.submit(new Callable<Response>() {
+                public Response call() throws Exception {
+                    return flights.execute(key, sender(failure));
+                }
+            }));
+        }
+        return futures;
+    }
+
+    @Test(timeout = 10000)
+    public void collapsesConcurrentCallsIntoOneSend() throws Exception {
+        List<Response> responses = new ArrayList<Response>();
+        for (Future<Response> future : submit("GET /items", null)) {
+            responses.add(future.get());
+        }
+        assertEquals(1, sends.get());
+        assertEquals(CALLERS - 1, flights.getShared());
+        assertEquals(0, flights.getInFlight());
+
+        Map<Response, Boolean> distinct = new IdentityHashMap<Response, Boolean>();
+        for (Response response : responses) {
+            distinct.put(response, Boolean.TRUE);
+            assertEquals(200, response.getStatusCode());
+            assertArrayEquals("body".getBytes(), response.getBodyBytes());
+        }
+        assertEquals(CALLERS, distinct.size());
+
+        //修改任一副本不影响其他调用方
+        Response first = responses.get(0);
+        first.getBodyBytes()[0] = 'B';
+        first.getHeaders().put("X-Ca-Request-Id", "changed");
+        for (Response other : responses.subList(1, CALLERS)) {
+            assertNotSame(first.getBodyBytes(), other.getBodyBytes());
+            assertArrayEquals("body".getBytes(), other.getBodyBytes());
+            assertEquals("1", other.getHeader("X-Ca-Request-Id"));
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void leaderFailureReachesEveryWaiter() throws Exception {
+        IOException failure = new IOException("connection reset");
+        for (Future<Response> future : submit("GET /items", failure)) {
+            try {
+                future.get();
+            } catch (ExecutionException e) {
+                assertSame(failure, e.getCause());
+                continue;
+            }
+            throw new AssertionError("expected failure");
+        }
+        assertEquals(1, sends.get());
+        assertEquals(0, flights.getInFlight());
+
+        //失败后不保留结果,下一次调用重新发送
+        Response response = flights.execute("GET /items", new Callable<Response>() {
+            public Response call() {
+                sends.incrementAndGet();
+                Response response = new Response();
+                response.setStatusCode(200);
+                return response;
+            }
+        });
+        assertEquals(200, response.getStatusCode());
+        assertEquals(2, sends.get());
+    }
+
+    @Test(timeout = 10000)
+    public void differentKeysAreNotCollapsed() throws Exception {
+        final AtomicInteger calls = new AtomicInteger();
+        Callable<Response> call = new Callable<Response>() {
+            public Response call() {
+                calls.incrementAndGet();
+                return new Response();
+            }
+        };
+        Response a = flights.execute("GET /a", call);
+        Response b = flights.execute("GET /b", call);
+        Response again = flights.execute("GET /a", call);
+        assertEquals(3, calls.get());
+        assertNotSame(a, b);
+        assertNotSame(a, again);
+        assertTrue(0 == flights.getShared() && 0 == flights.getInFlight());
+    }
+}